@@ -0,0 +1,52 @@
+package com.zytra.user_server.bookings.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.zytra.user_server.bookings.dto.BookingHistoryResponse;
+import com.zytra.user_server.bookings.dto.BookingRequest;
+import com.zytra.user_server.bookings.dto.BookingResponse;
+import com.zytra.user_server.bookings.service.BookingService;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/bookings")
+@RequiredArgsConstructor
+public class BookingController {
+
+    private final BookingService bookingService;
+
+    /**
+     * Book the seats the signed in user holds on the trip. Sending the
+     * request again with the same Idempotency-Key returns the same booking.
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public BookingResponse confirm(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestAttribute("authenticatedUserId") Long userId,
+            @RequestBody @Valid BookingRequest request) {
+        return bookingService.confirm(idempotencyKey, userId, request);
+    }
+
+    /**
+     * The signed in user's bookings, newest first. Pass the nextCursor of a
+     * page as cursor to get the next one.
+     */
+    @GetMapping
+    public BookingHistoryResponse getBookings(@RequestAttribute("authenticatedUserId") Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer pageSize) {
+        return bookingService.getBookings(userId, cursor, pageSize);
+    }
+
+}
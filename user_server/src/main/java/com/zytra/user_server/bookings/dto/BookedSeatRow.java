@@ -0,0 +1,12 @@
+package com.zytra.user_server.bookings.dto;
+
+/**
+ * Seat of a booking, as returned by native booking statements.
+ */
+public interface BookedSeatRow {
+
+    Long getTripId();
+
+    String getSeatNumber();
+
+}
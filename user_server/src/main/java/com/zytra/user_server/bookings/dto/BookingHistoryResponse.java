@@ -0,0 +1,48 @@
+package com.zytra.user_server.bookings.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.zytra.user_server.enums.BookingStatus;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookingHistoryResponse {
+
+    // Newest first
+    @Builder.Default
+    private List<BookingSummary> bookings = new ArrayList<>();
+
+    // Set when more bookings follow; pass it back as cursor for the next page
+    private String nextCursor;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BookingSummary {
+        private Long bookingId;
+        private String bookingReference;
+        private BookingStatus bookingStatus;
+        private Long tripId;
+        private String source;
+        private String destination;
+        private LocalDate travelDate;
+        private LocalTime departureTime;
+        private LocalTime arrivalTime;
+        private List<String> seatNumbers;
+        private BigDecimal totalAmount;
+        private LocalDateTime createdAt;
+    }
+
+}
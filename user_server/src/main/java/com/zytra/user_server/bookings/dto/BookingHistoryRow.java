@@ -0,0 +1,41 @@
+package com.zytra.user_server.bookings.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * A booking with its trip, schedule, route and seats, as read for the
+ * booking history in one query.
+ */
+public interface BookingHistoryRow {
+
+    Long getBookingId();
+
+    String getBookingReference();
+
+    String getBookingStatus();
+
+    Integer getSeatCount();
+
+    BigDecimal getTotalAmount();
+
+    LocalDateTime getCreatedAt();
+
+    Long getTripId();
+
+    LocalDate getTravelDate();
+
+    LocalTime getDepartureTime();
+
+    LocalTime getArrivalTime();
+
+    String getSource();
+
+    String getDestination();
+
+    // Comma separated, in seat number order
+    String getSeatNumbers();
+
+}
@@ -1,5 +1,7 @@
 package com.zytra.user_server.bookings.dto;
 
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -9,7 +11,11 @@ import lombok.Data;
 public class BookingRequest {
 
     private long tripId;
-    private long userId;
+
+    @NotEmpty(message = "No seats specified to book")
     private String[] seatNumbers;
 
+    @NotBlank(message = "Payment method is required")
+    private String paymentMethod;
+
 }
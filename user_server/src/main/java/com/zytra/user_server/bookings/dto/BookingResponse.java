@@ -0,0 +1,27 @@
+package com.zytra.user_server.bookings.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.zytra.user_server.enums.BookingStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@AllArgsConstructor
+@Data
+@Builder
+
+public class BookingResponse {
+
+    private Long bookingId;
+    private String bookingReference;
+    private Long tripId;
+    private List<String> seatNumbers;
+    private BigDecimal totalAmount;
+    private BookingStatus bookingStatus;
+    private LocalDateTime createdAt;
+
+}
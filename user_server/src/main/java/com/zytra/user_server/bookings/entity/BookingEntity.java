@@ -11,10 +11,13 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
+// idx_booking_user_created also INCLUDEs the other columns of the booking
+// history, see V9__booking_history_index.sql
 @Table(name = "bookings", indexes = {
-        @Index(name = "idx_booking_user", columnList = "user_id")
+        @Index(name = "idx_booking_user_created", columnList = "user_id, created_at DESC, id DESC")
 }, uniqueConstraints = {
-        @UniqueConstraint(name = "uq_booking_reference", columnNames = { "booking_reference" })
+        @UniqueConstraint(name = "uq_booking_reference", columnNames = { "booking_reference" }),
+        @UniqueConstraint(name = "uq_booking_user_idempotency_key", columnNames = { "user_id", "idempotency_key" })
 })
 @Getter
 @Setter
@@ -48,6 +51,10 @@ public class BookingEntity {
     @Column(name = "booking_status", nullable = false, length = 20)
     private BookingStatus bookingStatus;
 
+    // Key of the confirmation request that made the booking
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,7 @@
+package com.zytra.user_server.bookings.exception;
+
+public class BookingNotFoundException extends RuntimeException {
+    public BookingNotFoundException(String message) {
+        super(message);
+    }
+}
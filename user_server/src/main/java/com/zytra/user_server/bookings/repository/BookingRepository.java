@@ -1,9 +1,111 @@
 package com.zytra.user_server.bookings.repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.zytra.user_server.bookings.dto.BookedSeatRow;
+import com.zytra.user_server.bookings.dto.BookingHistoryRow;
 import com.zytra.user_server.bookings.entity.BookingEntity;
 
 public interface BookingRepository extends JpaRepository<BookingEntity, Long> {
 
+    Optional<BookingEntity> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    /**
+     * Insert a booking unless the user already has one made with the same
+     * idempotency key. Returns the new booking's id, or null when one
+     * exists; a booking with the key still being made elsewhere is waited
+     * for.
+     */
+    @Query(value = """
+            INSERT INTO bookings (booking_reference, user_id, trip_id, seat_count, total_amount, booking_status,
+                                  idempotency_key, created_at)
+            VALUES (:bookingReference, :userId, :tripId, :seatCount, :totalAmount, :bookingStatus,
+                    :idempotencyKey, :createdAt)
+            ON CONFLICT (user_id, idempotency_key) DO NOTHING
+            RETURNING id
+            """, nativeQuery = true)
+    Long insertIfNew(@Param("bookingReference") String bookingReference,
+            @Param("userId") Long userId,
+            @Param("tripId") Long tripId,
+            @Param("seatCount") int seatCount,
+            @Param("totalAmount") BigDecimal totalAmount,
+            @Param("bookingStatus") String bookingStatus,
+            @Param("idempotencyKey") String idempotencyKey,
+            @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Query(value = """
+            UPDATE bookings
+            SET booking_status = 'CONFIRMED'
+            WHERE id = ANY(CAST(:ids AS bigint[]))
+              AND booking_status = 'PENDING'
+            """, nativeQuery = true)
+    int confirmPending(@Param("ids") Long[] ids);
+
+    /**
+     * Cancel the PENDING bookings among the given ones and free their seats,
+     * in one statement. Returns the seats freed.
+     */
+    @Query(value = """
+            WITH cancelled AS (
+                UPDATE bookings
+                SET booking_status = 'CANCELLED'
+                WHERE id = ANY(CAST(:ids AS bigint[]))
+                  AND booking_status = 'PENDING'
+                RETURNING id
+            )
+            UPDATE seats s
+            SET status = 'AVAILABLE', booking_id = NULL
+            FROM cancelled c
+            WHERE s.booking_id = c.id
+            RETURNING s.trip_id AS "tripId", s.seat_number AS "seatNumber"
+            """, nativeQuery = true)
+    List<BookedSeatRow> cancelPending(@Param("ids") Long[] ids);
+
+    @Query("SELECT bs.seat.seatNumber FROM BookingSeatEntity bs WHERE bs.booking.id = :bookingId "
+            + "ORDER BY bs.seat.seatNumber")
+    List<String> findSeatNumbers(@Param("bookingId") Long bookingId);
+
+    /**
+     * One page of the user's bookings, newest first, starting after
+     * (beforeCreatedAt, beforeId); pass {@code 9999-12-31T23:59:59} and
+     * {@link Long#MAX_VALUE} for the first page. The page is picked from
+     * idx_booking_user_created alone, then joined with its trips,
+     * schedules, routes and seats.
+     */
+    @Query(value = """
+            SELECT b.id AS "bookingId", b.booking_reference AS "bookingReference",
+                   b.booking_status AS "bookingStatus", b.seat_count AS "seatCount",
+                   b.total_amount AS "totalAmount", b.created_at AS "createdAt",
+                   t.id AS "tripId", t.travel_date AS "travelDate",
+                   s.departure_time AS "departureTime", s.arrival_time AS "arrivalTime",
+                   r.source AS "source", r.destination AS "destination",
+                   (SELECT string_agg(st.seat_number, ',' ORDER BY st.seat_number)
+                    FROM booking_seats bs
+                    JOIN seats st ON st.id = bs.seat_id
+                    WHERE bs.booking_id = b.id) AS "seatNumbers"
+            FROM (SELECT id, booking_reference, booking_status, seat_count, total_amount, created_at, trip_id
+                  FROM bookings
+                  WHERE user_id = :userId
+                    AND (created_at, id) < (CAST(:beforeCreatedAt AS timestamp), :beforeId)
+                  ORDER BY created_at DESC, id DESC
+                  LIMIT :limit) b
+            JOIN trips t ON t.id = b.trip_id
+            JOIN schedules s ON s.id = t.schedule_id
+            JOIN routes r ON r.id = s.route_id
+            ORDER BY b.created_at DESC, b.id DESC
+            """, nativeQuery = true)
+    List<BookingHistoryRow> findHistoryPage(@Param("userId") Long userId,
+            @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") int limit);
+
 }
@@ -0,0 +1,13 @@
+package com.zytra.user_server.bookings.service;
+
+import com.zytra.user_server.bookings.dto.BookingHistoryResponse;
+import com.zytra.user_server.bookings.dto.BookingRequest;
+import com.zytra.user_server.bookings.dto.BookingResponse;
+
+public interface BookingService {
+
+    BookingResponse confirm(String idempotencyKey, Long userId, BookingRequest request);
+
+    BookingHistoryResponse getBookings(Long userId, String cursor, Integer pageSize);
+
+}
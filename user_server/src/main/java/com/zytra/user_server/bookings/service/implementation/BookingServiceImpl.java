@@ -0,0 +1,284 @@
+package com.zytra.user_server.bookings.service.implementation;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zytra.user_server.bookings.dto.BookingCursor;
+import com.zytra.user_server.bookings.dto.BookingHistoryResponse;
+import com.zytra.user_server.bookings.dto.BookingHistoryRow;
+import com.zytra.user_server.bookings.dto.BookingRequest;
+import com.zytra.user_server.bookings.dto.BookingResponse;
+import com.zytra.user_server.bookings.entity.BookingEntity;
+import com.zytra.user_server.bookings.repository.BookingRepository;
+import com.zytra.user_server.bookings.service.BookingService;
+import com.zytra.user_server.enums.BookingStatus;
+import com.zytra.user_server.enums.TripStatus;
+import com.zytra.user_server.payments.repository.PaymentOutboxRepository;
+import com.zytra.user_server.payments.service.PaymentOutboxWorker;
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+import com.zytra.user_server.seat.repository.SeatRepository;
+import com.zytra.user_server.seat.service.SeatStateEngine;
+import com.zytra.user_server.trips.entity.TripEntity;
+import com.zytra.user_server.trips.exception.TripCancelledException;
+import com.zytra.user_server.trips.exception.TripNotFoundException;
+import com.zytra.user_server.trips.repository.TripRepository;
+import com.zytra.user_server.util.ReferenceGenerator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Turns the seats a user holds into a booking, PENDING until
+ * {@link PaymentOutboxWorker} has charged it.
+ *
+ * The booking row, the booked seats with their booking_seats links and the
+ * payment to charge are written in one transaction of three statements,
+ * whatever the number of seats; the payment provider is never called from
+ * here. Each confirmation is remembered by user and idempotency key: a
+ * retry gets the first attempt's result, waiting for it if it is still
+ * running, and nothing is written again. Retries the cache no longer knows
+ * of find the booking by its key in the table. A confirmation that failed
+ * is forgotten, so it can be retried.
+ */
+@Service
+@Slf4j
+public class BookingServiceImpl implements BookingService {
+
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+    public static final int MAX_PAYMENT_METHOD_LENGTH = 30;
+
+    // Keyset position before every booking
+    private static final BookingCursor FIRST_PAGE = new BookingCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59),
+            Long.MAX_VALUE);
+
+    private final BookingRepository bookingRepository;
+    private final SeatRepository seatRepository;
+    private final TripRepository tripRepository;
+    private final SeatStateEngine seatStateEngine;
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final PaymentOutboxWorker paymentOutboxWorker;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceGenerator referenceGenerator;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    // Running and finished confirmations by user and idempotency key
+    private final Cache<String, CompletableFuture<BookingResponse>> confirmations;
+    private final Counter bookingsConfirmed;
+    private final Counter replays;
+
+    public BookingServiceImpl(BookingRepository bookingRepository, SeatRepository seatRepository,
+            TripRepository tripRepository, SeatStateEngine seatStateEngine,
+            PaymentOutboxRepository paymentOutboxRepository, PaymentOutboxWorker paymentOutboxWorker,
+            TransactionTemplate transactionTemplate, ReferenceGenerator referenceGenerator,
+            @Value("${booking.idempotency.max-entries:100000}") long maxEntries,
+            @Value("${booking.idempotency.ttl-minutes:1440}") long ttlMinutes,
+            @Value("${booking.history.default-page-size:20}") int defaultPageSize,
+            @Value("${booking.history.max-page-size:100}") int maxPageSize,
+            MeterRegistry meterRegistry) {
+        this.bookingRepository = bookingRepository;
+        this.seatRepository = seatRepository;
+        this.tripRepository = tripRepository;
+        this.seatStateEngine = seatStateEngine;
+        this.paymentOutboxRepository = paymentOutboxRepository;
+        this.paymentOutboxWorker = paymentOutboxWorker;
+        this.transactionTemplate = transactionTemplate;
+        this.referenceGenerator = referenceGenerator;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.confirmations = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, confirmations, "booking.idempotency");
+        this.bookingsConfirmed = Counter.builder("bookings.confirmed").register(meterRegistry);
+        this.replays = Counter.builder("bookings.replayed")
+                .description("Booking confirmations answered with the result of an earlier attempt")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public BookingResponse confirm(String idempotencyKey, Long userId, BookingRequest request) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()
+                || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        if (request.getSeatNumbers() == null || request.getSeatNumbers().length == 0) {
+            throw new IllegalArgumentException("No seats specified to book");
+        }
+        if (request.getPaymentMethod() == null || request.getPaymentMethod().isBlank()
+                || request.getPaymentMethod().length() > MAX_PAYMENT_METHOD_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Payment method must be 1 to " + MAX_PAYMENT_METHOD_LENGTH + " characters");
+        }
+
+        String key = userId + ":" + idempotencyKey;
+        CompletableFuture<BookingResponse> attempt = new CompletableFuture<>();
+        CompletableFuture<BookingResponse> first = confirmations.asMap().putIfAbsent(key, attempt);
+        if (first != null) {
+            replays.increment();
+            return sameBooking(await(first), request);
+        }
+
+        try {
+            BookingResponse response = book(idempotencyKey, userId, request);
+            attempt.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            // Failed attempts leave the cache, so the key can be retried;
+            // retries already waiting get the failure
+            confirmations.asMap().remove(key, attempt);
+            attempt.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private BookingResponse book(String idempotencyKey, Long userId, BookingRequest request) {
+        TripEntity trip = tripRepository.findById(request.getTripId())
+                .orElseThrow(() -> new TripNotFoundException("Trip not found with id: " + request.getTripId()));
+        if (trip.getStatus() == TripStatus.CANCELLED) {
+            throw new TripCancelledException("Trip with id " + trip.getId() + " is cancelled");
+        }
+
+        String[] seatNumbers = Arrays.stream(request.getSeatNumbers()).distinct().sorted().toArray(String[]::new);
+        BigDecimal totalAmount = trip.getFare().multiply(BigDecimal.valueOf(seatNumbers.length));
+        LocalDateTime now = LocalDateTime.now();
+
+        BookingResponse response = transactionTemplate.execute(status -> {
+            String bookingReference = referenceGenerator.next(ReferenceGenerator.BOOKING);
+            Long bookingId = bookingRepository.insertIfNew(bookingReference, userId, trip.getId(),
+                    seatNumbers.length, totalAmount, BookingStatus.PENDING.name(), idempotencyKey, now);
+            if (bookingId == null) {
+                return null;
+            }
+
+            long booked = seatRepository.bookHeldSeats(trip.getId(), seatNumbers, userId, bookingId, now);
+            // Rolls the booking back, so nothing is booked
+            if (booked != seatNumbers.length) {
+                throw new SeatUnavailableException("Seat hold has expired or is held by someone else");
+            }
+            paymentOutboxRepository.enqueue(bookingId, referenceGenerator.next(ReferenceGenerator.PAYMENT),
+                    request.getPaymentMethod(), totalAmount, now);
+
+            return BookingResponse.builder()
+                    .bookingId(bookingId)
+                    .bookingReference(bookingReference)
+                    .tripId(trip.getId())
+                    .seatNumbers(List.of(seatNumbers))
+                    .totalAmount(totalAmount)
+                    .bookingStatus(BookingStatus.PENDING)
+                    .createdAt(now)
+                    .build();
+        });
+
+        // Made by an earlier attempt this cache does not remember
+        if (response == null) {
+            replays.increment();
+            return sameBooking(stored(userId, idempotencyKey), request);
+        }
+
+        seatStateEngine.booked(trip.getId(), response.getSeatNumbers());
+        paymentOutboxWorker.wakeUp();
+        bookingsConfirmed.increment();
+        log.debug("Booked seats {} of trip {} for user {}", response.getSeatNumbers(), trip.getId(), userId);
+        return response;
+    }
+
+    /**
+     * The user's bookings, newest first, a page at a time. Each page is one
+     * query, whatever the number of bookings the user has.
+     */
+    @Override
+    public BookingHistoryResponse getBookings(Long userId, String cursor, Integer pageSize) {
+        int size = pageSize != null ? pageSize : defaultPageSize;
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + maxPageSize);
+        }
+        BookingCursor after = cursor != null ? BookingCursor.decode(cursor) : FIRST_PAGE;
+
+        // One extra row tells whether another page follows
+        List<BookingHistoryRow> rows = bookingRepository.findHistoryPage(userId, after.createdAt(),
+                after.bookingId(), size + 1);
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            BookingHistoryRow last = rows.get(size - 1);
+            nextCursor = new BookingCursor(last.getCreatedAt(), last.getBookingId()).encode();
+        }
+
+        return BookingHistoryResponse.builder()
+                .bookings(rows.stream().map(BookingServiceImpl::toSummary).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private static BookingHistoryResponse.BookingSummary toSummary(BookingHistoryRow row) {
+        return BookingHistoryResponse.BookingSummary.builder()
+                .bookingId(row.getBookingId())
+                .bookingReference(row.getBookingReference())
+                .bookingStatus(BookingStatus.valueOf(row.getBookingStatus()))
+                .tripId(row.getTripId())
+                .source(row.getSource())
+                .destination(row.getDestination())
+                .travelDate(row.getTravelDate())
+                .departureTime(row.getDepartureTime())
+                .arrivalTime(row.getArrivalTime())
+                .seatNumbers(row.getSeatNumbers() != null ? List.of(row.getSeatNumbers().split(",")) : List.of())
+                .totalAmount(row.getTotalAmount())
+                .createdAt(row.getCreatedAt())
+                .build();
+    }
+
+    private BookingResponse stored(long userId, String idempotencyKey) {
+        BookingEntity booking = bookingRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .orElseThrow(() -> new IllegalStateException("Booking with idempotency key not found"));
+        return BookingResponse.builder()
+                .bookingId(booking.getId())
+                .bookingReference(booking.getBookingReference())
+                .tripId(booking.getTrip().getId())
+                .seatNumbers(bookingRepository.findSeatNumbers(booking.getId()))
+                .totalAmount(booking.getTotalAmount())
+                .bookingStatus(booking.getBookingStatus())
+                .createdAt(booking.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * An idempotency key stands for one booking; reusing it for another trip
+     * is refused rather than answered with the wrong booking.
+     */
+    private static BookingResponse sameBooking(BookingResponse response, BookingRequest request) {
+        if (response.getTripId() != request.getTripId()) {
+            throw new IllegalArgumentException("Idempotency-Key was already used for another booking");
+        }
+        return response;
+    }
+
+    private static BookingResponse await(CompletableFuture<BookingResponse> attempt) {
+        try {
+            return attempt.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+}
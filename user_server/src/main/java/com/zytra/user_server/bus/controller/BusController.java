@@ -1,14 +1,18 @@
 package com.zytra.user_server.bus.controller;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
+import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.zytra.user_server.bus.dto.BusSearchFilter;
+import com.zytra.user_server.bus.dto.SearchBusesRangeResponse;
 import com.zytra.user_server.bus.dto.SearchBusesResponse;
 import com.zytra.user_server.bus.service.BusService;
 
@@ -27,13 +31,45 @@ public class BusController {
             @RequestParam String source,
             @RequestParam String destination,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate travelDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime currentTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime departureFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime departureTo,
+            @RequestParam(required = false) BigDecimal maxFare,
+            @RequestParam(required = false) String busDescription,
+            @RequestParam(required = false) Sort.Direction sortOrder,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer pageSize) {
+
+        if (currentTime == null) {
+            currentTime = LocalTime.now();
+        }
+
+        BusSearchFilter filter = BusSearchFilter.builder()
+                .departureFrom(departureFrom)
+                .departureTo(departureTo)
+                .maxFare(maxFare)
+                .busDescription(busDescription)
+                .sortOrder(sortOrder)
+                .cursor(cursor)
+                .pageSize(pageSize)
+                .build();
+
+        return busService.searchBuses(source, destination, travelDate, currentTime, filter);
+    }
+
+    @GetMapping("/search/range")
+    public SearchBusesRangeResponse searchBusesInRange(
+            @RequestParam String source,
+            @RequestParam String destination,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate travelDateFrom,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate travelDateTo,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime currentTime) {
 
         if (currentTime == null) {
             currentTime = LocalTime.now();
         }
 
-        return busService.searchBuses(source, destination, travelDate, currentTime);
+        return busService.searchBusesInRange(source, destination, travelDateFrom, travelDateTo, currentTime);
     }
 
 }
@@ -0,0 +1,34 @@
+package com.zytra.user_server.bus.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+import org.springframework.data.domain.Sort;
+
+/**
+ * Optional narrowing of a bus search. Every field may be null; a filter
+ * without any field set asks for the full, unpaged result list.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BusSearchFilter {
+
+    private LocalTime departureFrom;
+    private LocalTime departureTo;
+    private BigDecimal maxFare;
+    private String busDescription;
+    private Sort.Direction sortOrder;
+    private String cursor;
+    private Integer pageSize;
+
+    public boolean isEmpty() {
+        return departureFrom == null && departureTo == null && maxFare == null && busDescription == null
+                && sortOrder == null && cursor == null && pageSize == null;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.zytra.user_server.bus.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import com.zytra.user_server.enums.TripStatus;
+
+/**
+ * Flat, read-only row of the bus search query. Trip columns are null when the
+ * schedule has no trip on the searched date yet.
+ */
+public record BusSearchRow(
+        Long scheduleId,
+        Long tripId,
+        String busNumber,
+        String busDescription,
+        String source,
+        String destination,
+        LocalDate travelDate,
+        LocalTime departureTime,
+        LocalTime arrivalTime,
+        Integer availableSeats,
+        BigDecimal fare,
+        TripStatus tripStatus) {
+
+    public boolean hasTrip() {
+        return tripId != null;
+    }
+
+    public boolean isBookable() {
+        return tripStatus == TripStatus.ACTIVE && availableSeats != null && availableSeats > 0;
+    }
+
+    public SearchBusesResponse.BusResult toBusResult() {
+        return SearchBusesResponse.BusResult.builder()
+                .tripId(tripId)
+                .busNumber(busNumber)
+                .busDescription(busDescription)
+                .source(source)
+                .destination(destination)
+                .travelDate(travelDate)
+                .departureTime(departureTime)
+                .arrivalTime(arrivalTime)
+                .availableSeats(availableSeats)
+                .fare(fare)
+                .build();
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.zytra.user_server.bus.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchBusesRangeResponse {
+
+    // One entry per day of the requested range, in date order
+    private List<DateResults> dates;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class DateResults {
+        private LocalDate travelDate;
+        private List<SearchBusesResponse.BusResult> results;
+    }
+
+}
@@ -17,6 +17,9 @@ public class SearchBusesResponse {
 
     private List<BusResult> results = new ArrayList<>();
 
+    // Set when more results follow; pass it back as cursor for the next page
+    private String nextCursor;
+
     @Getter
     @Setter
     @NoArgsConstructor
@@ -0,0 +1,30 @@
+package com.zytra.user_server.bus.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in a bus search page: the departure time and trip id of
+ * the last result sent. Clients get it as an opaque, URL-safe string.
+ */
+public record SearchCursor(LocalTime departureTime, Long tripId) {
+
+    public String encode() {
+        String raw = departureTime + "|" + tripId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new SearchCursor(LocalTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+}
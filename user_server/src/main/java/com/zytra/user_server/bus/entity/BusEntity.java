@@ -1,5 +1,7 @@
 package com.zytra.user_server.bus.entity;
 
+import com.zytra.user_server.seat.entity.SeatLayoutEntity;
+
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -28,6 +30,11 @@ public class BusEntity {
     @Column(name = "total_seats", nullable = false)
     private Integer totalSeats;
 
+    // Without one, the bus has the standard layout for its number of seats
+    @ManyToOne(fetch = FetchType.LAZY, optional = true)
+    @JoinColumn(name = "seat_layout_id", nullable = true, foreignKey = @ForeignKey(name = "fk_bus_seat_layout"))
+    private SeatLayoutEntity seatLayout;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -0,0 +1,232 @@
+package com.zytra.user_server.bus.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.bus.dto.BusSearchFilter;
+import com.zytra.user_server.bus.dto.BusSearchRow;
+import com.zytra.user_server.bus.dto.SearchBusesResponse;
+import com.zytra.user_server.bus.dto.SearchCursor;
+import com.zytra.user_server.bus.exception.NoBusAvailableException;
+import com.zytra.user_server.enums.ScheduleStatus;
+import com.zytra.user_server.enums.TripStatus;
+import com.zytra.user_server.routes.entity.RouteEntity;
+import com.zytra.user_server.schedule.entity.ScheduleEntity;
+import com.zytra.user_server.schedule.repository.ScheduleRepository;
+import com.zytra.user_server.schedule.service.ServiceCalendar;
+import com.zytra.user_server.trips.repository.TripRepository;
+import com.zytra.user_server.trips.service.TripCreationService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Loads the full, unfiltered search results for a route and travel date from
+ * the database. Results are cached by {@link SearchResultCache}, so this only
+ * runs on cache misses.
+ *
+ * The common case is a single read-only projection query. Only schedules
+ * that have no trip on the date yet cost an extra get-or-create round-trip.
+ */
+@Service
+@RequiredArgsConstructor
+public class BusSearchLoader {
+
+    // Filter sentinels matching every trip. LocalTime.MAX does not survive
+    // the round-trip to a TIME column, departures have second precision
+    private static final LocalTime LAST_DEPARTURE = LocalTime.of(23, 59, 59);
+    private static final BigDecimal NO_FARE_LIMIT = new BigDecimal("1000000000");
+
+    private final ScheduleRepository scheduleRepository;
+    private final TripRepository tripRepository;
+    private final TripCreationService tripCreationService;
+
+    @Value("${fare.per.km:2.5}")
+    private BigDecimal farePerKm;
+
+    public List<SearchBusesResponse.BusResult> loadResults(RouteEntity route, LocalDate travelDate) {
+
+        List<BusSearchRow> rows = findRows(route, travelDate);
+
+        // Trips are normally created ahead of time by TripMaterializer; only
+        // schedules added since its last pass still need one here
+        Set<Long> missingScheduleIds = rows.stream()
+                .filter(row -> !row.hasTrip())
+                .map(BusSearchRow::scheduleId)
+                .collect(Collectors.toSet());
+
+        if (!missingScheduleIds.isEmpty()) {
+            // Calculate fare based on distance
+            BigDecimal calculatedFare = farePerKm.multiply(BigDecimal.valueOf(route.getDistanceKm()));
+
+            tripCreationService.getOrCreateTrips(missingScheduleIds, travelDate, calculatedFare);
+            rows = findRows(route, travelDate);
+        }
+
+        // No rows means either no schedule runs that day or every trip is sold
+        // out or cancelled; only the former is an error
+        if (rows.isEmpty() && !scheduleRepository.existsActiveScheduleOnDate(route.getId(), travelDate,
+                ScheduleStatus.ACTIVE)) {
+            throw new NoBusAvailableException(
+                    "No bus available for route from " + route.getSource() + " to " + route.getDestination());
+        }
+
+        return rows.stream()
+                .filter(BusSearchRow::hasTrip)
+                .map(BusSearchRow::toBusResult)
+                .toList();
+    }
+
+    /**
+     * Load the results of several travel dates of a route at once: one query
+     * for the schedules covering the whole span and one for their trips.
+     *
+     * Only dates on which at least one schedule runs are present in the
+     * returned map; a date whose trips are all sold out maps to an empty list.
+     */
+    public Map<LocalDate, List<SearchBusesResponse.BusResult>> loadResults(RouteEntity route,
+            Set<LocalDate> travelDates) {
+
+        LocalDate from = Collections.min(travelDates);
+        LocalDate to = Collections.max(travelDates);
+
+        List<ScheduleEntity> schedules = scheduleRepository.findActiveSchedulesByRouteAndDateRange(route.getId(),
+                from, to, ScheduleStatus.ACTIVE);
+
+        if (schedules.isEmpty()) {
+            return Map.of();
+        }
+
+        Set<Long> scheduleIds = schedules.stream()
+                .map(ScheduleEntity::getId)
+                .collect(Collectors.toSet());
+
+        List<BusSearchRow> rows = tripRepository.findSearchRowsByScheduleIdInAndTravelDateBetween(scheduleIds, from,
+                to);
+
+        // Create trips for any (schedule, date) pair the materializer has not
+        // covered yet, in one conflict-ignoring insert over the whole span
+        Map<Long, Set<LocalDate>> tripDatesBySchedule = rows.stream()
+                .collect(Collectors.groupingBy(BusSearchRow::scheduleId,
+                        Collectors.mapping(BusSearchRow::travelDate, Collectors.toSet())));
+
+        List<ServiceCalendar> calendars = schedules.stream().map(ServiceCalendar::of).toList();
+
+        Set<Long> schedulesMissingTrips = new HashSet<>();
+        for (int i = 0; i < schedules.size(); i++) {
+            ScheduleEntity schedule = schedules.get(i);
+            Set<LocalDate> tripDates = tripDatesBySchedule.getOrDefault(schedule.getId(), Set.of());
+            for (LocalDate date : travelDates) {
+                if (calendars.get(i).runsOn(date) && !tripDates.contains(date)) {
+                    schedulesMissingTrips.add(schedule.getId());
+                }
+            }
+        }
+
+        if (!schedulesMissingTrips.isEmpty()) {
+            tripRepository.materializeTrips(schedulesMissingTrips, from, to, farePerKm);
+            rows = tripRepository.findSearchRowsByScheduleIdInAndTravelDateBetween(scheduleIds, from, to);
+        }
+
+        Map<LocalDate, List<SearchBusesResponse.BusResult>> resultsByDate = new HashMap<>();
+        for (LocalDate date : travelDates) {
+            if (calendars.stream().anyMatch(calendar -> calendar.runsOn(date))) {
+                resultsByDate.put(date, new ArrayList<>());
+            }
+        }
+
+        // Rows are already ordered by date and departure time
+        for (BusSearchRow row : rows) {
+            List<SearchBusesResponse.BusResult> results = resultsByDate.get(row.travelDate());
+            if (results != null && row.isBookable()) {
+                results.add(row.toBusResult());
+            }
+        }
+
+        return resultsByDate;
+    }
+
+    /**
+     * Load one page of bookable results with the filters, sort order and
+     * keyset position all applied by the query, so only the page itself is
+     * read. Returns up to {@code limit} rows following {@code cursor} (null
+     * for the first page).
+     *
+     * {@code earliestDeparture}, when not null, excludes buses leaving at or
+     * before it (used for today's searches).
+     */
+    public List<BusSearchRow> loadPage(RouteEntity route, LocalDate travelDate, BusSearchFilter filter,
+            SearchCursor cursor, LocalTime earliestDeparture, int limit) {
+
+        createMissingTrips(route, travelDate);
+
+        LocalTime departureFrom = filter.getDepartureFrom() != null ? filter.getDepartureFrom() : LocalTime.MIN;
+        if (earliestDeparture != null && !departureFrom.isAfter(earliestDeparture)) {
+            if (!earliestDeparture.isBefore(LAST_DEPARTURE)) {
+                return List.of();
+            }
+            // Departures are whole seconds; the next one after it
+            departureFrom = earliestDeparture.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        }
+        LocalTime departureTo = filter.getDepartureTo() != null ? filter.getDepartureTo() : LAST_DEPARTURE;
+        BigDecimal maxFare = filter.getMaxFare() != null ? filter.getMaxFare() : NO_FARE_LIMIT;
+        String busDescription = filter.getBusDescription() != null
+                ? filter.getBusDescription().strip().toLowerCase(Locale.ROOT)
+                : "";
+
+        List<BusSearchRow> rows;
+        if (filter.getSortOrder() == Sort.Direction.DESC) {
+            rows = tripRepository.findSearchPageDescending(route.getId(), travelDate, ScheduleStatus.ACTIVE,
+                    TripStatus.ACTIVE, departureFrom, departureTo, maxFare, busDescription,
+                    cursor != null ? cursor.departureTime() : LAST_DEPARTURE,
+                    cursor != null ? cursor.tripId() : Long.MAX_VALUE,
+                    Limit.of(limit));
+        } else {
+            rows = tripRepository.findSearchPageAscending(route.getId(), travelDate, ScheduleStatus.ACTIVE,
+                    TripStatus.ACTIVE, departureFrom, departureTo, maxFare, busDescription,
+                    cursor != null ? cursor.departureTime() : LocalTime.MIN,
+                    cursor != null ? cursor.tripId() : 0L,
+                    Limit.of(limit));
+        }
+
+        if (rows.isEmpty() && cursor == null && !scheduleRepository.existsActiveScheduleOnDate(route.getId(),
+                travelDate, ScheduleStatus.ACTIVE)) {
+            throw new NoBusAvailableException(
+                    "No bus available for route from " + route.getSource() + " to " + route.getDestination());
+        }
+
+        return rows;
+    }
+
+    // Paged queries only read existing trips; create the ones schedules added
+    // since the materializer's last pass still lack
+    private void createMissingTrips(RouteEntity route, LocalDate travelDate) {
+        List<Long> missingScheduleIds = scheduleRepository.findIdsWithoutTripOnDate(route.getId(), travelDate,
+                ScheduleStatus.ACTIVE);
+
+        if (!missingScheduleIds.isEmpty()) {
+            BigDecimal calculatedFare = farePerKm.multiply(BigDecimal.valueOf(route.getDistanceKm()));
+            tripCreationService.getOrCreateTrips(new HashSet<>(missingScheduleIds), travelDate, calculatedFare);
+        }
+    }
+
+    private List<BusSearchRow> findRows(RouteEntity route, LocalDate travelDate) {
+        return tripRepository.findSearchRows(route.getId(), travelDate, ScheduleStatus.ACTIVE, TripStatus.ACTIVE);
+    }
+
+}
@@ -3,10 +3,15 @@ package com.zytra.user_server.bus.service;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
+import com.zytra.user_server.bus.dto.BusSearchFilter;
+import com.zytra.user_server.bus.dto.SearchBusesRangeResponse;
 import com.zytra.user_server.bus.dto.SearchBusesResponse;
 
 public interface BusService {
 
     public SearchBusesResponse searchBuses(String source, String destination, LocalDate travelDate,
-            LocalTime currentTime);
+            LocalTime currentTime, BusSearchFilter filter);
+
+    public SearchBusesRangeResponse searchBusesInRange(String source, String destination, LocalDate travelDateFrom,
+            LocalDate travelDateTo, LocalTime currentTime);
 }
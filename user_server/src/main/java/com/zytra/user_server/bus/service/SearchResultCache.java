@@ -0,0 +1,148 @@
+package com.zytra.user_server.bus.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zytra.user_server.bus.dto.SearchBusesResponse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded cache of bus search results keyed by (routeId, travelDate).
+ *
+ * Entries hold every bookable trip of the day, before the time-of-day filter
+ * for today's searches is applied, and expire after a short TTL. Seat
+ * operations invalidate the entry containing the affected trip once their
+ * transaction commits.
+ */
+@Service
+public class SearchResultCache {
+
+    public record Key(Long routeId, LocalDate travelDate) {
+    }
+
+    private final Cache<Key, List<SearchBusesResponse.BusResult>> cache;
+
+    // tripId -> cache entry holding it, so seat changes can evict by trip
+    private final Map<Long, Key> tripIndex = new ConcurrentHashMap<>();
+
+    public SearchResultCache(
+            @Value("${search.cache.max-entries:10000}") long maxEntries,
+            @Value("${search.cache.ttl-seconds:30}") long ttlSeconds,
+            MeterRegistry meterRegistry) {
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .<Key, List<SearchBusesResponse.BusResult>>evictionListener(
+                        (key, results, cause) -> unindex(key, results))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "bus.search");
+    }
+
+    /**
+     * Return the cached results for a route and date, loading them on a miss.
+     * Concurrent misses for the same key share a single load.
+     */
+    public List<SearchBusesResponse.BusResult> get(Long routeId, LocalDate travelDate,
+            Supplier<List<SearchBusesResponse.BusResult>> loader) {
+
+        return cache.get(new Key(routeId, travelDate), key -> {
+            List<SearchBusesResponse.BusResult> results = List.copyOf(loader.get());
+            results.forEach(result -> tripIndex.put(result.getTripId(), key));
+            return results;
+        });
+    }
+
+    /**
+     * Bulk lookup of several travel dates of one route. Dates missing from the
+     * cache are loaded together in a single call; dates the loader leaves out
+     * are neither cached nor present in the result.
+     */
+    public Map<LocalDate, List<SearchBusesResponse.BusResult>> getAll(Long routeId, Collection<LocalDate> travelDates,
+            Function<Set<LocalDate>, Map<LocalDate, List<SearchBusesResponse.BusResult>>> loader) {
+
+        List<Key> keys = travelDates.stream().map(date -> new Key(routeId, date)).toList();
+
+        Map<Key, List<SearchBusesResponse.BusResult>> cached = cache.getAll(keys, missingKeys -> {
+            Set<LocalDate> missingDates = missingKeys.stream().map(Key::travelDate).collect(Collectors.toSet());
+
+            Map<Key, List<SearchBusesResponse.BusResult>> loaded = new HashMap<>();
+            loader.apply(missingDates).forEach((date, results) -> {
+                Key key = new Key(routeId, date);
+                List<SearchBusesResponse.BusResult> copy = List.copyOf(results);
+                copy.forEach(result -> tripIndex.put(result.getTripId(), key));
+                loaded.put(key, copy);
+            });
+            return loaded;
+        });
+
+        Map<LocalDate, List<SearchBusesResponse.BusResult>> resultsByDate = new HashMap<>();
+        cached.forEach((key, results) -> resultsByDate.put(key.travelDate(), results));
+        return resultsByDate;
+    }
+
+    /**
+     * Evict the entry containing the given trip. Inside a transaction the
+     * eviction is deferred until after commit, so a concurrent search cannot
+     * repopulate the entry with the pre-commit state.
+     */
+    public void invalidateTrip(Long tripId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictTrip(tripId);
+                }
+            });
+        } else {
+            evictTrip(tripId);
+        }
+    }
+
+    public double hitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    private void evictTrip(Long tripId) {
+        Key key = tripIndex.remove(tripId);
+        if (key == null) {
+            return;
+        }
+
+        List<SearchBusesResponse.BusResult> results = cache.asMap().remove(key);
+        if (results != null) {
+            unindex(key, results);
+        }
+    }
+
+    private void unindex(Key key, List<SearchBusesResponse.BusResult> results) {
+        if (results != null) {
+            results.forEach(result -> tripIndex.remove(result.getTripId(), key));
+        }
+    }
+
+}
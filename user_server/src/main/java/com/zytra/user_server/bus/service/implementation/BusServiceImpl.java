@@ -1,168 +1,186 @@
 package com.zytra.user_server.bus.service.implementation;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import com.zytra.user_server.bus.dto.BusSearchFilter;
+import com.zytra.user_server.bus.dto.BusSearchRow;
+import com.zytra.user_server.bus.dto.SearchBusesRangeResponse;
 import com.zytra.user_server.bus.dto.SearchBusesResponse;
-import com.zytra.user_server.bus.entity.BusEntity;
+import com.zytra.user_server.bus.dto.SearchCursor;
 import com.zytra.user_server.bus.exception.InvalidTravelDateException;
-import com.zytra.user_server.bus.exception.NoBusAvailableException;
 import com.zytra.user_server.bus.exception.RouteNotFoundException;
-import com.zytra.user_server.bus.repository.BusRepository;
+import com.zytra.user_server.bus.service.BusSearchLoader;
 import com.zytra.user_server.bus.service.BusService;
-import com.zytra.user_server.enums.ScheduleStatus;
-import com.zytra.user_server.enums.TripStatus;
+import com.zytra.user_server.bus.service.SearchResultCache;
 import com.zytra.user_server.routes.entity.RouteEntity;
-import com.zytra.user_server.routes.repository.RouteRepository;
-import com.zytra.user_server.schedule.entity.ScheduleEntity;
-import com.zytra.user_server.schedule.repository.ScheduleRepository;
-import com.zytra.user_server.trips.entity.TripEntity;
-import com.zytra.user_server.trips.repository.TripRepository;
-import com.zytra.user_server.trips.service.TripCreationService;
+import com.zytra.user_server.routes.service.RouteDirectory;
 
 @Service
 public class BusServiceImpl implements BusService {
 
-    RouteRepository routeRepository;
-    ScheduleRepository scheduleRepository;
-    BusRepository busRepository;
-    TripRepository tripRepository;
-    TripCreationService tripCreationService;
-
-    public BusServiceImpl(RouteRepository routeRepository, ScheduleRepository scheduleRepository,
-            BusRepository busRepository, TripRepository tripRepository, TripCreationService tripCreationService) {
-        this.routeRepository = routeRepository;
-        this.scheduleRepository = scheduleRepository;
-        this.busRepository = busRepository;
-        this.tripRepository = tripRepository;
-        this.tripCreationService = tripCreationService;
+    RouteDirectory routeDirectory;
+    SearchResultCache searchResultCache;
+    BusSearchLoader busSearchLoader;
+
+    public BusServiceImpl(RouteDirectory routeDirectory, SearchResultCache searchResultCache,
+            BusSearchLoader busSearchLoader) {
+        this.routeDirectory = routeDirectory;
+        this.searchResultCache = searchResultCache;
+        this.busSearchLoader = busSearchLoader;
     }
 
     @Value("${booking.window.days}")
     private int bookingWindowDays;
 
-    @Value("${fare.per.km:2.5}")
-    private BigDecimal farePerKm;
+    @Value("${search.range.max-days:15}")
+    private int maxRangeDays;
+
+    @Value("${search.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${search.page.max-size:100}")
+    private int maxPageSize;
 
     @Override
-    @Transactional
     public SearchBusesResponse searchBuses(String source, String destination, LocalDate travelDate,
-            LocalTime currentTime) {
+            LocalTime currentTime, BusSearchFilter filter) {
 
         LocalDate today = LocalDate.now();
 
-        if (travelDate.isBefore(today)) {
-            throw new InvalidTravelDateException("Travel date cannot be in the past");
+        validateTravelDates(travelDate, travelDate, today);
+
+        RouteEntity route = resolveRoute(source, destination);
+
+        if (filter != null && !filter.isEmpty()) {
+            return searchPage(route, travelDate, today, currentTime, filter);
         }
 
-        if (travelDate.isAfter(today.plusDays(bookingWindowDays))) {
-            throw new InvalidTravelDateException(
-                    "Booking allowed only up to " + bookingWindowDays + " days in advance");
+        // Cached per route and date; loading runs in its own transaction so
+        // cache hits never touch the database
+        List<SearchBusesResponse.BusResult> results = searchResultCache.get(route.getId(), travelDate,
+                () -> busSearchLoader.loadResults(route, travelDate));
+
+        results = withoutDepartedTrips(results, travelDate, today, currentTime);
+
+        return SearchBusesResponse.builder().results(results).build();
+
+    }
+
+    @Override
+    public SearchBusesRangeResponse searchBusesInRange(String source, String destination, LocalDate travelDateFrom,
+            LocalDate travelDateTo, LocalTime currentTime) {
+
+        LocalDate today = LocalDate.now();
+
+        if (travelDateFrom.isAfter(travelDateTo)) {
+            throw new InvalidTravelDateException("travelDateFrom must not be after travelDateTo");
         }
 
-        // Case-insensitive search for route
-        RouteEntity route = routeRepository.findBySourceIgnoreCaseAndDestinationIgnoreCase(
-                source.trim(), destination.trim())
-                .orElseThrow(() -> new RouteNotFoundException(
-                        "No route found from " + source + " to " + destination));
+        if (ChronoUnit.DAYS.between(travelDateFrom, travelDateTo) >= maxRangeDays) {
+            throw new InvalidTravelDateException("Date range cannot exceed " + maxRangeDays + " days");
+        }
+
+        validateTravelDates(travelDateFrom, travelDateTo, today);
+
+        RouteEntity route = resolveRoute(source, destination);
+
+        List<LocalDate> travelDates = travelDateFrom.datesUntil(travelDateTo.plusDays(1)).toList();
 
-        // Fetch schedules with bus eagerly loaded to avoid N+1 queries
-        List<ScheduleEntity> schedules = scheduleRepository
-                .findActiveSchedulesByRouteAndDate(route, travelDate, ScheduleStatus.ACTIVE)
-                .orElse(List.of());
+        // Dates already cached are served as is; the others are loaded together
+        Map<LocalDate, List<SearchBusesResponse.BusResult>> resultsByDate = searchResultCache.getAll(route.getId(),
+                travelDates, missingDates -> busSearchLoader.loadResults(route, missingDates));
 
-        if (schedules.isEmpty()) {
-            throw new NoBusAvailableException(
-                    "No bus available for route from " + source + " to " + destination);
+        List<SearchBusesRangeResponse.DateResults> dates = new ArrayList<>(travelDates.size());
+        for (LocalDate travelDate : travelDates) {
+            List<SearchBusesResponse.BusResult> results = resultsByDate.getOrDefault(travelDate, List.of());
+
+            dates.add(SearchBusesRangeResponse.DateResults.builder()
+                    .travelDate(travelDate)
+                    .results(withoutDepartedTrips(results, travelDate, today, currentTime))
+                    .build());
         }
 
-        // Filter by departure time if travel date is today
-        boolean isToday = travelDate.isEqual(today);
-        if (isToday) {
-            schedules = schedules.stream()
-                    .filter(schedule -> schedule.getDepartureTime().isAfter(currentTime))
-                    .toList();
+        return SearchBusesRangeResponse.builder().dates(dates).build();
+    }
+
+    /**
+     * Filtered or paged search: filters, sort order and cursor are applied
+     * by the query, bypassing the per-date result cache.
+     */
+    private SearchBusesResponse searchPage(RouteEntity route, LocalDate travelDate, LocalDate today,
+            LocalTime currentTime, BusSearchFilter filter) {
+
+        int pageSize = filter.getPageSize() != null ? filter.getPageSize() : defaultPageSize;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + maxPageSize);
         }
 
-        if (schedules.isEmpty()) {
-            return SearchBusesResponse.builder().results(List.of()).build();
+        if (filter.getDepartureFrom() != null && filter.getDepartureTo() != null
+                && filter.getDepartureFrom().isAfter(filter.getDepartureTo())) {
+            throw new IllegalArgumentException("departureFrom must not be after departureTo");
         }
 
-        // Batch fetch existing trips to avoid N+1 queries
-        Set<Long> scheduleIds = schedules.stream()
-                .map(ScheduleEntity::getId)
-                .collect(Collectors.toSet());
-
-        Map<Long, TripEntity> existingTrips = tripRepository
-                .findByScheduleIdInAndTravelDate(scheduleIds, travelDate)
-                .stream()
-                .filter(trip -> trip.getStatus() == TripStatus.ACTIVE)
-                .collect(Collectors.toMap(
-                        trip -> trip.getSchedule().getId(),
-                        Function.identity()));
-
-        // Calculate fare based on distance
-        BigDecimal calculatedFare = farePerKm.multiply(BigDecimal.valueOf(route.getDistanceKm()));
-
-        List<TripEntity> trips = new ArrayList<>();
-        List<TripEntity> newTripsToSave = new ArrayList<>();
-
-        for (ScheduleEntity schedule : schedules) {
-            TripEntity trip = existingTrips.get(schedule.getId());
-
-            if (trip != null) {
-                trips.add(trip);
-            } else {
-                TripEntity newTrip = tripCreationService.createTripWithSeats(
-                        schedule,
-                        travelDate,
-                        calculatedFare);
-                trips.add(newTrip);
-            }
+        if (filter.getMaxFare() != null && filter.getMaxFare().signum() < 0) {
+            throw new IllegalArgumentException("maxFare must not be negative");
         }
 
-        // Batch save new trips
-        if (!newTripsToSave.isEmpty()) {
-            tripRepository.saveAll(newTripsToSave);
+        SearchCursor cursor = filter.getCursor() != null ? SearchCursor.decode(filter.getCursor()) : null;
+        LocalTime earliestDeparture = travelDate.isEqual(today) ? currentTime : null;
+
+        // One extra row tells whether another page follows
+        List<BusSearchRow> rows = busSearchLoader.loadPage(route, travelDate, filter, cursor, earliestDeparture,
+                pageSize + 1);
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            BusSearchRow last = rows.get(pageSize - 1);
+            nextCursor = new SearchCursor(last.departureTime(), last.tripId()).encode();
         }
 
-        // Build results sorted by departure time
-        List<SearchBusesResponse.BusResult> results = trips.stream()
-                .filter(trip -> trip.getAvailableSeats() > 0) // Only show buses with available seats
-                .sorted(Comparator.comparing(trip -> trip.getSchedule().getDepartureTime()))
-                .map(trip -> {
-                    ScheduleEntity schedule = trip.getSchedule();
-                    BusEntity bus = schedule.getBus();
-
-                    return SearchBusesResponse.BusResult.builder()
-                            .tripId(trip.getId())
-                            .busNumber(bus.getBusNumber())
-                            .busDescription(bus.getDescription())
-                            .source(route.getSource())
-                            .destination(route.getDestination())
-                            .travelDate(trip.getTravelDate())
-                            .departureTime(schedule.getDepartureTime())
-                            .arrivalTime(schedule.getArrivalTime())
-                            .availableSeats(trip.getAvailableSeats())
-                            .fare(trip.getFare())
-                            .build();
-                })
-                .toList();
+        return SearchBusesResponse.builder()
+                .results(rows.stream().map(BusSearchRow::toBusResult).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
 
-        return SearchBusesResponse.builder().results(results).build();
+    private void validateTravelDates(LocalDate firstDate, LocalDate lastDate, LocalDate today) {
+        if (firstDate.isBefore(today)) {
+            throw new InvalidTravelDateException("Travel date cannot be in the past");
+        }
+
+        if (lastDate.isAfter(today.plusDays(bookingWindowDays))) {
+            throw new InvalidTravelDateException(
+                    "Booking allowed only up to " + bookingWindowDays + " days in advance");
+        }
+    }
+
+    // Case-insensitive lookup against the in-memory route directory
+    private RouteEntity resolveRoute(String source, String destination) {
+        return routeDirectory.resolve(source, destination)
+                .orElseThrow(() -> new RouteNotFoundException(
+                        "No route found from " + source + " to " + destination));
+    }
+
+    // Filter by departure time if travel date is today
+    private List<SearchBusesResponse.BusResult> withoutDepartedTrips(List<SearchBusesResponse.BusResult> results,
+            LocalDate travelDate, LocalDate today, LocalTime currentTime) {
 
+        if (!travelDate.isEqual(today)) {
+            return results;
+        }
+
+        return results.stream()
+                .filter(result -> result.getDepartureTime().isAfter(currentTime))
+                .toList();
     }
 
 }
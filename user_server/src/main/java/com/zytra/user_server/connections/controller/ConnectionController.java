@@ -0,0 +1,40 @@
+package com.zytra.user_server.connections.controller;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.zytra.user_server.connections.dto.ConnectionSearchResponse;
+import com.zytra.user_server.connections.service.ConnectionService;
+
+@RestController
+@RequestMapping("/connections")
+public class ConnectionController {
+
+    ConnectionService connectionService;
+
+    public ConnectionController(ConnectionService connectionService) {
+        this.connectionService = connectionService;
+    }
+
+    @GetMapping("/search")
+    public ConnectionSearchResponse searchConnections(
+            @RequestParam String source,
+            @RequestParam String destination,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate travelDate,
+            @RequestParam(required = false) Integer maxTransfers,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime currentTime) {
+
+        if (currentTime == null) {
+            currentTime = LocalTime.now();
+        }
+
+        return connectionService.searchConnections(source, destination, travelDate, maxTransfers, currentTime);
+    }
+
+}
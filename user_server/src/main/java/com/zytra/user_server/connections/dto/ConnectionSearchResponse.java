@@ -0,0 +1,36 @@
+package com.zytra.user_server.connections.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.zytra.user_server.bus.dto.SearchBusesResponse;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConnectionSearchResponse {
+
+    @Builder.Default
+    private List<Itinerary> itineraries = new ArrayList<>();
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Itinerary {
+        private Integer transfers;
+        private LocalDateTime departure;
+        private LocalDateTime arrival;
+        private Long durationMinutes;
+        private BigDecimal totalFare;
+        private List<SearchBusesResponse.BusResult> legs;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.zytra.user_server.connections.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import com.zytra.user_server.enums.Frequency;
+
+/**
+ * One schedule as seen by the timetable graph: which cities it connects, when
+ * it leaves and arrives, and the days it runs on.
+ */
+public record TimetableRow(
+        Long scheduleId,
+        String source,
+        String destination,
+        LocalTime departureTime,
+        LocalTime arrivalTime,
+        Frequency frequency,
+        Integer runDays,
+        byte[] customRunDates,
+        LocalDate activeFrom,
+        LocalDate activeTo) {
+}
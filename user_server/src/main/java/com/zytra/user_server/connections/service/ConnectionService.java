@@ -0,0 +1,13 @@
+package com.zytra.user_server.connections.service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import com.zytra.user_server.connections.dto.ConnectionSearchResponse;
+
+public interface ConnectionService {
+
+    public ConnectionSearchResponse searchConnections(String source, String destination, LocalDate travelDate,
+            Integer maxTransfers, LocalTime currentTime);
+
+}
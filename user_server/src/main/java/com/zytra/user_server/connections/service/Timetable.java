@@ -0,0 +1,334 @@
+package com.zytra.user_server.connections.service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.zytra.user_server.connections.dto.TimetableRow;
+import com.zytra.user_server.routes.service.RouteDirectory;
+import com.zytra.user_server.schedule.service.ServiceCalendar;
+
+/**
+ * Immutable snapshot of the timetable as a graph: cities are the nodes and
+ * every schedule is a timed edge from the source to the destination city of
+ * its route.
+ *
+ * Edges are grouped per city pair and sorted by departure minute, so the
+ * departures following an arrival are found with a binary search. Adding
+ * schedules yields a new snapshot that shares every untouched pair with this
+ * one, which keeps incremental updates cheap and lets searches run without
+ * any locking.
+ */
+public final class Timetable {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final Leg[] NO_LEGS = new Leg[0];
+    private static final int[] NO_CITIES = new int[0];
+
+    private static final Comparator<Leg> BY_DEPARTURE = Comparator.comparingInt(Leg::departure)
+            .thenComparingLong(Leg::scheduleId);
+
+    // Earliest arrival first, then fewer transfers, then the shorter journey
+    private static final Comparator<Journey> BY_ARRIVAL = Comparator.comparingInt(Journey::arrival)
+            .thenComparingInt(Journey::transfers)
+            .thenComparing(Comparator.comparingInt(Journey::departure).reversed());
+
+    public static final Timetable EMPTY = new Timetable(new HashMap<>(), new HashMap<>(), new HashMap<>(),
+            new HashMap<>(), 0L, 0);
+
+    /**
+     * A schedule between two cities. Departure is the minute of the day the
+     * bus leaves, duration the minutes it takes (possibly past midnight).
+     */
+    public record Leg(long scheduleId, int from, int to, int departure, int duration, ServiceCalendar calendar) {
+
+        boolean runsOn(LocalDate date) {
+            return calendar.runsOn(date);
+        }
+
+    }
+
+    /**
+     * Legs of a journey with the travel date of each leg. Departure and
+     * arrival are minutes from midnight of the searched date.
+     */
+    public record Journey(List<Leg> legs, List<LocalDate> travelDates, int departure, int arrival) {
+
+        public int transfers() {
+            return legs.size() - 1;
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface DepartureConsumer {
+        void accept(Leg leg, int departure);
+    }
+
+    private final Map<String, Integer> cityIds;
+    private final Map<Long, Leg[]> legsByPair;
+    private final Map<Integer, int[]> successors;
+    private final Map<Integer, int[]> predecessors;
+    private final long maxScheduleId;
+    private final int legCount;
+
+    private Timetable(Map<String, Integer> cityIds, Map<Long, Leg[]> legsByPair, Map<Integer, int[]> successors,
+            Map<Integer, int[]> predecessors, long maxScheduleId, int legCount) {
+        this.cityIds = cityIds;
+        this.legsByPair = legsByPair;
+        this.successors = successors;
+        this.predecessors = predecessors;
+        this.maxScheduleId = maxScheduleId;
+        this.legCount = legCount;
+    }
+
+    public static Timetable of(Collection<TimetableRow> rows) {
+        return EMPTY.with(rows);
+    }
+
+    /**
+     * A copy of this timetable with the given schedules added. Only the city
+     * pairs they belong to are copied and re-sorted.
+     */
+    public Timetable with(Collection<TimetableRow> rows) {
+        if (rows.isEmpty()) {
+            return this;
+        }
+
+        Map<String, Integer> ids = new HashMap<>(cityIds);
+        Map<Long, List<Leg>> added = new HashMap<>();
+        long maxId = maxScheduleId;
+
+        for (TimetableRow row : rows) {
+            int from = ids.computeIfAbsent(RouteDirectory.normalize(row.source()), key -> ids.size());
+            int to = ids.computeIfAbsent(RouteDirectory.normalize(row.destination()), key -> ids.size());
+            if (from == to) {
+                continue;
+            }
+
+            int departure = minuteOfDay(row.departureTime());
+            int duration = Math.floorMod(minuteOfDay(row.arrivalTime()) - departure, MINUTES_PER_DAY);
+
+            added.computeIfAbsent(pair(from, to), key -> new ArrayList<>())
+                    .add(new Leg(row.scheduleId(), from, to, departure, duration == 0 ? MINUTES_PER_DAY : duration,
+                            ServiceCalendar.of(row.frequency(), row.runDays(), row.customRunDates(),
+                                    row.activeFrom(), row.activeTo())));
+            maxId = Math.max(maxId, row.scheduleId());
+        }
+
+        Map<Long, Leg[]> pairs = new HashMap<>(legsByPair);
+        Map<Integer, int[]> succ = new HashMap<>(successors);
+        Map<Integer, int[]> pred = new HashMap<>(predecessors);
+        int count = legCount;
+
+        for (Map.Entry<Long, List<Leg>> entry : added.entrySet()) {
+            Leg[] existing = pairs.getOrDefault(entry.getKey(), NO_LEGS);
+            Leg[] merged = Arrays.copyOf(existing, existing.length + entry.getValue().size());
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                merged[existing.length + i] = entry.getValue().get(i);
+            }
+            Arrays.sort(merged, BY_DEPARTURE);
+            pairs.put(entry.getKey(), merged);
+            count += entry.getValue().size();
+
+            if (existing.length == 0) {
+                Leg leg = merged[0];
+                succ.merge(leg.from(), new int[] { leg.to() }, Timetable::union);
+                pred.merge(leg.to(), new int[] { leg.from() }, Timetable::union);
+            }
+        }
+
+        return new Timetable(ids, pairs, succ, pred, maxId, count);
+    }
+
+    public boolean hasCity(String city) {
+        return cityIds.containsKey(RouteDirectory.normalize(city));
+    }
+
+    public int cityCount() {
+        return cityIds.size();
+    }
+
+    public int legCount() {
+        return legCount;
+    }
+
+    public long maxScheduleId() {
+        return maxScheduleId;
+    }
+
+    /**
+     * Journeys from source to destination whose first leg departs on
+     * {@code date} no earlier than {@code earliestDeparture} (minute of the
+     * day), with at most {@code maxTransfers} changes. Every change leaves
+     * between {@code minLayover} and {@code maxLayover} minutes, possibly
+     * waiting past midnight, and no city is visited twice.
+     *
+     * Returns at most {@code limit} journeys, earliest arrival first.
+     */
+    public List<Journey> search(String source, String destination, LocalDate date, int earliestDeparture,
+            int maxTransfers, int minLayover, int maxLayover, int limit) {
+
+        Integer origin = cityIds.get(RouteDirectory.normalize(source));
+        Integer target = cityIds.get(RouteDirectory.normalize(destination));
+        if (origin == null || target == null || origin.equals(target)) {
+            return List.of();
+        }
+
+        int s = origin;
+        int t = target;
+        int lastDeparture = MINUTES_PER_DAY - 1;
+        List<Journey> found = new ArrayList<>();
+
+        departures(legs(s, t), date, earliestDeparture, lastDeparture,
+                (leg, departure) -> found.add(journey(date, new Leg[] { leg }, new int[] { departure })));
+
+        if (maxTransfers > 0) {
+            for (int x : successors.getOrDefault(s, NO_CITIES)) {
+                if (x == t) {
+                    continue;
+                }
+
+                Leg[] xToTarget = legs(x, t);
+                // Second stops worth trying are those with a direct link to the target
+                int[] vias = maxTransfers > 1 ? intersect(successors.getOrDefault(x, NO_CITIES),
+                        predecessors.getOrDefault(t, NO_CITIES)) : NO_CITIES;
+
+                if (xToTarget.length == 0 && vias.length == 0) {
+                    continue;
+                }
+
+                departures(legs(s, x), date, earliestDeparture, lastDeparture, (first, firstDeparture) -> {
+                    int firstArrival = firstDeparture + first.duration();
+
+                    departures(xToTarget, date, firstArrival + minLayover, firstArrival + maxLayover,
+                            (second, secondDeparture) -> found.add(journey(date, new Leg[] { first, second },
+                                    new int[] { firstDeparture, secondDeparture })));
+
+                    for (int y : vias) {
+                        if (y == s || y == t) {
+                            continue;
+                        }
+
+                        Leg[] yToTarget = legs(y, t);
+                        departures(legs(x, y), date, firstArrival + minLayover, firstArrival + maxLayover,
+                                (second, secondDeparture) -> {
+                                    int secondArrival = secondDeparture + second.duration();
+
+                                    departures(yToTarget, date, secondArrival + minLayover,
+                                            secondArrival + maxLayover,
+                                            (third, thirdDeparture) -> found.add(journey(date,
+                                                    new Leg[] { first, second, third },
+                                                    new int[] { firstDeparture, secondDeparture, thirdDeparture })));
+                                });
+                    }
+                });
+            }
+        }
+
+        found.sort(BY_ARRIVAL);
+        return found.size() > limit ? List.copyOf(found.subList(0, limit)) : found;
+    }
+
+    /**
+     * Feed every leg departing in [earliest, latest] (minutes from midnight of
+     * {@code date}, spanning as many days as needed) that runs on its day.
+     */
+    private static void departures(Leg[] legs, LocalDate date, int earliest, int latest, DepartureConsumer action) {
+        if (legs.length == 0 || earliest > latest) {
+            return;
+        }
+
+        for (int day = Math.floorDiv(earliest, MINUTES_PER_DAY); day <= Math.floorDiv(latest, MINUTES_PER_DAY); day++) {
+            int dayStart = day * MINUTES_PER_DAY;
+            int to = Math.min(latest - dayStart, MINUTES_PER_DAY - 1);
+            LocalDate travelDate = date.plusDays(day);
+
+            for (int i = firstDepartingAtOrAfter(legs, earliest - dayStart); i < legs.length
+                    && legs[i].departure() <= to; i++) {
+                if (legs[i].runsOn(travelDate)) {
+                    action.accept(legs[i], dayStart + legs[i].departure());
+                }
+            }
+        }
+    }
+
+    private static int firstDepartingAtOrAfter(Leg[] legs, int minute) {
+        int low = 0;
+        int high = legs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (legs[mid].departure() < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Journey journey(LocalDate date, Leg[] legs, int[] departures) {
+        LocalDate[] travelDates = new LocalDate[legs.length];
+        for (int i = 0; i < legs.length; i++) {
+            travelDates[i] = date.plusDays(Math.floorDiv(departures[i], MINUTES_PER_DAY));
+        }
+
+        int last = legs.length - 1;
+        return new Journey(List.of(legs), List.of(travelDates), departures[0], departures[last] + legs[last].duration());
+    }
+
+    private Leg[] legs(int from, int to) {
+        return legsByPair.getOrDefault(pair(from, to), NO_LEGS);
+    }
+
+    private static long pair(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    // Both arrays are sorted
+    private static int[] union(int[] a, int[] b) {
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            int next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (n == 0 || merged[n - 1] != next) {
+                merged[n++] = next;
+            }
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    // Both arrays are sorted
+    private static int[] intersect(int[] a, int[] b) {
+        int[] common = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                common[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == common.length ? common : Arrays.copyOf(common, n);
+    }
+
+}
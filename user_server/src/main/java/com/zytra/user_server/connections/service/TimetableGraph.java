@@ -0,0 +1,110 @@
+package com.zytra.user_server.connections.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.connections.dto.TimetableRow;
+import com.zytra.user_server.enums.ScheduleStatus;
+import com.zytra.user_server.schedule.repository.ScheduleRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds the current {@link Timetable} of all ACTIVE schedules that have not
+ * ended yet.
+ *
+ * The graph is built at startup; afterwards schedules created since the last
+ * update (ids above the highest one seen) are merged in every refresh
+ * interval. Schedules have no modification timestamp, so status or period
+ * changes and expired schedules are picked up by a periodic full rebuild.
+ */
+@Service
+@Slf4j
+public class TimetableGraph {
+
+    private final ScheduleRepository scheduleRepository;
+
+    private volatile Timetable timetable = Timetable.EMPTY;
+    private volatile boolean loaded;
+
+    public TimetableGraph(ScheduleRepository scheduleRepository, MeterRegistry meterRegistry) {
+        this.scheduleRepository = scheduleRepository;
+        Gauge.builder("connections.timetable.cities", this, graph -> graph.timetable.cityCount())
+                .register(meterRegistry);
+        Gauge.builder("connections.timetable.legs", this, graph -> graph.timetable.legCount())
+                .register(meterRegistry);
+    }
+
+    public Timetable current() {
+        return timetable;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Timetable graph could not be built at startup: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${connections.timetable.refresh-interval-ms:60000}", fixedDelayString = "${connections.timetable.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            if (loaded) {
+                refresh();
+            } else {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.warn("Timetable graph refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${connections.timetable.rebuild-cron:0 15 * * * *}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Timetable graph rebuild failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the graph with one built from the schedules table.
+     */
+    public synchronized void rebuild() {
+        List<TimetableRow> rows = scheduleRepository.findTimetableRows(0L, ScheduleStatus.ACTIVE, LocalDate.now());
+
+        timetable = Timetable.of(rows);
+        loaded = true;
+
+        log.info("Timetable graph built with {} schedules between {} cities", timetable.legCount(),
+                timetable.cityCount());
+    }
+
+    /**
+     * Merge schedules created since the last update into the graph.
+     */
+    public synchronized void refresh() {
+        List<TimetableRow> rows = scheduleRepository.findTimetableRows(timetable.maxScheduleId(),
+                ScheduleStatus.ACTIVE, LocalDate.now());
+
+        if (!rows.isEmpty()) {
+            timetable = timetable.with(rows);
+            log.info("Timetable graph picked up {} new schedules", rows.size());
+        }
+    }
+
+}
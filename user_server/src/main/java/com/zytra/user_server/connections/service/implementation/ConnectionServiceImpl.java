@@ -0,0 +1,173 @@
+package com.zytra.user_server.connections.service.implementation;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.bus.dto.BusSearchRow;
+import com.zytra.user_server.bus.dto.SearchBusesResponse;
+import com.zytra.user_server.bus.exception.InvalidTravelDateException;
+import com.zytra.user_server.bus.exception.RouteNotFoundException;
+import com.zytra.user_server.connections.dto.ConnectionSearchResponse;
+import com.zytra.user_server.connections.service.ConnectionService;
+import com.zytra.user_server.connections.service.Timetable;
+import com.zytra.user_server.connections.service.TimetableGraph;
+import com.zytra.user_server.trips.repository.TripRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@Service
+public class ConnectionServiceImpl implements ConnectionService {
+
+    // Some candidate journeys drop out because a leg is sold out or has no
+    // trip yet, so look at a few more than we return
+    private static final int CANDIDATES_PER_RESULT = 3;
+
+    private record TripKey(Long scheduleId, LocalDate travelDate) {
+    }
+
+    TimetableGraph timetableGraph;
+    TripRepository tripRepository;
+    Timer searchTimer;
+
+    public ConnectionServiceImpl(TimetableGraph timetableGraph, TripRepository tripRepository,
+            MeterRegistry meterRegistry) {
+        this.timetableGraph = timetableGraph;
+        this.tripRepository = tripRepository;
+        this.searchTimer = Timer.builder("connections.search").register(meterRegistry);
+    }
+
+    @Value("${booking.window.days}")
+    private int bookingWindowDays;
+
+    @Value("${connections.max-transfers:2}")
+    private int maxTransfersLimit;
+
+    @Value("${connections.min-layover-minutes:30}")
+    private int minLayoverMinutes;
+
+    @Value("${connections.max-layover-minutes:360}")
+    private int maxLayoverMinutes;
+
+    @Value("${connections.max-results:10}")
+    private int maxResults;
+
+    @Override
+    public ConnectionSearchResponse searchConnections(String source, String destination, LocalDate travelDate,
+            Integer maxTransfers, LocalTime currentTime) {
+
+        LocalDate today = LocalDate.now();
+
+        if (travelDate.isBefore(today)) {
+            throw new InvalidTravelDateException("Travel date cannot be in the past");
+        }
+
+        if (travelDate.isAfter(today.plusDays(bookingWindowDays))) {
+            throw new InvalidTravelDateException(
+                    "Booking allowed only up to " + bookingWindowDays + " days in advance");
+        }
+
+        int transfers = maxTransfers != null ? maxTransfers : maxTransfersLimit;
+        if (transfers < 0 || transfers > maxTransfersLimit) {
+            throw new IllegalArgumentException("maxTransfers must be between 0 and " + maxTransfersLimit);
+        }
+
+        if (!timetableGraph.isLoaded()) {
+            timetableGraph.rebuild();
+        }
+
+        Timetable timetable = timetableGraph.current();
+        if (!timetable.hasCity(source) || !timetable.hasCity(destination)) {
+            throw new RouteNotFoundException("No route found from " + source + " to " + destination);
+        }
+
+        // Only buses leaving after the current time if travel date is today
+        int earliestDeparture = travelDate.isEqual(today)
+                ? currentTime.getHour() * 60 + currentTime.getMinute() + 1
+                : 0;
+
+        List<Timetable.Journey> journeys = searchTimer.record(() -> timetable.search(source, destination,
+                travelDate, earliestDeparture, transfers, minLayoverMinutes, maxLayoverMinutes,
+                maxResults * CANDIDATES_PER_RESULT));
+
+        List<ConnectionSearchResponse.Itinerary> itineraries = toItineraries(journeys, travelDate);
+
+        return ConnectionSearchResponse.builder().itineraries(itineraries).build();
+    }
+
+    /**
+     * Attach the trip of every leg, loaded in one query, and keep the journeys
+     * whose legs can all still be booked.
+     */
+    private List<ConnectionSearchResponse.Itinerary> toItineraries(List<Timetable.Journey> journeys,
+            LocalDate travelDate) {
+
+        if (journeys.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> scheduleIds = journeys.stream()
+                .flatMap(journey -> journey.legs().stream())
+                .map(Timetable.Leg::scheduleId)
+                .collect(Collectors.toSet());
+
+        LocalDate lastTravelDate = journeys.stream()
+                .map(journey -> journey.travelDates().get(journey.travelDates().size() - 1))
+                .max(LocalDate::compareTo)
+                .orElse(travelDate);
+
+        Map<TripKey, BusSearchRow> bookableTrips = new HashMap<>();
+        for (BusSearchRow row : tripRepository.findSearchRowsByScheduleIdInAndTravelDateBetween(scheduleIds,
+                travelDate, lastTravelDate)) {
+            if (row.isBookable()) {
+                bookableTrips.put(new TripKey(row.scheduleId(), row.travelDate()), row);
+            }
+        }
+
+        List<ConnectionSearchResponse.Itinerary> itineraries = new ArrayList<>();
+        for (Timetable.Journey journey : journeys) {
+            List<SearchBusesResponse.BusResult> legs = new ArrayList<>(journey.legs().size());
+            BigDecimal totalFare = BigDecimal.ZERO;
+
+            for (int i = 0; i < journey.legs().size(); i++) {
+                BusSearchRow row = bookableTrips.get(
+                        new TripKey(journey.legs().get(i).scheduleId(), journey.travelDates().get(i)));
+                if (row == null) {
+                    break;
+                }
+                legs.add(row.toBusResult());
+                totalFare = totalFare.add(row.fare());
+            }
+
+            if (legs.size() < journey.legs().size()) {
+                continue;
+            }
+
+            itineraries.add(ConnectionSearchResponse.Itinerary.builder()
+                    .transfers(journey.transfers())
+                    .departure(travelDate.atStartOfDay().plusMinutes(journey.departure()))
+                    .arrival(travelDate.atStartOfDay().plusMinutes(journey.arrival()))
+                    .durationMinutes((long) journey.arrival() - journey.departure())
+                    .totalFare(totalFare)
+                    .legs(legs)
+                    .build());
+
+            if (itineraries.size() == maxResults) {
+                break;
+            }
+        }
+
+        return itineraries;
+    }
+
+}
@@ -3,5 +3,6 @@ package com.zytra.user_server.enums;
 public enum PaymentStatus {
     PENDING,
     SUCCESS,
-    FAILED
+    FAILED,
+    UNKNOWN // No answer from the provider; left for manual reconciliation
 }
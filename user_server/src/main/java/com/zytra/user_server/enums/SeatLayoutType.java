@@ -0,0 +1,6 @@
+package com.zytra.user_server.enums;
+
+public enum SeatLayoutType {
+    SEATER,
+    SLEEPER
+}
@@ -2,10 +2,10 @@ package com.zytra.user_server.enums;
 
 /**
  * Seat status in the database.
- * Note: AVAILABLE seats are NOT stored in DB - a missing record means
- * available.
+ * Note: seats never held or booked are NOT stored in DB - a missing record
+ * means available.
  */
 public enum SeatStatus {
-    AVAILABLE, // Used only in DTOs for response, never persisted
+    AVAILABLE, // Not booked; stored once the seat has been held
     BOOKED // Confirmed reservation
 }
@@ -0,0 +1,7 @@
+package com.zytra.user_server.enums;
+
+public enum TicketStatus {
+    PENDING,
+    ISSUED,
+    CANCELLED
+}
@@ -11,9 +11,11 @@ import com.zytra.user_server.auth.dto.response.ErrorResponse;
 import com.zytra.user_server.auth.exception.InvalidCredentialException;
 import com.zytra.user_server.auth.exception.InvalidOtpException;
 import com.zytra.user_server.auth.exception.InvalidUserException;
+import com.zytra.user_server.bookings.exception.BookingNotFoundException;
 import com.zytra.user_server.bus.exception.InvalidTravelDateException;
 import com.zytra.user_server.bus.exception.NoBusAvailableException;
 import com.zytra.user_server.bus.exception.RouteNotFoundException;
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
 import com.zytra.user_server.trips.exception.TripCancelledException;
 import com.zytra.user_server.trips.exception.TripNotFoundException;
 import com.zytra.user_server.user.exception.UserNotFoundException;
@@ -104,6 +106,16 @@ public class GlobalExceptionHandler {
                 .build();
     }
 
+    @ExceptionHandler(BookingNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ErrorResponse handleBookingNotFoundException(BookingNotFoundException ex) {
+        return ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.NOT_FOUND.value())
+                .message(ex.getMessage())
+                .build();
+    }
+
     @ExceptionHandler(TripCancelledException.class)
     @ResponseStatus(HttpStatus.GONE)
     public ErrorResponse handleTripCancelledException(TripCancelledException ex) {
@@ -144,6 +156,16 @@ public class GlobalExceptionHandler {
                 .build();
     }
 
+    @ExceptionHandler(SeatUnavailableException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse handleSeatUnavailableException(SeatUnavailableException ex) {
+        return ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.CONFLICT.value())
+                .message(ex.getMessage())
+                .build();
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleGlobalException(Exception ex) {
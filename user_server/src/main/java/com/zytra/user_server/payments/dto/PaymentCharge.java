@@ -0,0 +1,10 @@
+package com.zytra.user_server.payments.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One charge asked of a {@link com.zytra.user_server.payments.service.PaymentProvider}.
+ * The same idempotency key is sent with every attempt for a booking.
+ */
+public record PaymentCharge(String idempotencyKey, String paymentMethod, BigDecimal amount) {
+}
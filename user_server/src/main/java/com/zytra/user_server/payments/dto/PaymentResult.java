@@ -0,0 +1,21 @@
+package com.zytra.user_server.payments.dto;
+
+/**
+ * Final answer of a provider to a charge, with its reference for it.
+ */
+public record PaymentResult(Outcome outcome, String reference) {
+
+    public enum Outcome {
+        APPROVED,
+        DECLINED
+    }
+
+    public static PaymentResult approved(String reference) {
+        return new PaymentResult(Outcome.APPROVED, reference);
+    }
+
+    public static PaymentResult declined(String reference) {
+        return new PaymentResult(Outcome.DECLINED, reference);
+    }
+
+}
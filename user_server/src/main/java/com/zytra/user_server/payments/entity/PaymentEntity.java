@@ -10,7 +10,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "payments", uniqueConstraints = {
-        @UniqueConstraint(name = "uq_payment_reference", columnNames = { "payment_reference" })
+        @UniqueConstraint(name = "uq_payment_reference", columnNames = { "payment_reference" }),
+        @UniqueConstraint(name = "uq_payment_booking", columnNames = { "booking_id" })
 })
 @Getter
 @Setter
@@ -30,6 +31,10 @@ public class PaymentEntity {
     @Column(name = "payment_reference", nullable = false, length = 50)
     private String paymentReference;
 
+    // The provider's own reference for the charge, if it answered
+    @Column(name = "provider_reference", length = 100)
+    private String providerReference;
+
     @Column(name = "payment_method", nullable = false, length = 30)
     private String paymentMethod;
 
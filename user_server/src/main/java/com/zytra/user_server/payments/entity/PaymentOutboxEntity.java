@@ -0,0 +1,56 @@
+package com.zytra.user_server.payments.entity;
+
+import com.zytra.user_server.bookings.entity.BookingEntity;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Payment of a PENDING booking still to be charged (see
+ * V8__payment_outbox.sql).
+ */
+@Entity
+@Table(name = "payment_outbox", indexes = {
+        @Index(name = "idx_payment_outbox_available", columnList = "available_at, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uq_payment_outbox_booking", columnNames = { "booking_id" })
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "booking_id", nullable = false, foreignKey = @ForeignKey(name = "fk_payment_outbox_booking"))
+    private BookingEntity booking;
+
+    // Reference of the payment, recorded as payments.payment_reference; sent
+    // to the provider with every attempt, so the booking is charged once
+    @Column(name = "idempotency_key", nullable = false, length = 50)
+    private String idempotencyKey;
+
+    @Column(name = "payment_method", nullable = false, length = 30)
+    private String paymentMethod;
+
+    @Column(name = "amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    // Due from then on; moved past the lease while a worker has the row
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+}
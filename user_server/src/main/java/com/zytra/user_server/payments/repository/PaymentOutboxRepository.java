@@ -0,0 +1,97 @@
+package com.zytra.user_server.payments.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.zytra.user_server.payments.entity.PaymentOutboxEntity;
+
+public interface PaymentOutboxRepository extends JpaRepository<PaymentOutboxEntity, Long> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO payment_outbox (booking_id, idempotency_key, payment_method, amount, attempts, available_at,
+                                        created_at)
+            VALUES (:bookingId, :idempotencyKey, :paymentMethod, :amount, 0, :now, :now)
+            """, nativeQuery = true)
+    int enqueue(@Param("bookingId") Long bookingId,
+            @Param("idempotencyKey") String idempotencyKey,
+            @Param("paymentMethod") String paymentMethod,
+            @Param("amount") BigDecimal amount,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Lease up to {@code limit} rows due at {@code now} until
+     * {@code leaseUntil}, counting the attempt. Rows leased by other
+     * workers are skipped rather than waited for.
+     */
+    @Query(value = """
+            UPDATE payment_outbox o
+            SET available_at = :leaseUntil,
+                attempts = o.attempts + 1
+            FROM (SELECT id
+                  FROM payment_outbox
+                  WHERE available_at <= :now
+                  ORDER BY available_at, id
+                  LIMIT :limit
+                  FOR UPDATE SKIP LOCKED) due
+            WHERE o.id = due.id
+            RETURNING o.*
+            """, nativeQuery = true)
+    List<PaymentOutboxEntity> claim(@Param("now") LocalDateTime now,
+            @Param("leaseUntil") LocalDateTime leaseUntil,
+            @Param("limit") int limit);
+
+    /**
+     * Record the payments of the given rows under their payment references,
+     * with the provider's references (null where unknown), paid at
+     * {@code paidAt} if successful, and remove the rows. Rows another worker
+     * already finished are gone and record nothing. Returns the bookings
+     * whose payment was recorded.
+     */
+    @Query(value = """
+            WITH finished AS (
+                DELETE FROM payment_outbox o
+                WHERE o.id = ANY(CAST(:ids AS bigint[]))
+                RETURNING o.id, o.booking_id, o.idempotency_key, o.payment_method, o.amount
+            ),
+            recorded AS (
+                INSERT INTO payments (booking_id, payment_reference, provider_reference, payment_method,
+                                      payment_status, amount, paid_at)
+                SELECT f.booking_id, f.idempotency_key, r.reference, f.payment_method, :status, f.amount,
+                       CASE WHEN :status = 'SUCCESS' THEN CAST(:paidAt AS timestamp) END
+                FROM finished f
+                JOIN unnest(CAST(:ids AS bigint[]), CAST(:providerReferences AS varchar[])) AS r(id, reference)
+                  ON r.id = f.id
+                ON CONFLICT (booking_id) DO NOTHING
+                RETURNING booking_id
+            )
+            SELECT booking_id FROM recorded
+            """, nativeQuery = true)
+    List<Long> recordPayments(@Param("ids") Long[] ids,
+            @Param("providerReferences") String[] providerReferences,
+            @Param("status") String status,
+            @Param("paidAt") LocalDateTime paidAt);
+
+    /**
+     * Make leased rows due again after a backoff doubling with each attempt
+     * made, from {@code baseSeconds} up to {@code maxSeconds}.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE payment_outbox
+            SET available_at = CAST(:now AS timestamp)
+                + make_interval(secs => LEAST(:maxSeconds, :baseSeconds * power(2, attempts - 1)))
+            WHERE id = ANY(CAST(:ids AS bigint[]))
+            """, nativeQuery = true)
+    int retryLater(@Param("ids") Long[] ids,
+            @Param("now") LocalDateTime now,
+            @Param("baseSeconds") long baseSeconds,
+            @Param("maxSeconds") long maxSeconds);
+
+}
@@ -0,0 +1,64 @@
+package com.zytra.user_server.payments.service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.zytra.user_server.payments.dto.PaymentCharge;
+import com.zytra.user_server.payments.dto.PaymentResult;
+
+/**
+ * Stand-in for a payment gateway in tests and local runs, selected with
+ * {@code payment.provider=fake}; it never charges anyone. Approves every
+ * charge after {@code payment.fake.latency-ms}, except those with the
+ * payment method {@code payment.fake.declined-method}, and remembers its
+ * answers by idempotency key like a real gateway.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.provider", havingValue = "fake")
+public class FakePaymentProvider implements PaymentProvider {
+
+    private final long latencyMs;
+    private final String declinedMethod;
+    private final Map<String, PaymentResult> results = new ConcurrentHashMap<>();
+    private final AtomicInteger charged = new AtomicInteger();
+
+    public FakePaymentProvider(
+            @Value("${payment.fake.latency-ms:0}") long latencyMs,
+            @Value("${payment.fake.declined-method:DECLINE}") String declinedMethod) {
+        this.latencyMs = latencyMs;
+        this.declinedMethod = declinedMethod;
+    }
+
+    @Override
+    public PaymentResult charge(PaymentCharge charge) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while charging");
+            }
+        }
+        return results.computeIfAbsent(charge.idempotencyKey(), key -> {
+            charged.incrementAndGet();
+            String reference = "FAKE-" + UUID.randomUUID();
+            return declinedMethod.equals(charge.paymentMethod())
+                    ? PaymentResult.declined(reference)
+                    : PaymentResult.approved(reference);
+        });
+    }
+
+    /**
+     * Distinct charges made, repeats not counted.
+     */
+    public int chargeCount() {
+        return charged.get();
+    }
+
+}
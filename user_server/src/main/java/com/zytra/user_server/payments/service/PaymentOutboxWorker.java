@@ -0,0 +1,317 @@
+package com.zytra.user_server.payments.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.bookings.dto.BookedSeatRow;
+import com.zytra.user_server.bookings.repository.BookingRepository;
+import com.zytra.user_server.bus.service.SearchResultCache;
+import com.zytra.user_server.enums.PaymentStatus;
+import com.zytra.user_server.payments.dto.PaymentCharge;
+import com.zytra.user_server.payments.dto.PaymentResult;
+import com.zytra.user_server.payments.entity.PaymentOutboxEntity;
+import com.zytra.user_server.payments.repository.PaymentOutboxRepository;
+import com.zytra.user_server.seat.service.SeatStateEngine;
+import com.zytra.user_server.tickets.service.TicketIssuer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Charges the payments of PENDING bookings from the {@code payment_outbox}
+ * table, off the request threads.
+ *
+ * One thread leases due rows in batches, with SKIP LOCKED so several servers
+ * can drain the table together, and hands each charge to a fixed pool of
+ * workers calling the {@link PaymentProvider}. Once the whole batch has
+ * answered, its results are written in one transaction: payments recorded,
+ * paid bookings CONFIRMED, declined ones CANCELLED with their seats freed,
+ * each in a single statement. Paid bookings are then handed to the
+ * {@link TicketIssuer}. Charges whose outcome is unknown are tried
+ * again after a backoff. After {@code payment.outbox.max-attempts} they are
+ * recorded as UNKNOWN and their booking stays PENDING with its seats, for
+ * manual reconciliation: the provider may have taken the money.
+ *
+ * A row whose results were never written, e.g. because the server died, is
+ * charged again when its lease runs out; the provider dedupes the charge by
+ * idempotency key and the second result finds nothing left to record.
+ */
+@Service
+@Slf4j
+public class PaymentOutboxWorker {
+
+    private record Attempt(PaymentOutboxEntity row, PaymentResult result) {
+    }
+
+    private record Outcome(List<Long> confirmed, List<BookedSeatRow> freed) {
+    }
+
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final BookingRepository bookingRepository;
+    private final PaymentProvider paymentProvider;
+    private final SeatStateEngine seatStateEngine;
+    private final SearchResultCache searchResultCache;
+    private final TicketIssuer ticketIssuer;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+    private final int batchSize;
+    private final long pollMs;
+    private final long leaseSeconds;
+    private final int maxAttempts;
+    private final long backoffSeconds;
+    private final long maxBackoffSeconds;
+
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final AtomicLong depth = new AtomicLong();
+    private final Counter approved;
+    private final Counter declined;
+    private final Counter retried;
+    private final Counter unresolved;
+    private final Timer chargeTimer;
+
+    private volatile boolean running;
+    private Thread poller;
+
+    public PaymentOutboxWorker(
+            PaymentOutboxRepository paymentOutboxRepository,
+            BookingRepository bookingRepository,
+            PaymentProvider paymentProvider,
+            SeatStateEngine seatStateEngine,
+            SearchResultCache searchResultCache,
+            TicketIssuer ticketIssuer,
+            TransactionTemplate transactionTemplate,
+            @Value("${payment.outbox.workers:8}") int workerCount,
+            @Value("${payment.outbox.batch-size:100}") int batchSize,
+            @Value("${payment.outbox.poll-ms:1000}") long pollMs,
+            @Value("${payment.outbox.lease-seconds:60}") long leaseSeconds,
+            @Value("${payment.outbox.max-attempts:5}") int maxAttempts,
+            @Value("${payment.outbox.backoff-seconds:5}") long backoffSeconds,
+            @Value("${payment.outbox.max-backoff-seconds:300}") long maxBackoffSeconds,
+            MeterRegistry meterRegistry) {
+
+        this.paymentOutboxRepository = paymentOutboxRepository;
+        this.bookingRepository = bookingRepository;
+        this.paymentProvider = paymentProvider;
+        this.seatStateEngine = seatStateEngine;
+        this.searchResultCache = searchResultCache;
+        this.ticketIssuer = ticketIssuer;
+        this.transactionTemplate = transactionTemplate;
+        this.workers = Executors.newFixedThreadPool(workerCount,
+                Thread.ofPlatform().name("payment-worker-", 0).daemon().factory());
+        this.batchSize = batchSize;
+        this.pollMs = pollMs;
+        this.leaseSeconds = leaseSeconds;
+        this.maxAttempts = maxAttempts;
+        this.backoffSeconds = backoffSeconds;
+        this.maxBackoffSeconds = maxBackoffSeconds;
+
+        this.approved = Counter.builder("payments.approved").register(meterRegistry);
+        this.declined = Counter.builder("payments.declined").register(meterRegistry);
+        this.retried = Counter.builder("payments.retried")
+                .description("Charges with an unknown outcome, to be tried again")
+                .register(meterRegistry);
+        this.unresolved = Counter.builder("payments.unresolved")
+                .description("Charges still without an outcome after the last attempt")
+                .register(meterRegistry);
+        this.chargeTimer = Timer.builder("payments.provider.charge").register(meterRegistry);
+        Gauge.builder("payments.outbox.depth", depth, AtomicLong::get)
+                .description("Payments waiting in the outbox, as of the last poll")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        poller = Thread.ofPlatform().name("payment-outbox").daemon().start(this::poll);
+    }
+
+    /**
+     * Stop leasing rows and let the charges under way finish.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        wakeUp.release();
+        if (poller != null) {
+            poller.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Look at the outbox now rather than at the next poll, e.g. after a
+     * booking was stored.
+     */
+    public void wakeUp() {
+        wakeUp.release();
+    }
+
+    private void poll() {
+        while (running) {
+            try {
+                // A full batch suggests more are due
+                if (drain(LocalDateTime.now()) < batchSize) {
+                    depth.set(paymentOutboxRepository.count());
+                    wakeUp.tryAcquire(pollMs, TimeUnit.MILLISECONDS);
+                    wakeUp.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Payment outbox poll failed: {}", e.getMessage());
+                sleep();
+            }
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lease one batch of due payments, charge them and write the results.
+     *
+     * @return number of payments leased
+     */
+    public int drain(LocalDateTime now) throws InterruptedException {
+        List<PaymentOutboxEntity> rows = transactionTemplate.execute(status -> paymentOutboxRepository.claim(now,
+                now.plusSeconds(leaseSeconds), batchSize));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<Future<PaymentResult>> charges = new ArrayList<>(rows.size());
+        for (PaymentOutboxEntity row : rows) {
+            charges.add(workers.submit(() -> chargeTimer.recordCallable(() -> paymentProvider.charge(
+                    new PaymentCharge(row.getIdempotencyKey(), row.getPaymentMethod(), row.getAmount())))));
+        }
+
+        List<Attempt> attempts = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            attempts.add(new Attempt(rows.get(i), outcome(rows.get(i), charges.get(i))));
+        }
+
+        finish(attempts, LocalDateTime.now());
+        return rows.size();
+    }
+
+    /**
+     * Result of the charge, or null when its outcome is unknown.
+     */
+    private PaymentResult outcome(PaymentOutboxEntity row, Future<PaymentResult> charge) throws InterruptedException {
+        try {
+            return charge.get();
+        } catch (ExecutionException e) {
+            log.warn("Charge of booking {} failed, attempt {}: {}", row.getBooking().getId(), row.getAttempts(),
+                    e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private void finish(List<Attempt> attempts, LocalDateTime now) {
+        List<Attempt> paid = new ArrayList<>();
+        List<Attempt> unpaid = new ArrayList<>();
+        List<Attempt> unknown = new ArrayList<>();
+        List<Long> retry = new ArrayList<>();
+
+        for (Attempt attempt : attempts) {
+            PaymentResult result = attempt.result();
+            if (result != null && result.outcome() == PaymentResult.Outcome.APPROVED) {
+                paid.add(attempt);
+            } else if (result != null) {
+                unpaid.add(attempt);
+            } else if (attempt.row().getAttempts() >= maxAttempts) {
+                unknown.add(attempt);
+            } else {
+                retry.add(attempt.row().getId());
+            }
+        }
+
+        Outcome outcome = transactionTemplate.execute(status -> {
+            List<Long> confirmed = record(paid, PaymentStatus.SUCCESS, now);
+            if (!confirmed.isEmpty()) {
+                bookingRepository.confirmPending(confirmed.toArray(Long[]::new));
+            }
+
+            List<Long> cancelled = record(unpaid, PaymentStatus.FAILED, now);
+            List<BookedSeatRow> seats = cancelled.isEmpty()
+                    ? List.of()
+                    : bookingRepository.cancelPending(cancelled.toArray(Long[]::new));
+
+            // The booking keeps its seats until someone settles it
+            record(unknown, PaymentStatus.UNKNOWN, now);
+
+            if (!retry.isEmpty()) {
+                paymentOutboxRepository.retryLater(retry.toArray(Long[]::new), now, backoffSeconds,
+                        maxBackoffSeconds);
+            }
+            return new Outcome(confirmed, seats);
+        });
+
+        approved.increment(paid.size());
+        declined.increment(unpaid.size());
+        retried.increment(retry.size());
+        unresolved.increment(unknown.size());
+        for (Attempt attempt : unknown) {
+            PaymentOutboxEntity row = attempt.row();
+            log.error("Payment {} of booking {} has no outcome after {} attempts; left for reconciliation",
+                    row.getIdempotencyKey(), row.getBooking().getId(), row.getAttempts());
+        }
+
+        // Paid bookings get their tickets, seats of cancelled ones are free
+        // again
+        if (!outcome.confirmed().isEmpty()) {
+            ticketIssuer.issue(outcome.confirmed());
+        }
+        Map<Long, List<String>> freedByTrip = new LinkedHashMap<>();
+        for (BookedSeatRow seat : outcome.freed()) {
+            freedByTrip.computeIfAbsent(seat.getTripId(), trip -> new ArrayList<>()).add(seat.getSeatNumber());
+        }
+        freedByTrip.forEach((tripId, seatNumbers) -> {
+            seatStateEngine.unbooked(tripId, seatNumbers);
+            searchResultCache.invalidateTrip(tripId);
+        });
+    }
+
+    /**
+     * Record the payments of the attempts and return the bookings whose
+     * payment this recorded. Charges whose outcome is unknown have no
+     * provider reference.
+     */
+    private List<Long> record(List<Attempt> attempts, PaymentStatus status, LocalDateTime now) {
+        if (attempts.isEmpty()) {
+            return List.of();
+        }
+        Long[] ids = attempts.stream().map(attempt -> attempt.row().getId()).toArray(Long[]::new);
+        String[] providerReferences = attempts.stream()
+                .map(attempt -> attempt.result() != null ? attempt.result().reference() : null)
+                .toArray(String[]::new);
+        return paymentOutboxRepository.recordPayments(ids, providerReferences, status.name(), now);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.zytra.user_server.payments.service;
+
+import com.zytra.user_server.payments.dto.PaymentCharge;
+import com.zytra.user_server.payments.dto.PaymentResult;
+
+/**
+ * Payment gateway the outbox worker charges bookings through.
+ *
+ * A charge may be sent more than once, e.g. after a worker died before it
+ * could record the result; the provider must charge an idempotency key only
+ * once and answer repeats with the first result. Throwing means the outcome
+ * is unknown and the charge is tried again later.
+ */
+public interface PaymentProvider {
+
+    PaymentResult charge(PaymentCharge charge);
+
+}
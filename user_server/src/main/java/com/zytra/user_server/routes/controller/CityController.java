@@ -0,0 +1,36 @@
+package com.zytra.user_server.routes.controller;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.zytra.user_server.routes.dto.CitySuggestionResponse;
+import com.zytra.user_server.routes.service.CityAutocompleteIndex;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/cities")
+@RequiredArgsConstructor
+public class CityController {
+
+    private static final int MAX_LIMIT = 20;
+
+    private final CityAutocompleteIndex cityAutocompleteIndex;
+
+    @GetMapping("/autocomplete")
+    public CitySuggestionResponse autocomplete(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        return CitySuggestionResponse.builder()
+                .suggestions(cityAutocompleteIndex.suggest(query, limit))
+                .build();
+    }
+
+}
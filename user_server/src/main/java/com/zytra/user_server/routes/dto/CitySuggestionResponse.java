@@ -0,0 +1,28 @@
+package com.zytra.user_server.routes.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CitySuggestionResponse {
+
+    @Builder.Default
+    private List<CitySuggestion> suggestions = new ArrayList<>();
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CitySuggestion {
+        private String name;
+        private Integer routeCount;
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.zytra.user_server.routes.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -15,4 +17,10 @@ public interface RouteRepository extends JpaRepository<RouteEntity, Long> {
 
     Optional<RouteEntity> findBySourceIgnoreCaseAndDestinationIgnoreCase(String source, String destination);
 
+    /**
+     * Routes created at or after the given watermark. Used by the in-memory
+     * route directory for incremental refreshes.
+     */
+    List<RouteEntity> findByCreatedAtGreaterThanEqual(LocalDateTime watermark);
+
 }
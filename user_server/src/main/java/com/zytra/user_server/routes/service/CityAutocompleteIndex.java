@@ -0,0 +1,238 @@
+package com.zytra.user_server.routes.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.routes.dto.CitySuggestionResponse;
+import com.zytra.user_server.routes.entity.RouteEntity;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory autocomplete over the distinct source and destination cities of
+ * all routes.
+ *
+ * Every word of every normalized city name is kept in one sorted token
+ * array, so a prefix lookup is a binary search followed by a short scan.
+ * When prefixes alone do not fill the suggestions, tokens that start within
+ * one typo (two for longer queries) of the typed prefix are added; the
+ * sorted array doubles as a trie for that search, so only branches that can
+ * still match are visited. Suggestions are ranked by how many routes serve
+ * the city.
+ *
+ * The index is rebuilt from {@link RouteDirectory} whenever its routes change
+ * and never reads the database itself.
+ */
+@Service
+@Slf4j
+public class CityAutocompleteIndex {
+
+    private static final int WHOLE_NAME = 0;
+    private static final int WORD = 1;
+    private static final int TYPO = 2;
+
+    private record City(String name, String key, int routeCount) {
+    }
+
+    // tokens sorted; cityOfToken[i] is the city tokens[i] belongs to
+    private record Snapshot(String[] tokens, int[] cityOfToken, City[] cities) {
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new int[0], new City[0]);
+
+    @EventListener
+    public void onRoutesUpdated(RouteDirectoryUpdatedEvent event) {
+        rebuild(event.routes());
+    }
+
+    public void rebuild(Collection<RouteEntity> routes) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, Integer> routeCounts = new HashMap<>();
+
+        // Lowest route id decides how a city is spelled in suggestions
+        List<RouteEntity> byId = new ArrayList<>(routes);
+        byId.sort(Comparator.comparing(RouteEntity::getId));
+        for (RouteEntity route : byId) {
+            for (String city : List.of(route.getSource(), route.getDestination())) {
+                String key = RouteDirectory.normalize(city);
+                names.putIfAbsent(key, city.strip());
+                routeCounts.merge(key, 1, Integer::sum);
+            }
+        }
+
+        // Cities ordered by rank, so a lower city index always ranks higher
+        City[] cities = names.entrySet().stream()
+                .map(entry -> new City(entry.getValue(), entry.getKey(), routeCounts.get(entry.getKey())))
+                .sorted(Comparator.comparingInt(City::routeCount).reversed().thenComparing(City::key))
+                .toArray(City[]::new);
+
+        List<String> tokens = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int i = 0; i < cities.length; i++) {
+            String key = cities[i].key();
+            for (int start = 0; start < key.length(); start = key.indexOf(' ', start) + 1) {
+                tokens.add(key.substring(start));
+                owners.add(i);
+                if (key.indexOf(' ', start) < 0) {
+                    break;
+                }
+            }
+        }
+
+        Integer[] order = new Integer[tokens.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(tokens::get));
+
+        String[] sortedTokens = new String[order.length];
+        int[] cityOfToken = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedTokens[i] = tokens.get(order[i]);
+            cityOfToken[i] = owners.get(order[i]);
+        }
+
+        snapshot = new Snapshot(sortedTokens, cityOfToken, cities);
+        log.info("City autocomplete index built with {} cities", cities.length);
+    }
+
+    public int size() {
+        return snapshot.cities().length;
+    }
+
+    /**
+     * Up to {@code limit} cities matching what has been typed so far: names
+     * starting with it first, then names with a later word starting with it,
+     * then near misses. Ties are broken by route count.
+     */
+    public List<CitySuggestionResponse.CitySuggestion> suggest(String query, int limit) {
+        Snapshot current = snapshot;
+        String prefix = RouteDirectory.normalize(query);
+        if (prefix.isEmpty() || current.cities().length == 0) {
+            return List.of();
+        }
+
+        String[] tokens = current.tokens();
+        int[] match = new int[current.cities().length];
+        Arrays.fill(match, Integer.MAX_VALUE);
+        int matched = 0;
+
+        for (int i = lowerBound(tokens, prefix); i < tokens.length && tokens[i].startsWith(prefix); i++) {
+            int city = current.cityOfToken()[i];
+            int kind = tokens[i].length() == current.cities()[city].key().length() ? WHOLE_NAME : WORD;
+            if (match[city] == Integer.MAX_VALUE) {
+                matched++;
+            }
+            match[city] = Math.min(match[city], kind);
+        }
+
+        if (matched < limit && prefix.length() >= 3) {
+            int maxTypos = prefix.length() >= 6 ? 2 : 1;
+            int[] firstRow = new int[prefix.length() + 1];
+            Arrays.setAll(firstRow, i -> i);
+            collectTypos(current, prefix, maxTypos, match, 0, tokens.length, 0, firstRow, null, (char) 0);
+        }
+
+        List<CitySuggestionResponse.CitySuggestion> suggestions = new ArrayList<>(limit);
+        for (int kind = WHOLE_NAME; kind <= TYPO && suggestions.size() < limit; kind++) {
+            for (int city = 0; city < match.length && suggestions.size() < limit; city++) {
+                if (match[city] == kind) {
+                    City found = current.cities()[city];
+                    suggestions.add(new CitySuggestionResponse.CitySuggestion(found.name(), found.routeCount()));
+                }
+            }
+        }
+
+        return suggestions;
+    }
+
+    private static int lowerBound(String[] tokens, String prefix) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Walk the sorted tokens as an implicit trie, computing one row of the
+     * edit distance (optimal string alignment) to {@code prefix} per trie
+     * level. Once the whole prefix is within {@code maxTypos} edits every
+     * token below matches; once no cell of the row is, the branch is pruned.
+     *
+     * All tokens in [lo, hi) share their first {@code depth} characters, the
+     * last of which is {@code previousChar}.
+     */
+    private static void collectTypos(Snapshot current, String prefix, int maxTypos, int[] match, int lo, int hi,
+            int depth, int[] previous, int[] beforePrevious, char previousChar) {
+
+        String[] tokens = current.tokens();
+        int n = prefix.length();
+
+        // Tokens ending here sort first within the range
+        int i = lo;
+        while (i < hi && tokens[i].length() == depth) {
+            i++;
+        }
+
+        while (i < hi) {
+            char c = tokens[i].charAt(depth);
+            int end = endOfBranch(tokens, i, hi, depth, c);
+
+            int[] row = new int[n + 1];
+            row[0] = depth + 1;
+            int best = row[0];
+            for (int x = 1; x <= n; x++) {
+                int cost = prefix.charAt(x - 1) == c ? 0 : 1;
+                int value = Math.min(Math.min(row[x - 1] + 1, previous[x] + 1), previous[x - 1] + cost);
+                if (beforePrevious != null && x > 1 && prefix.charAt(x - 1) == previousChar
+                        && prefix.charAt(x - 2) == c) {
+                    value = Math.min(value, beforePrevious[x - 2] + 1);
+                }
+                row[x] = value;
+                best = Math.min(best, value);
+            }
+
+            if (row[n] <= maxTypos) {
+                for (int t = i; t < end; t++) {
+                    int city = current.cityOfToken()[t];
+                    if (match[city] == Integer.MAX_VALUE) {
+                        match[city] = TYPO;
+                    }
+                }
+            } else if (best <= maxTypos) {
+                collectTypos(current, prefix, maxTypos, match, i, end, depth + 1, row, previous, c);
+            }
+
+            i = end;
+        }
+    }
+
+    // First index in [from, hi) whose character at depth is greater than c
+    private static int endOfBranch(String[] tokens, int from, int hi, int depth, char c) {
+        int low = from;
+        int high = hi;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].charAt(depth) <= c) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
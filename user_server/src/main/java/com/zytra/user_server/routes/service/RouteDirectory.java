@@ -0,0 +1,201 @@
+package com.zytra.user_server.routes.service;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.routes.entity.RouteEntity;
+import com.zytra.user_server.routes.repository.RouteRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory directory of all routes, keyed by normalized
+ * {@code source|destination}.
+ *
+ * Routes are loaded once at startup and then refreshed incrementally from a
+ * {@code created_at} watermark, so resolving a route on the search path never
+ * needs a database round-trip. Until the first load succeeds, lookups fall
+ * back to the case-insensitive repository query.
+ *
+ * Cached entities are detached and shared between requests - treat them as
+ * read-only. A {@link RouteDirectoryUpdatedEvent} is published whenever the
+ * set of routes changes.
+ */
+@Service
+@Slf4j
+public class RouteDirectory {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final RouteRepository routeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter hits;
+    private final Counter misses;
+
+    // Re-read this far behind the watermark to pick up rows from transactions
+    // that committed after a later created_at was already observed
+    @Value("${route.directory.refresh-overlap-seconds:300}")
+    private long refreshOverlapSeconds;
+
+    private volatile Map<String, RouteEntity> index = new ConcurrentHashMap<>();
+    private volatile LocalDateTime watermark;
+    private volatile boolean loaded;
+
+    public RouteDirectory(RouteRepository routeRepository, ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry) {
+        this.routeRepository = routeRepository;
+        this.eventPublisher = eventPublisher;
+        this.hits = Counter.builder("route.directory.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("route.directory.lookups").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("route.directory.size", this, directory -> directory.index.size()).register(meterRegistry);
+    }
+
+    /**
+     * Resolve a route by source and destination, ignoring case, surrounding
+     * whitespace and Unicode representation differences.
+     */
+    public Optional<RouteEntity> resolve(String source, String destination) {
+        if (!loaded) {
+            return routeRepository.findBySourceIgnoreCaseAndDestinationIgnoreCase(source.trim(), destination.trim());
+        }
+
+        RouteEntity route = index.get(key(source, destination));
+        if (route == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(route);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public double getHitCount() {
+        return hits.count();
+    }
+
+    public double getMissCount() {
+        return misses.count();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Route directory could not be loaded at startup, falling back to database lookups: {}",
+                    e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${route.directory.refresh-interval-ms:60000}", fixedDelayString = "${route.directory.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            if (loaded) {
+                refresh();
+            } else {
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("Route directory refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the whole index with a fresh copy of the routes table.
+     */
+    public synchronized void reload() {
+        List<RouteEntity> routes = routeRepository.findAll();
+
+        Map<String, RouteEntity> fresh = new ConcurrentHashMap<>(Math.max(16, routes.size() * 2));
+        LocalDateTime latest = null;
+        for (RouteEntity route : routes) {
+            fresh.merge(key(route.getSource(), route.getDestination()), route, RouteDirectory::lowestId);
+            latest = later(latest, route.getCreatedAt());
+        }
+
+        index = fresh;
+        watermark = latest;
+        loaded = true;
+
+        log.info("Route directory loaded {} routes", fresh.size());
+        publishUpdate();
+    }
+
+    /**
+     * Merge routes created since the last observed watermark into the index.
+     */
+    public synchronized void refresh() {
+        if (watermark == null) {
+            reload();
+            return;
+        }
+
+        List<RouteEntity> routes = routeRepository
+                .findByCreatedAtGreaterThanEqual(watermark.minusSeconds(refreshOverlapSeconds));
+
+        LocalDateTime latest = watermark;
+        int before = index.size();
+        for (RouteEntity route : routes) {
+            index.merge(key(route.getSource(), route.getDestination()), route, RouteDirectory::lowestId);
+            latest = later(latest, route.getCreatedAt());
+        }
+        watermark = latest;
+
+        if (index.size() > before) {
+            log.info("Route directory picked up {} new routes", index.size() - before);
+            publishUpdate();
+        }
+    }
+
+    private void publishUpdate() {
+        eventPublisher.publishEvent(new RouteDirectoryUpdatedEvent(List.copyOf(index.values())));
+    }
+
+    static String key(String source, String destination) {
+        return normalize(source) + "|" + normalize(destination);
+    }
+
+    /**
+     * Trim, Unicode-normalize (NFKC), collapse inner whitespace and case-fold a
+     * city name.
+     */
+    public static String normalize(String city) {
+        String normalized = Normalizer.normalize(city.strip(), Normalizer.Form.NFKC);
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ");
+        return normalized.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    // Two rows may only differ by case; keep the oldest one, as the database
+    // lookup did not define which one wins either
+    private static RouteEntity lowestId(RouteEntity existing, RouteEntity candidate) {
+        return candidate.getId() <= existing.getId() ? candidate : existing;
+    }
+
+    private static LocalDateTime later(LocalDateTime current, LocalDateTime candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.zytra.user_server.routes.service;
+
+import java.util.List;
+
+import com.zytra.user_server.routes.entity.RouteEntity;
+
+/**
+ * Published by {@link RouteDirectory} after it loaded the routes table or
+ * picked up new routes. Carries every route currently in the directory.
+ */
+public record RouteDirectoryUpdatedEvent(List<RouteEntity> routes) {
+}
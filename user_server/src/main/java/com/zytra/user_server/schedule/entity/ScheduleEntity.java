@@ -4,6 +4,7 @@ import com.zytra.user_server.bus.entity.BusEntity;
 import com.zytra.user_server.enums.Frequency;
 import com.zytra.user_server.enums.ScheduleStatus;
 import com.zytra.user_server.routes.entity.RouteEntity;
+import com.zytra.user_server.schedule.service.ServiceCalendar;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,7 +13,7 @@ import java.time.LocalTime;
 
 @Entity
 @Table(name = "schedules", indexes = {
-        @Index(name = "idx_schedule_route", columnList = "route_id")
+        @Index(name = "idx_schedule_route_status_active", columnList = "route_id, status, active_from, active_to")
 })
 @Getter
 @Setter
@@ -43,6 +44,15 @@ public class ScheduleEntity {
     @Column(name = "frequency", nullable = false, length = 20)
     private Frequency frequency;
 
+    // Days of week a DAILY or WEEKLY schedule runs on, see ServiceCalendar
+    @Builder.Default
+    @Column(name = "run_days", nullable = false)
+    private Integer runDays = ServiceCalendar.EVERY_DAY;
+
+    // Dates a CUSTOM schedule runs on, as a bitset starting at activeFrom
+    @Column(name = "custom_run_dates")
+    private byte[] customRunDates;
+
     @Column(name = "active_from", nullable = false)
     private LocalDate activeFrom;
 
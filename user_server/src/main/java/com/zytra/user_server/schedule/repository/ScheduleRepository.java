@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.zytra.user_server.connections.dto.TimetableRow;
 import com.zytra.user_server.enums.ScheduleStatus;
 import com.zytra.user_server.routes.entity.RouteEntity;
 import com.zytra.user_server.schedule.entity.ScheduleEntity;
@@ -17,22 +18,104 @@ import com.zytra.user_server.schedule.entity.ScheduleEntity;
 
 public interface ScheduleRepository extends JpaRepository<ScheduleEntity, Long> {
 
+        // Service calendar check, evaluated by the schedule_runs_on SQL function
+        String RUNS_ON_TRAVEL_DATE = "function('schedule_runs_on', s.frequency, s.runDays, s.customRunDates, " +
+                        "s.activeFrom, s.activeTo, :travelDate) = true";
+
         Optional<List<ScheduleEntity>> findByRoute(RouteEntity route);
 
         /**
          * Find active schedules for a route with bus eagerly loaded.
-         * Filters by schedule status and ensures travel date falls within active
-         * period.
+         * Filters by schedule status and ensures the schedule runs on the
+         * travel date (active period and service calendar).
          */
         @Query("SELECT s FROM ScheduleEntity s " +
                         "JOIN FETCH s.bus " +
                         "WHERE s.route = :route " +
                         "AND s.status = :status " +
                         "AND s.activeFrom <= :travelDate " +
-                        "AND s.activeTo >= :travelDate")
+                        "AND s.activeTo >= :travelDate " +
+                        "AND " + RUNS_ON_TRAVEL_DATE)
         Optional<List<ScheduleEntity>> findActiveSchedulesByRouteAndDate(
                         @Param("route") RouteEntity route,
                         @Param("travelDate") LocalDate travelDate,
                         @Param("status") ScheduleStatus status);
 
+        /**
+         * Ids of schedules with the given status whose active period overlaps
+         * [fromDate, toDate], in ascending order.
+         */
+        @Query("SELECT s.id FROM ScheduleEntity s " +
+                        "WHERE s.status = :status " +
+                        "AND s.activeFrom <= :toDate " +
+                        "AND s.activeTo >= :fromDate " +
+                        "ORDER BY s.id")
+        List<Long> findIdsByStatusAndActiveBetween(
+                        @Param("status") ScheduleStatus status,
+                        @Param("fromDate") LocalDate fromDate,
+                        @Param("toDate") LocalDate toDate);
+
+        @Query("SELECT COUNT(s) > 0 FROM ScheduleEntity s " +
+                        "WHERE s.route.id = :routeId " +
+                        "AND s.status = :status " +
+                        "AND s.activeFrom <= :travelDate " +
+                        "AND s.activeTo >= :travelDate " +
+                        "AND " + RUNS_ON_TRAVEL_DATE)
+        boolean existsActiveScheduleOnDate(
+                        @Param("routeId") Long routeId,
+                        @Param("travelDate") LocalDate travelDate,
+                        @Param("status") ScheduleStatus status);
+
+        /**
+         * Schedules of a route with the given status whose active period
+         * overlaps [fromDate, toDate]. Only scalar columns are meant to be read
+         * from the result; route and bus stay lazy.
+         */
+        @Query("SELECT s FROM ScheduleEntity s " +
+                        "WHERE s.route.id = :routeId " +
+                        "AND s.status = :status " +
+                        "AND s.activeFrom <= :toDate " +
+                        "AND s.activeTo >= :fromDate")
+        List<ScheduleEntity> findActiveSchedulesByRouteAndDateRange(
+                        @Param("routeId") Long routeId,
+                        @Param("fromDate") LocalDate fromDate,
+                        @Param("toDate") LocalDate toDate,
+                        @Param("status") ScheduleStatus status);
+
+        /**
+         * Timetable rows of schedules with an id above {@code afterId} that have
+         * the given status and still run on or after {@code fromDate}, in
+         * ascending id order. Pass 0 to read all of them.
+         */
+        @Query("SELECT new com.zytra.user_server.connections.dto.TimetableRow(" +
+                        "s.id, r.source, r.destination, s.departureTime, s.arrivalTime, " +
+                        "s.frequency, s.runDays, s.customRunDates, s.activeFrom, s.activeTo) " +
+                        "FROM ScheduleEntity s " +
+                        "JOIN s.route r " +
+                        "WHERE s.id > :afterId " +
+                        "AND s.status = :status " +
+                        "AND s.activeTo >= :fromDate " +
+                        "ORDER BY s.id")
+        List<TimetableRow> findTimetableRows(
+                        @Param("afterId") Long afterId,
+                        @Param("status") ScheduleStatus status,
+                        @Param("fromDate") LocalDate fromDate);
+
+        /**
+         * Ids of the schedules of a route that run on the travel date but have
+         * no trip on it yet - normally none, as trips are materialized ahead.
+         */
+        @Query("SELECT s.id FROM ScheduleEntity s " +
+                        "WHERE s.route.id = :routeId " +
+                        "AND s.status = :status " +
+                        "AND s.activeFrom <= :travelDate " +
+                        "AND s.activeTo >= :travelDate " +
+                        "AND " + RUNS_ON_TRAVEL_DATE + " " +
+                        "AND NOT EXISTS (SELECT t.id FROM TripEntity t " +
+                        "WHERE t.schedule = s AND t.travelDate = :travelDate)")
+        List<Long> findIdsWithoutTripOnDate(
+                        @Param("routeId") Long routeId,
+                        @Param("travelDate") LocalDate travelDate,
+                        @Param("status") ScheduleStatus status);
+
 }
@@ -0,0 +1,113 @@
+package com.zytra.user_server.schedule.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Set;
+
+import com.zytra.user_server.enums.Frequency;
+import com.zytra.user_server.schedule.entity.ScheduleEntity;
+
+/**
+ * Compiled running days of a schedule.
+ *
+ * DAILY and WEEKLY schedules run on the days of week set in {@code run_days}
+ * (bit 0 = Monday ... bit 6 = Sunday, so DAILY is 127). CUSTOM schedules run
+ * on the dates set in {@code custom_run_dates}: bit n (least significant bit
+ * first within each byte, as PostgreSQL's get_bit numbers them) stands for
+ * {@code active_from} plus n days. Either way only dates inside
+ * [active_from, active_to] count.
+ *
+ * The database evaluates the same rules through the schedule_runs_on SQL
+ * function (db/migration/V2__schedule_service_calendar.sql); keep both in
+ * sync.
+ */
+public final class ServiceCalendar {
+
+    public static final int EVERY_DAY = 0b111_1111;
+
+    private final Frequency frequency;
+    private final int runDays;
+    private final byte[] customRunDates;
+    private final LocalDate activeFrom;
+    private final LocalDate activeTo;
+
+    private ServiceCalendar(Frequency frequency, int runDays, byte[] customRunDates, LocalDate activeFrom,
+            LocalDate activeTo) {
+        this.frequency = frequency;
+        this.runDays = runDays;
+        this.customRunDates = customRunDates;
+        this.activeFrom = activeFrom;
+        this.activeTo = activeTo;
+    }
+
+    public static ServiceCalendar of(ScheduleEntity schedule) {
+        return of(schedule.getFrequency(), schedule.getRunDays(), schedule.getCustomRunDates(),
+                schedule.getActiveFrom(), schedule.getActiveTo());
+    }
+
+    public static ServiceCalendar of(Frequency frequency, Integer runDays, byte[] customRunDates,
+            LocalDate activeFrom, LocalDate activeTo) {
+        return new ServiceCalendar(frequency, runDays != null ? runDays : EVERY_DAY,
+                customRunDates != null ? customRunDates.clone() : new byte[0], activeFrom, activeTo);
+    }
+
+    public boolean runsOn(LocalDate date) {
+        if (date.isBefore(activeFrom) || date.isAfter(activeTo)) {
+            return false;
+        }
+
+        if (frequency != Frequency.CUSTOM) {
+            return (runDays & dayBit(date.getDayOfWeek())) != 0;
+        }
+
+        long offset = ChronoUnit.DAYS.between(activeFrom, date);
+        return offset < customRunDates.length * 8L
+                && (customRunDates[(int) (offset >>> 3)] & (1 << (offset & 7))) != 0;
+    }
+
+    /**
+     * Number of running days in [from, to].
+     */
+    public long countRunningDays(LocalDate from, LocalDate to) {
+        return from.datesUntil(to.plusDays(1)).filter(this::runsOn).count();
+    }
+
+    public static int dayBit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+
+    /**
+     * Day-of-week mask running on exactly the given days.
+     */
+    public static int runDays(Set<DayOfWeek> days) {
+        int mask = 0;
+        for (DayOfWeek day : days) {
+            mask |= dayBit(day);
+        }
+        return mask;
+    }
+
+    /**
+     * Custom-date bitset for a schedule active from {@code activeFrom}.
+     * Dates before {@code activeFrom} are rejected.
+     */
+    public static byte[] customRunDates(LocalDate activeFrom, Collection<LocalDate> dates) {
+        long last = dates.stream()
+                .mapToLong(date -> ChronoUnit.DAYS.between(activeFrom, date))
+                .max()
+                .orElse(-1);
+
+        byte[] bits = new byte[(int) ((last + 8) / 8)];
+        for (LocalDate date : dates) {
+            long offset = ChronoUnit.DAYS.between(activeFrom, date);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Run date " + date + " is before " + activeFrom);
+            }
+            bits[(int) (offset >>> 3)] |= (byte) (1 << (offset & 7));
+        }
+        return bits;
+    }
+
+}
@@ -1,10 +1,14 @@
 package com.zytra.user_server.seat.controller;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.zytra.user_server.seat.dto.LockSeatsRequest;
 import com.zytra.user_server.seat.dto.LockSeatsResponse;
@@ -27,4 +31,13 @@ public class SeatController {
         return response;
     }
 
+    /**
+     * Seat changes of the trip as they happen: seats locked, released and
+     * booked. Only changes are sent; subscribe first, then read the seat map.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter seatEvents(@RequestParam Long tripId) {
+        return seatService.subscribe(tripId);
+    }
+
 }
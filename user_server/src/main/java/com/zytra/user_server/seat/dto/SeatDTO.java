@@ -3,6 +3,7 @@ package com.zytra.user_server.seat.dto;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.zytra.user_server.enums.SeatStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,4 +22,8 @@ public class SeatDTO {
     private LocalDateTime lockedUntil;
     private boolean isBooked;
 
+    // Deck the seat is on, 1 for the lower; only for buses with more than one
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer deck;
+
 }
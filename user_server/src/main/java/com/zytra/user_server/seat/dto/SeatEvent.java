@@ -0,0 +1,37 @@
+package com.zytra.user_server.seat.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A change to some seats of a trip, as pushed to the trip's subscribers.
+ * Only locks carry an owner and expiry.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SeatEvent(
+        Type type,
+        List<String> seats,
+        Long lockOwner,
+        LocalDateTime lockedUntil) {
+
+    public enum Type {
+        LOCKED,
+        RELEASED,
+        BOOKED
+    }
+
+    public static SeatEvent locked(List<String> seats, long lockOwner, LocalDateTime lockedUntil) {
+        return new SeatEvent(Type.LOCKED, seats, lockOwner, lockedUntil);
+    }
+
+    public static SeatEvent released(List<String> seats) {
+        return new SeatEvent(Type.RELEASED, seats, null, null);
+    }
+
+    public static SeatEvent booked(List<String> seats) {
+        return new SeatEvent(Type.BOOKED, seats, null, null);
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.zytra.user_server.seat.dto;
+
+/**
+ * What decides a bus's seat layout: its stored layout, if it has one, or
+ * else its number of seats.
+ */
+public record SeatLayoutRef(
+        Long seatLayoutId,
+        Integer totalSeats) {
+}
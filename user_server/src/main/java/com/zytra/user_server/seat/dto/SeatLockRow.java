@@ -0,0 +1,12 @@
+package com.zytra.user_server.seat.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A live seat lock, as needed to schedule its expiry.
+ */
+public record SeatLockRow(
+        Long tripId,
+        String seatNumber,
+        LocalDateTime lockedUntil) {
+}
@@ -0,0 +1,17 @@
+package com.zytra.user_server.seat.dto;
+
+import java.time.LocalDateTime;
+
+import com.zytra.user_server.enums.SeatStatus;
+
+/**
+ * One row of the {@code seats} table as needed by the seat state engine,
+ * without loading the booking or the lock owner.
+ */
+public record SeatStateRow(
+        String seatNumber,
+        SeatStatus status,
+        Long bookingId,
+        Long lockOwnerId,
+        LocalDateTime lockedUntil) {
+}
@@ -22,8 +22,6 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "seats", indexes = {
-                @Index(name = "idx_seat_trip", columnList = "trip_id"),
-                @Index(name = "idx_seat_status", columnList = "status"),
                 @Index(name = "idx_seat_lock_owner_id", columnList = "lock_owner_id"),
 
 }, uniqueConstraints = {
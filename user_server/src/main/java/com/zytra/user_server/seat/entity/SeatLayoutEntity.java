@@ -0,0 +1,51 @@
+package com.zytra.user_server.seat.entity;
+
+import com.zytra.user_server.enums.SeatLayoutType;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A seat layout buses can share, as a definition compiled by
+ * {@link com.zytra.user_server.seat.service.SeatLayout#compile}.
+ *
+ * Stored once and never changed: trips, seat rows and bookings refer to
+ * its seat numbers. A bus gets a different layout by pointing it at a new
+ * one.
+ */
+@Entity
+@Table(name = "seat_layouts", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_seat_layout_name", columnNames = { "name" })
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SeatLayoutEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "name", nullable = false, length = 50)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 20)
+    private SeatLayoutType type;
+
+    @Column(name = "definition", nullable = false, columnDefinition = "TEXT")
+    private String definition;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.zytra.user_server.seat.exception;
+
+public class SeatUnavailableException extends RuntimeException {
+    public SeatUnavailableException(String message) {
+        super(message);
+    }
+}
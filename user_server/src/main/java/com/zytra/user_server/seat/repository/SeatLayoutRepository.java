@@ -0,0 +1,35 @@
+package com.zytra.user_server.seat.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.zytra.user_server.seat.dto.SeatLayoutRef;
+import com.zytra.user_server.seat.entity.SeatLayoutEntity;
+
+@Repository
+public interface SeatLayoutRepository extends JpaRepository<SeatLayoutEntity, Long> {
+
+  /**
+   * Layout of the bus running the trip.
+   */
+  @Query("SELECT new com.zytra.user_server.seat.dto.SeatLayoutRef(l.id, b.totalSeats) "
+      + "FROM TripEntity t JOIN t.schedule s JOIN s.bus b LEFT JOIN b.seatLayout l WHERE t.id = :tripId")
+  Optional<SeatLayoutRef> findByTripId(@Param("tripId") Long tripId);
+
+  /**
+   * Layouts of the trips from {@code today} on still waiting for their seat
+   * rows.
+   */
+  @Query("SELECT DISTINCT new com.zytra.user_server.seat.dto.SeatLayoutRef(l.id, b.totalSeats) "
+      + "FROM TripEntity t JOIN t.schedule s JOIN s.bus b LEFT JOIN b.seatLayout l "
+      + "WHERE t.seatStatus = com.zytra.user_server.enums.TripSeatStatus.NOT_INITIALIZED "
+      + "AND t.travelDate >= :today")
+  List<SeatLayoutRef> findPendingInitialization(@Param("today") LocalDate today);
+
+}
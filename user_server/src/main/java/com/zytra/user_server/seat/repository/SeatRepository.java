@@ -1,37 +1,147 @@
 package com.zytra.user_server.seat.repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import com.zytra.user_server.enums.SeatStatus;
+import com.zytra.user_server.seat.dto.SeatLockRow;
+import com.zytra.user_server.seat.dto.SeatStateRow;
 import com.zytra.user_server.seat.entity.SeatEntity;
 import com.zytra.user_server.trips.entity.TripEntity;
 
-import jakarta.persistence.LockModeType;
-
 @Repository
 public interface SeatRepository extends JpaRepository<SeatEntity, Long> {
 
   /**
-   * ;
    * Find all seats for a given trip, ordered by seat number for consistent
    * display.
    */
 
   List<SeatEntity> findByTripOrderBySeatNumber(TripEntity trip);
 
-  @Query("SELECT COUNT(s) > 0 FROM SeatEntity s WHERE s.trip.id = :tripId")
-  boolean existsByTripId(@Param("tripId") Long tripId);
+  /**
+   * Seat numbers, booking and lock state of a trip in one query, for the
+   * in-memory seat state.
+   */
+  @Query("SELECT new com.zytra.user_server.seat.dto.SeatStateRow(s.seatNumber, s.status, s.booking.id, "
+      + "s.lockOwner.id, s.lockedUntil) FROM SeatEntity s WHERE s.trip.id = :tripId ORDER BY s.seatNumber")
+  List<SeatStateRow> findSeatStates(@Param("tripId") Long tripId);
+
+  /**
+   * Lock the seats for the owner until {@code lockedUntil}, in one statement,
+   * but only those that are not booked and are unlocked, expired at
+   * {@code now} or already locked by the owner. Seats without a row yet are
+   * available and get one. Returns the seat numbers actually locked; fewer
+   * than asked means someone else holds the rest.
+   */
+  @Query(value = """
+      INSERT INTO seats (trip_id, seat_number, status, lock_owner_id, locked_until)
+      SELECT :tripId, requested.seat_number, 'AVAILABLE', :ownerId, :lockedUntil
+      FROM unnest(CAST(:seatNumbers AS varchar[])) AS requested(seat_number)
+      ON CONFLICT (trip_id, seat_number) DO UPDATE
+      SET lock_owner_id = EXCLUDED.lock_owner_id,
+          locked_until = EXCLUDED.locked_until
+      WHERE seats.booking_id IS NULL
+        AND seats.status <> 'BOOKED'
+        AND (seats.locked_until IS NULL OR seats.locked_until <= :now OR seats.lock_owner_id = :ownerId)
+      RETURNING seat_number
+      """, nativeQuery = true)
+  List<String> lockSeatsIfAvailable(@Param("tripId") Long tripId,
+      @Param("seatNumbers") String[] seatNumbers,
+      @Param("ownerId") Long ownerId,
+      @Param("lockedUntil") LocalDateTime lockedUntil,
+      @Param("now") LocalDateTime now);
+
+  /**
+   * Book the given seats of a trip for the booking, in one statement, but
+   * only those the user holds with a lock live at {@code now}, and link
+   * them to the booking in booking_seats. Returns the number of seats
+   * booked; fewer than asked means a hold ran out or was never there.
+   */
+  @Query(value = """
+      WITH booked AS (
+          UPDATE seats
+          SET status = 'BOOKED', booking_id = :bookingId, lock_owner_id = NULL, locked_until = NULL
+          WHERE trip_id = :tripId
+            AND seat_number = ANY(CAST(:seatNumbers AS varchar[]))
+            AND lock_owner_id = :userId
+            AND locked_until > :now
+            AND booking_id IS NULL
+          RETURNING id
+      ),
+      linked AS (
+          INSERT INTO booking_seats (booking_id, seat_id)
+          SELECT :bookingId, id FROM booked
+          RETURNING seat_id
+      )
+      SELECT count(*) FROM linked
+      """, nativeQuery = true)
+  long bookHeldSeats(@Param("tripId") Long tripId,
+      @Param("seatNumbers") String[] seatNumbers,
+      @Param("userId") Long userId,
+      @Param("bookingId") Long bookingId,
+      @Param("now") LocalDateTime now);
+
+  /**
+   * Write-through of seat locks released in memory. Seats the owner no
+   * longer holds are left alone, so a release written after a later lock by
+   * someone else does not undo it.
+   */
+  @Modifying
+  @Query("UPDATE SeatEntity s SET s.lockOwner = NULL, s.lockedUntil = NULL "
+      + "WHERE s.trip.id = :tripId AND s.seatNumber IN :seatNumbers AND s.lockOwner.id = :ownerId "
+      + "AND s.booking IS NULL")
+  int releaseLocks(@Param("tripId") Long tripId,
+      @Param("seatNumbers") List<String> seatNumbers,
+      @Param("ownerId") Long ownerId);
 
-  @Query("SELECT COUNT(s) FROM SeatEntity s WHERE s.trip = :trip AND s.status = :status")
-  int countByTripAndStatus(TripEntity trip, SeatStatus status);
+  /**
+   * Create the seat rows of up to {@code chunkSize} trips from {@code today}
+   * on that are still NOT_INITIALIZED and whose bus has the given layout, and
+   * mark them INITIALIZED, in one statement. Buses without a stored layout
+   * are matched by their number of seats. Trips locked by another caller are
+   * skipped, so callers can run side by side, each getting its own trips.
+   * Seats that already have a row are left as they are. Returns the ids of
+   * the trips initialized.
+   */
+  @Transactional
+  @Query(value = """
+      WITH claimed AS (
+          SELECT t.id FROM trips t
+          JOIN schedules s ON s.id = t.schedule_id
+          JOIN bus b ON b.id = s.bus_id
+          WHERE t.seat_status = 'NOT_INITIALIZED'
+            AND t.travel_date >= :today
+            AND b.seat_layout_id IS NOT DISTINCT FROM CAST(:seatLayoutId AS bigint)
+            AND (b.seat_layout_id IS NOT NULL OR b.total_seats = :totalSeats)
+          LIMIT :chunkSize
+          FOR UPDATE OF t SKIP LOCKED
+      ),
+      seeded AS (
+          INSERT INTO seats (trip_id, seat_number, status)
+          SELECT claimed.id, layout.seat_number, 'AVAILABLE'
+          FROM claimed
+          CROSS JOIN unnest(CAST(:seatNumbers AS varchar[])) AS layout(seat_number)
+          ON CONFLICT (trip_id, seat_number) DO NOTHING
+      )
+      UPDATE trips t
+      SET seat_status = 'INITIALIZED'
+      FROM claimed
+      WHERE t.id = claimed.id
+      RETURNING t.id
+      """, nativeQuery = true)
+  List<Long> initializeSeats(@Param("today") LocalDate today,
+      @Param("seatLayoutId") Long seatLayoutId,
+      @Param("totalSeats") Integer totalSeats,
+      @Param("chunkSize") int chunkSize,
+      @Param("seatNumbers") String[] seatNumbers);
 
   @Modifying
   @Query("""
@@ -44,48 +154,30 @@ public interface SeatRepository extends JpaRepository<SeatEntity, Long> {
       """)
   int clearExpiredLocks(@Param("now") LocalDateTime now);
 
-  @Query("SELECT s FROM SeatEntity s WHERE s.trip.id = :tripId AND s.lockOwner.id = :lockOwnerId")
-  List<SeatEntity> findByTripIdAndLockOwnerId(Long tripId, Long lockOwnerId);
-
   /**
-   * Find seats that are unavailable (either booked or still locked).
-   * - lockedUntil IS NULL means BOOKED (permanently reserved)
-   * - lockedUntil > now means still LOCKED (temporarily held)
+   * Release the given seats of a trip whose lock ran out by {@code now}.
+   * Seats locked again since, or booked, are left alone. Returns the seat
+   * numbers released.
    */
-  @Query("SELECT s FROM SeatEntity s WHERE s.trip.id = :tripId " +
-      "AND s.seatNumber IN :seatNumbers " +
-      "AND (s.lockedUntil IS NULL OR s.lockedUntil > :now)")
-  List<SeatEntity> findUnavailableSeats(
-      @Param("tripId") Long tripId,
+  @Query(value = """
+      UPDATE seats
+      SET lock_owner_id = NULL, locked_until = NULL
+      WHERE trip_id = :tripId
+        AND seat_number = ANY(CAST(:seatNumbers AS varchar[]))
+        AND locked_until <= :now
+        AND booking_id IS NULL
+      RETURNING seat_number
+      """, nativeQuery = true)
+  List<String> releaseExpiredLocks(@Param("tripId") Long tripId,
       @Param("seatNumbers") String[] seatNumbers,
       @Param("now") LocalDateTime now);
 
   /**
-   * Delete expired locks for specific seats (cleanup before re-locking).
+   * Locks still running at {@code now}, to schedule their expiry after a
+   * restart. Served by the partial index on locked seats.
    */
-  @Modifying
-  @Query("DELETE FROM SeatEntity s WHERE s.trip.id = :tripId " +
-      "AND s.seatNumber IN :seatNumbers " +
-      "AND (s.lockedUntil IS NOT NULL AND s.lockedUntil <= :now)")
-  void deleteExpiredLocks(
-      @Param("tripId") Long tripId,
-      @Param("seatNumbers") List<String> seatNumbers,
-      @Param("now") LocalDateTime now);
-
-  @Lock(LockModeType.PESSIMISTIC_WRITE)
-  @Query("SELECT s FROM SeatEntity s WHERE s.trip.id = :tripId AND s.seatNumber IN :seatNumbers")
-  List<SeatEntity> findByTripIdAndSeatNumberIn(@Param("tripId") Long tripId,
-      @Param("seatNumbers") List<String> seatNumbers);
-
-  /**
-   * Delete expired locks for specific seats for a given owner.
-   * NOTE: owner is a UserEntity; method kept for potential future use but not
-   * used currently.
-   */
-  @Modifying
-  @Query("DELETE FROM SeatEntity s WHERE s.trip.id = :tripId AND s.seatNumber IN :seatNumbers AND s.lockOwner = :owner")
-  void deleteByTripIdAndSeatNumberInAndLockOwner(@Param("tripId") Long tripId,
-      @Param("seatNumbers") List<String> seatNumbers,
-      @Param("owner") com.zytra.user_server.user.entity.UserEntity owner);
+  @Query("SELECT new com.zytra.user_server.seat.dto.SeatLockRow(s.trip.id, s.seatNumber, s.lockedUntil) "
+      + "FROM SeatEntity s WHERE s.lockedUntil IS NOT NULL AND s.lockedUntil > :now AND s.booking IS NULL")
+  List<SeatLockRow> findActiveLocks(@Param("now") LocalDateTime now);
 
 }
@@ -19,9 +19,11 @@ public class ClearExpiredLocksService {
     private final SeatRepository seatRepository;
 
     /**
-     * Runs every 30 seconds to release expired seat locks.
+     * Safety net behind {@link SeatLockExpiryService}, which releases locks
+     * as they expire: every 10 minutes, releases any expired lock it missed.
+     * Served by the partial index on locked seats.
      */
-    @Scheduled(fixedRate = 30_000)
+    @Scheduled(fixedRateString = "${seat.expiry.sweep-interval-ms:600000}")
     @Transactional
     public void clearExpiredSeatLocks() {
         LocalDateTime now = LocalDateTime.now();
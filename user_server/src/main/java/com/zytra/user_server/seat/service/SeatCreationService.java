@@ -1,39 +1,144 @@
 package com.zytra.user_server.seat.service;
 
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import com.zytra.user_server.enums.TripSeatStatus;
-import com.zytra.user_server.trips.entity.TripEntity;
-import com.zytra.user_server.trips.repository.TripRepository;
+import com.zytra.user_server.seat.dto.SeatLayoutRef;
+import com.zytra.user_server.seat.repository.SeatLayoutRepository;
+import com.zytra.user_server.seat.repository.SeatRepository;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Creates a row for every seat of new trips up front, when
+ * {@code seat.initialization.eager} is set.
+ *
+ * Off by default: seat rows are created when a seat is first held (see
+ * {@link SeatHoldWriter}) and a seat without a row is available, so trips
+ * need no seat rows to be searched, shown or booked.
+ *
+ * Waiting trips are claimed in chunks of one seat layout, each chunk seeded
+ * and marked initialized by a single statement in its own transaction. A few
+ * workers on virtual threads take chunks until none are left; claims skip
+ * trips locked by another worker or instance, so no trip is seeded twice.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class SeatCreationService {
 
-    private final TripRepository tripRepository;
-    private final SeatCreationProcessor seatCreationProcessor;
+    private final SeatRepository seatRepository;
+    private final SeatLayoutRepository seatLayoutRepository;
+    private final SeatLayoutRegistry seatLayoutRegistry;
+
+    private final Counter tripsInitialized;
+    private final Timer chunkTimer;
+    private final AtomicLong lastRunTripsPerSecond = new AtomicLong();
+
+    @Value("${seat.initialization.eager:false}")
+    private boolean eager;
+
+    @Value("${seat.initialization.chunk-size:500}")
+    private int chunkSize;
+
+    // Each worker holds a database connection while its chunk runs
+    @Value("${seat.initialization.parallelism:4}")
+    private int parallelism;
+
+    public SeatCreationService(SeatRepository seatRepository, SeatLayoutRepository seatLayoutRepository,
+            SeatLayoutRegistry seatLayoutRegistry, MeterRegistry meterRegistry) {
+        this.seatRepository = seatRepository;
+        this.seatLayoutRepository = seatLayoutRepository;
+        this.seatLayoutRegistry = seatLayoutRegistry;
+
+        this.tripsInitialized = Counter.builder("seat.initialization.trips")
+                .description("Trips whose seat rows were created")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("seat.initialization.chunk")
+                .description("Time to claim and seed one chunk of trips")
+                .register(meterRegistry);
+        Gauge.builder("seat.initialization.throughput", lastRunTripsPerSecond, AtomicLong::get)
+                .baseUnit("trips/s")
+                .register(meterRegistry);
+    }
 
     @Scheduled(fixedRate = 30000)
     public void initializeSeatsForTrip() {
+        if (!eager) {
+            return;
+        }
 
-        List<TripEntity> trips = tripRepository.findBySeatStatus(TripSeatStatus.NOT_INITIALIZED);
+        try {
+            initializePending(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Seat initialization failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Create the seat rows of every trip from {@code from} on still waiting
+     * for them. Returns the number of trips initialized.
+     */
+    public synchronized int initializePending(LocalDate from) {
+        long started = System.nanoTime();
 
-        for (TripEntity trip : trips) {
+        int initialized = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (SeatLayoutRef layout : seatLayoutRepository.findPendingInitialization(from)) {
+                String[] seatNumbers = seatLayoutRegistry.get(layout).seatNumbers().toArray(String[]::new);
+                List<Callable<Integer>> workers = Collections.nCopies(parallelism,
+                        () -> drain(from, layout, seatNumbers));
 
-            try {
-                seatCreationProcessor.createSeatsForSingleTrip(trip);
-                log.info("Completed seat initialization for Trip ID: {}", trip.getId());
-            } catch (Exception e) {
-                log.error("Error initializing seats for Trip ID: {}: {}", trip.getId(), e.getMessage());
+                for (Future<Integer> worker : executor.invokeAll(workers)) {
+                    try {
+                        initialized += worker.get();
+                    } catch (ExecutionException e) {
+                        log.error("Seat initialization worker failed: {}", e.getCause().getMessage());
+                    }
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (initialized > 0) {
+            long elapsedNanos = System.nanoTime() - started;
+            lastRunTripsPerSecond.set(initialized * 1_000_000_000L / Math.max(elapsedNanos, 1));
+            log.info("Initialized seats of {} trips in {} ms", initialized,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+        return initialized;
+    }
 
+    /**
+     * Seed chunk after chunk until no unclaimed trip of the layout is left.
+     */
+    private int drain(LocalDate from, SeatLayoutRef layout, String[] seatNumbers) {
+        int initialized = 0;
+        while (true) {
+            List<Long> tripIds = chunkTimer.record(() -> seatRepository.initializeSeats(from, layout.seatLayoutId(),
+                    layout.totalSeats(), chunkSize, seatNumbers));
+            initialized += tripIds.size();
+            tripsInitialized.increment(tripIds.size());
+
+            if (tripIds.size() < chunkSize) {
+                return initialized;
+            }
         }
     }
 
@@ -0,0 +1,186 @@
+package com.zytra.user_server.seat.service;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.zytra.user_server.seat.dto.SeatEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Pushes seat changes of a trip to everyone watching it, as server-sent
+ * events.
+ *
+ * An event is serialized once and the same frame is queued for every
+ * subscriber of the trip. Each subscriber has a bounded queue, emptied onto
+ * its connection by its own virtual thread, so a slow client holds up no one
+ * but itself. A client that falls a full queue behind is disconnected; it
+ * reconnects and reads the seat map again rather than being fed stale
+ * changes. Trips nobody watches cost nothing to publish to.
+ */
+@Service
+@Slf4j
+public class SeatEventHub {
+
+    // Keeps idle connections open through proxies, and finds dead ones
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+
+    private final JsonMapper jsonMapper;
+    private final long timeoutMillis;
+    private final int queueCapacity;
+    private final ConcurrentHashMap<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Counter published;
+    private final Counter dropped;
+
+    public SeatEventHub(
+            JsonMapper jsonMapper,
+            @Value("${seat.events.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${seat.events.queue-capacity:256}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+
+        this.jsonMapper = jsonMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.queueCapacity = queueCapacity;
+
+        this.published = Counter.builder("seat.events.published")
+                .description("Seat events published to trips with subscribers")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("seat.events.dropped")
+                .description("Subscribers disconnected for falling behind")
+                .register(meterRegistry);
+        Gauge.builder("seat.events.subscribers", this, SeatEventHub::subscriberCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start streaming the seat changes of a trip to a new subscriber.
+     */
+    public SseEmitter subscribe(long tripId) {
+        return subscribe(tripId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(long tripId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(tripId, emitter, new ArrayBlockingQueue<>(queueCapacity));
+        // Added inside the map operation, so remove() cannot drop the set
+        // between finding it and adding to it
+        subscribers.compute(tripId, (id, watching) -> {
+            watching = watching == null ? ConcurrentHashMap.newKeySet() : watching;
+            watching.add(subscriber);
+            return watching;
+        });
+
+        emitter.onTimeout(emitter::complete);
+        emitter.onCompletion(subscriber::close);
+        emitter.onError(failure -> subscriber.close());
+        subscriber.start();
+        return emitter;
+    }
+
+    /**
+     * Send the event to the trip's subscribers.
+     */
+    public void publish(long tripId, SeatEvent event) {
+        Set<Subscriber> watching = subscribers.get(tripId);
+        if (watching == null || watching.isEmpty() || event.seats().isEmpty()) {
+            return;
+        }
+
+        Set<DataWithMediaType> frame = SseEmitter.event()
+                .data(jsonMapper.writeValueAsString(event))
+                .build();
+        published.increment();
+
+        for (Subscriber subscriber : watching) {
+            if (!subscriber.offer(frame)) {
+                dropped.increment();
+                subscriber.close();
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${seat.events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        // A subscriber too far behind to take it is dropped by the next event
+        subscribers.values().forEach(watching -> watching.forEach(subscriber -> subscriber.offer(HEARTBEAT)));
+    }
+
+    int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.tripId, (tripId, watching) -> {
+            watching.remove(subscriber);
+            return watching.isEmpty() ? null : watching;
+        });
+    }
+
+    private final class Subscriber implements Runnable {
+
+        private final long tripId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<DataWithMediaType>> outbox;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Thread sender;
+
+        private Subscriber(long tripId, SseEmitter emitter, BlockingQueue<Set<DataWithMediaType>> outbox) {
+            this.tripId = tripId;
+            this.emitter = emitter;
+            this.outbox = outbox;
+        }
+
+        void start() {
+            sender = Thread.ofVirtual().name("seat-events-" + tripId).start(this);
+        }
+
+        boolean offer(Set<DataWithMediaType> frame) {
+            return !closed.get() && outbox.offer(frame);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed.get()) {
+                    emitter.send(outbox.take());
+                }
+            } catch (InterruptedException e) {
+                // Closed while waiting for the next event
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Seat event subscriber of trip {} went away: {}", tripId, e.getMessage());
+            } finally {
+                close();
+                emitter.complete();
+            }
+        }
+
+        /**
+         * Stop sending; never blocks, so publishers are not held up by the
+         * connection. The sender completes the response on its way out.
+         */
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                remove(this);
+                Thread thread = sender;
+                if (thread != null && thread != Thread.currentThread()) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+    }
+
+}
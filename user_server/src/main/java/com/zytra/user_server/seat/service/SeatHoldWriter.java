@@ -0,0 +1,181 @@
+package com.zytra.user_server.seat.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+import com.zytra.user_server.seat.repository.SeatRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists seat holds claimed in memory to the {@code seats} table.
+ *
+ * Holds are queued and written by a single thread in batches, one
+ * transaction per batch, in the order they were queued. Each hold's future
+ * completes once its batch has committed, or fails when it could not be
+ * written; no hold taken off the queue is left without an answer. A failing
+ * batch is retried hold by hold, so one bad write does not fail the others.
+ */
+@Service
+@Slf4j
+public class SeatHoldWriter {
+
+    private record HoldWrite(long tripId, long owner, List<String> locked, List<String> released,
+            LocalDateTime lockedUntil, LocalDateTime claimedAt, CompletableFuture<Void> done) {
+    }
+
+    private final SeatRepository seatRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<HoldWrite> queue;
+    private final int batchSize;
+    private final Timer batchTimer;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public SeatHoldWriter(
+            SeatRepository seatRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${seat.hold.queue-capacity:10000}") int queueCapacity,
+            @Value("${seat.hold.batch-size:200}") int batchSize,
+            MeterRegistry meterRegistry) {
+
+        this.seatRepository = seatRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+
+        this.batchTimer = Timer.builder("seat.hold.write")
+                .description("Time to persist one batch of seat holds")
+                .register(meterRegistry);
+        Gauge.builder("seat.hold.pending", queue, BlockingQueue::size)
+                .description("Seat holds waiting to be persisted")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform().name("seat-hold-writer").daemon().start(this::drain);
+    }
+
+    /**
+     * Stop taking holds and write those already queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Queue the write of a claim made at {@code claimedAt}: the seats now
+     * locked by the owner until {@code lockedUntil} and the seats the owner
+     * let go. The write fails with {@link SeatUnavailableException} when the
+     * table shows any of the seats taken by someone else, e.g. through
+     * another server.
+     */
+    public CompletableFuture<Void> write(long tripId, long owner, List<String> locked, List<String> released,
+            LocalDateTime lockedUntil, LocalDateTime claimedAt) {
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!running || !queue.offer(new HoldWrite(tripId, owner, locked, released, lockedUntil, claimedAt, done))) {
+            done.completeExceptionally(new IllegalStateException("Seat hold queue is full"));
+        }
+        return done;
+    }
+
+    private void drain() {
+        List<HoldWrite> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                HoldWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                // Only if the write itself died, e.g. out of memory
+                for (HoldWrite write : batch) {
+                    write.done().completeExceptionally(new IllegalStateException("Seat hold was not written"));
+                }
+                batch.clear();
+            }
+        }
+
+        // Anything still queued can no longer be written
+        HoldWrite left;
+        while ((left = queue.poll()) != null) {
+            left.done().completeExceptionally(new IllegalStateException("Seat hold writer stopped"));
+        }
+    }
+
+    private void persist(List<HoldWrite> batch) {
+        try {
+            batchTimer.record(() -> transactionTemplate.executeWithoutResult(status -> batch.forEach(this::apply)));
+            batch.forEach(write -> write.done().complete(null));
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            log.debug("Batch of {} seat holds failed, retrying one by one: {}", batch.size(), e.getMessage());
+        }
+
+        for (HoldWrite write : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> apply(write));
+                write.done().complete(null);
+            } catch (RuntimeException e) {
+                fail(write, e);
+            }
+        }
+    }
+
+    private void fail(HoldWrite write, RuntimeException e) {
+        // Seats taken through another server are expected under contention
+        if (!(e instanceof SeatUnavailableException)) {
+            log.warn("Failed to persist seat hold for trip {}: {}", write.tripId(), e.getMessage());
+        }
+        write.done().completeExceptionally(e);
+    }
+
+    private void apply(HoldWrite write) {
+        if (!write.locked().isEmpty()) {
+            List<String> locked = seatRepository.lockSeatsIfAvailable(write.tripId(),
+                    write.locked().toArray(String[]::new), write.owner(), write.lockedUntil(), write.claimedAt());
+
+            // Some seat is held in the table but was free in memory; refuse
+            // the whole hold, rolling back the seats already locked
+            if (locked.size() != write.locked().size()) {
+                throw new SeatUnavailableException("Seat already locked");
+            }
+        }
+        if (!write.released().isEmpty()) {
+            seatRepository.releaseLocks(write.tripId(), write.released(), write.owner());
+        }
+    }
+
+}
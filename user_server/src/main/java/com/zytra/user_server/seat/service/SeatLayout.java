@@ -0,0 +1,218 @@
+package com.zytra.user_server.seat.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.zytra.user_server.enums.SeatLayoutType;
+
+/**
+ * Where the seats of a bus are and what they are called, compiled once from
+ * a layout definition and shared by every trip of every bus using it.
+ *
+ * Seats are numbered by position, deck by deck and row by row; lookup tables
+ * from position to label and back are built here, so nothing derives a seat
+ * label per request. Each deck is a grid of rows, with gaps for aisles and
+ * missing seats.
+ *
+ * A definition has one line per row, seat labels separated by spaces, with
+ * {@value #GAP} for a gap. A line {@value #DECK_BREAK} starts the next deck:
+ *
+ * <pre>
+ * L1 _ L2 L3
+ * L4 _ L5 L6
+ * ---
+ * U1 _ U2 U3
+ * </pre>
+ */
+public final class SeatLayout {
+
+    public static final String GAP = "_";
+    public static final String DECK_BREAK = "---";
+
+    // Length of seats.seat_number
+    public static final int MAX_LABEL_LENGTH = 5;
+
+    static final int NO_SEAT = -1;
+
+    private static final int STANDARD_SEATS_PER_ROW = 4;
+
+    private final SeatLayoutType type;
+    private final List<String> seatNumbers;
+    private final Map<String, Integer> positions;
+    // Seats on a deck; any after them are extra seats
+    private final int placed;
+    // Per deck, per row, per column: the seat there, or NO_SEAT
+    private final int[][][] decks;
+    private final int columns;
+
+    private SeatLayout(SeatLayoutType type, List<String> seatNumbers, int placed, int[][][] decks) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < seatNumbers.size(); i++) {
+            String seatNumber = seatNumbers.get(i);
+            if (seatNumber.isEmpty() || seatNumber.equals(GAP) || seatNumber.length() > MAX_LABEL_LENGTH) {
+                throw new IllegalArgumentException("Invalid seat number: " + seatNumber);
+            }
+            if (positions.putIfAbsent(seatNumber, i) != null) {
+                throw new IllegalArgumentException("Duplicate seat number: " + seatNumber);
+            }
+        }
+
+        this.type = type;
+        this.seatNumbers = List.copyOf(seatNumbers);
+        this.positions = Map.copyOf(positions);
+        this.placed = placed;
+        this.decks = decks;
+        this.columns = Arrays.stream(decks).flatMap(Arrays::stream).mapToInt(row -> row.length).max().orElse(0);
+    }
+
+    /**
+     * Compile a layout definition.
+     *
+     * @throws IllegalArgumentException when the definition has no seats, a
+     *                                  label twice or a label too long
+     */
+    public static SeatLayout compile(SeatLayoutType type, String definition) {
+        List<String> seatNumbers = new ArrayList<>();
+        List<int[][]> decks = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>();
+
+        for (String line : definition.strip().split("\\R")) {
+            line = line.strip();
+            if (line.equals(DECK_BREAK)) {
+                decks.add(rows.toArray(int[][]::new));
+                rows = new ArrayList<>();
+                continue;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            String[] cells = line.split("\\s+");
+            int[] row = new int[cells.length];
+            for (int col = 0; col < cells.length; col++) {
+                if (cells[col].equals(GAP)) {
+                    row[col] = NO_SEAT;
+                } else {
+                    row[col] = seatNumbers.size();
+                    seatNumbers.add(cells[col]);
+                }
+            }
+            rows.add(row);
+        }
+        decks.add(rows.toArray(int[][]::new));
+
+        if (seatNumbers.isEmpty()) {
+            throw new IllegalArgumentException("Seat layout has no seats");
+        }
+        return new SeatLayout(type, seatNumbers, seatNumbers.size(), decks.toArray(int[][][]::new));
+    }
+
+    /**
+     * Layout of a bus without a stored one: rows of four seats, labelled
+     * A1-A4, B1-B4, ... (then AA, AB, ...), the last row short if the seats
+     * do not fill it.
+     */
+    public static SeatLayout standard(int totalSeats) {
+        if (totalSeats <= 0) {
+            throw new IllegalArgumentException("Bus has no seats: " + totalSeats);
+        }
+
+        List<String> seatNumbers = new ArrayList<>(totalSeats);
+        int[][] rows = new int[Math.ceilDiv(totalSeats, STANDARD_SEATS_PER_ROW)][];
+        for (int r = 0; r < rows.length; r++) {
+            String rowLabel = rowLabel(r);
+            rows[r] = new int[Math.min(STANDARD_SEATS_PER_ROW, totalSeats - seatNumbers.size())];
+            for (int col = 0; col < rows[r].length; col++) {
+                rows[r][col] = seatNumbers.size();
+                seatNumbers.add(rowLabel + (col + 1));
+            }
+        }
+        return new SeatLayout(SeatLayoutType.SEATER, seatNumbers, seatNumbers.size(), new int[][][] { rows });
+    }
+
+    /**
+     * A single row of the given seats.
+     */
+    public static SeatLayout of(List<String> seatNumbers) {
+        int[] row = new int[seatNumbers.size()];
+        Arrays.setAll(row, seat -> seat);
+        return new SeatLayout(SeatLayoutType.SEATER, seatNumbers, seatNumbers.size(), new int[][][] { { row } });
+    }
+
+    /**
+     * This layout with more seats after its own, placed on no deck. For
+     * stored seats a layout does not know, e.g. from before the bus got it.
+     */
+    public SeatLayout withExtraSeats(List<String> extraSeatNumbers) {
+        List<String> all = new ArrayList<>(seatNumbers);
+        all.addAll(extraSeatNumbers);
+        return new SeatLayout(type, all, placed, decks);
+    }
+
+    private static String rowLabel(int row) {
+        StringBuilder label = new StringBuilder();
+        for (int r = row; r >= 0; r = r / 26 - 1) {
+            label.insert(0, (char) ('A' + r % 26));
+        }
+        return label.toString();
+    }
+
+    public SeatLayoutType type() {
+        return type;
+    }
+
+    public int size() {
+        return seatNumbers.size();
+    }
+
+    public List<String> seatNumbers() {
+        return seatNumbers;
+    }
+
+    public String seatNumber(int seat) {
+        return seatNumbers.get(seat);
+    }
+
+    /**
+     * Position of the seat, or -1 when the layout has no such seat.
+     */
+    public int indexOf(String seatNumber) {
+        Integer seat = seatNumber != null ? positions.get(seatNumber) : null;
+        return seat != null ? seat : NO_SEAT;
+    }
+
+    /**
+     * Whether the seat is on a deck of this layout, and not one of its extra
+     * seats.
+     */
+    public boolean isPlaced(int seat) {
+        return seat >= 0 && seat < placed;
+    }
+
+    public int deckCount() {
+        return decks.length;
+    }
+
+    public int rows(int deck) {
+        return decks[deck].length;
+    }
+
+    /**
+     * Width of the widest row on any deck.
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Seat at the given place, or -1 for a gap or past the end of the row.
+     */
+    public int seatAt(int deck, int row, int col) {
+        int[] cells = decks[deck][row];
+        return col < cells.length ? cells[col] : NO_SEAT;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.zytra.user_server.seat.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.seat.dto.SeatLayoutRef;
+import com.zytra.user_server.seat.entity.SeatLayoutEntity;
+import com.zytra.user_server.seat.repository.SeatLayoutRepository;
+import com.zytra.user_server.trips.exception.TripNotFoundException;
+
+/**
+ * Compiled {@link SeatLayout}s, one per stored layout and one per number of
+ * seats for buses without one, each compiled on first use and shared from
+ * then on. Stored layouts never change, so they are kept for good.
+ */
+@Service
+public class SeatLayoutRegistry {
+
+    private final SeatLayoutRepository seatLayoutRepository;
+    private final Map<Long, SeatLayout> stored = new ConcurrentHashMap<>();
+    private final Map<Integer, SeatLayout> standard = new ConcurrentHashMap<>();
+
+    public SeatLayoutRegistry(SeatLayoutRepository seatLayoutRepository) {
+        this.seatLayoutRepository = seatLayoutRepository;
+    }
+
+    /**
+     * Layout of the bus running the trip.
+     */
+    public SeatLayout forTrip(long tripId) {
+        return get(seatLayoutRepository.findByTripId(tripId)
+                .orElseThrow(() -> new TripNotFoundException("Trip not found with id: " + tripId)));
+    }
+
+    public SeatLayout get(SeatLayoutRef ref) {
+        if (ref.seatLayoutId() == null) {
+            return standard.computeIfAbsent(ref.totalSeats(), SeatLayout::standard);
+        }
+        return stored.computeIfAbsent(ref.seatLayoutId(), this::compile);
+    }
+
+    private SeatLayout compile(Long seatLayoutId) {
+        SeatLayoutEntity entity = seatLayoutRepository.findById(seatLayoutId)
+                .orElseThrow(() -> new IllegalStateException("Seat layout not found with id: " + seatLayoutId));
+        return SeatLayout.compile(entity.getType(), entity.getDefinition());
+    }
+
+}
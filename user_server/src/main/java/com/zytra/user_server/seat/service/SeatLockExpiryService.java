@@ -0,0 +1,177 @@
+package com.zytra.user_server.seat.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.seat.dto.SeatEvent;
+import com.zytra.user_server.seat.dto.SeatLockRow;
+import com.zytra.user_server.seat.repository.SeatRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Releases seat locks in the {@code seats} table as they run out.
+ *
+ * Every stored lock is scheduled on a {@link TimerWheel} for its expiry;
+ * locks due in the same tick are released together, one statement per trip,
+ * touching only their own rows. Locks stored before a restart are scheduled
+ * again at startup. A lock that was extended or booked in the meantime is
+ * left alone by the release, so a stale entry does no harm. Seats actually
+ * released are announced to the trip's watchers.
+ *
+ * In memory an expired lock already counts as free; this keeps the table,
+ * and everything else that reads it, in step. {@link ClearExpiredLocksService}
+ * catches whatever is missed here, e.g. while the database was unreachable.
+ */
+@Service
+@Slf4j
+public class SeatLockExpiryService {
+
+    private record Expiry(long tripId, List<String> seatNumbers, long until) {
+    }
+
+    private final SeatRepository seatRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SeatEventHub seatEventHub;
+    private final int batchSize;
+    private final TimerWheel<Expiry> wheel;
+    // Scheduled from any thread, moved onto the wheel by the ticking thread
+    private final Queue<Expiry> incoming = new ConcurrentLinkedQueue<>();
+    private final Counter released;
+
+    public SeatLockExpiryService(
+            SeatRepository seatRepository,
+            TransactionTemplate transactionTemplate,
+            SeatEventHub seatEventHub,
+            @Value("${seat.expiry.tick-ms:1000}") long tickMillis,
+            @Value("${seat.expiry.batch-size:500}") int batchSize,
+            MeterRegistry meterRegistry) {
+
+        this.seatRepository = seatRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.seatEventHub = seatEventHub;
+        this.batchSize = batchSize;
+        this.wheel = new TimerWheel<>(tickMillis, System.currentTimeMillis());
+
+        this.released = Counter.builder("seat.lock.expired")
+                .description("Expired seat locks released on time")
+                .register(meterRegistry);
+        Gauge.builder("seat.lock.expiry.pending", this, SeatLockExpiryService::pending)
+                .description("Seat locks waiting for their expiry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Release the seats in the table once their lock, held until
+     * {@code until}, has run out.
+     */
+    public void schedule(long tripId, List<String> seatNumbers, LocalDateTime until) {
+        if (!seatNumbers.isEmpty()) {
+            incoming.add(new Expiry(tripId, List.copyOf(seatNumbers), SeatStateEngine.epochMillis(until)));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            int scheduled = scheduleActiveLocks(LocalDateTime.now());
+            log.info("Scheduled expiry of {} seat locks", scheduled);
+        } catch (Exception e) {
+            log.warn("Active seat locks could not be loaded, leaving them to the sweep: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Schedule every lock still running in the table.
+     */
+    int scheduleActiveLocks(LocalDateTime now) {
+        List<SeatLockRow> rows = seatRepository.findActiveLocks(now);
+
+        // Seats locked together expire together
+        Map<Long, Map<LocalDateTime, List<String>>> locks = new LinkedHashMap<>();
+        for (SeatLockRow row : rows) {
+            locks.computeIfAbsent(row.tripId(), tripId -> new LinkedHashMap<>())
+                    .computeIfAbsent(row.lockedUntil(), until -> new ArrayList<>())
+                    .add(row.seatNumber());
+        }
+        locks.forEach((tripId, byExpiry) -> byExpiry.forEach((until, seats) -> schedule(tripId, seats, until)));
+        return rows.size();
+    }
+
+    @Scheduled(fixedDelayString = "${seat.expiry.tick-ms:1000}")
+    public void releaseExpiredLocks() {
+        releaseDue(System.currentTimeMillis());
+    }
+
+    /**
+     * Release the locks that ran out by {@code now}. Returns the number of
+     * seats released.
+     */
+    synchronized int releaseDue(long now) {
+        Expiry next;
+        while ((next = incoming.poll()) != null) {
+            wheel.schedule(next.until(), next);
+        }
+
+        Map<Long, Set<String>> due = new LinkedHashMap<>();
+        wheel.advance(now, expiry -> due.computeIfAbsent(expiry.tripId(), tripId -> new LinkedHashSet<>())
+                .addAll(expiry.seatNumbers()));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime time = SeatStateEngine.localDateTime(now);
+        Map<Long, List<String>> releasedSeats;
+        try {
+            releasedSeats = transactionTemplate.execute(status -> {
+                Map<Long, List<String>> releasedByTrip = new LinkedHashMap<>();
+                for (Map.Entry<Long, Set<String>> trip : due.entrySet()) {
+                    List<String> seats = List.copyOf(trip.getValue());
+                    for (int from = 0; from < seats.size(); from += batchSize) {
+                        String[] chunk = seats.subList(from, Math.min(from + batchSize, seats.size()))
+                                .toArray(String[]::new);
+                        List<String> releasedChunk = seatRepository.releaseExpiredLocks(trip.getKey(), chunk, time);
+                        if (!releasedChunk.isEmpty()) {
+                            releasedByTrip.computeIfAbsent(trip.getKey(), tripId -> new ArrayList<>())
+                                    .addAll(releasedChunk);
+                        }
+                    }
+                }
+                return releasedByTrip;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to release expired seat locks of {} trips: {}", due.size(), e.getMessage());
+            return 0;
+        }
+
+        int count = 0;
+        for (Map.Entry<Long, List<String>> trip : releasedSeats.entrySet()) {
+            seatEventHub.publish(trip.getKey(), SeatEvent.released(trip.getValue()));
+            count += trip.getValue().size();
+        }
+        released.increment(count);
+        return count;
+    }
+
+    private double pending() {
+        return wheel.size() + incoming.size();
+    }
+
+}
@@ -1,8 +1,12 @@
 package com.zytra.user_server.seat.service;
 
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
 import com.zytra.user_server.seat.dto.LockSeatsResponse;
 
 public interface SeatService {
     LockSeatsResponse lockSeats(long tripId, String[] seats, Long lockOwner);
 
+    SseEmitter subscribe(long tripId);
+
 }
@@ -0,0 +1,263 @@
+package com.zytra.user_server.seat.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zytra.user_server.enums.SeatStatus;
+import com.zytra.user_server.seat.dto.SeatEvent;
+import com.zytra.user_server.seat.dto.SeatStateRow;
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+import com.zytra.user_server.seat.repository.SeatRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Seat state of active trips kept in memory as {@link TripSeats}.
+ *
+ * A trip is loaded on first access, its stored seats laid over the
+ * {@link SeatLayout} of its bus, and stays cached until it has been idle for a
+ * while. Availability checks and seat maps are answered from memory. Locks
+ * are claimed here first, with compare-and-set and without blocking, and
+ * then written to the table by {@link SeatHoldWriter}; a claim that cannot
+ * be written is undone. The table has the last word: when it shows a claimed
+ * seat taken, e.g. by another server, the claim fails and the trip is
+ * reloaded. Stored locks are released from the table when they run out by
+ * {@link SeatLockExpiryService}. Held seats become booked once their booking
+ * is stored, and free again if it is cancelled. Stored changes are pushed to
+ * the trip's watchers through {@link SeatEventHub}.
+ *
+ * Each server sees only its own holds: a trip is read from the table again
+ * only once it has been idle or a claim ran into a seat taken there. With
+ * several servers, requests for a trip must therefore be routed to one
+ * server (sticky by trip id); a trip served by two would show each the
+ * other's holds as free until it tried to take them. The table still keeps
+ * them from being taken twice.
+ */
+@Service
+public class SeatStateEngine {
+
+    /**
+     * Seats held by the owner after a lock, and the seats of an earlier
+     * selection that were let go.
+     */
+    public record LockResult(List<String> locked, List<String> released) {
+    }
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final SeatRepository seatRepository;
+    private final SeatLayoutRegistry seatLayoutRegistry;
+    private final SeatHoldWriter seatHoldWriter;
+    private final SeatLockExpiryService seatLockExpiryService;
+    private final SeatEventHub seatEventHub;
+    private final Cache<Long, TripSeats> trips;
+    private final Counter conflicts;
+    private final int serverId;
+
+    public SeatStateEngine(
+            SeatRepository seatRepository,
+            SeatLayoutRegistry seatLayoutRegistry,
+            SeatHoldWriter seatHoldWriter,
+            SeatLockExpiryService seatLockExpiryService,
+            SeatEventHub seatEventHub,
+            @Value("${seat.state.max-trips:20000}") long maxTrips,
+            @Value("${seat.state.idle-minutes:30}") long idleMinutes,
+            @Value("${reference.node-id}") int serverId,
+            MeterRegistry meterRegistry) {
+
+        this.seatRepository = seatRepository;
+        this.seatLayoutRegistry = seatLayoutRegistry;
+        this.seatHoldWriter = seatHoldWriter;
+        this.seatLockExpiryService = seatLockExpiryService;
+        this.seatEventHub = seatEventHub;
+        this.serverId = serverId;
+        this.trips = Caffeine.newBuilder()
+                .maximumSize(maxTrips)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, trips, "seat.state");
+        this.conflicts = Counter.builder("seat.hold.conflicts")
+                .description("Seat lock requests refused because a seat was taken")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Copy of the trip's seats for reading.
+     */
+    public TripSeats snapshot(long tripId) {
+        return read(state(tripId));
+    }
+
+    /**
+     * Copy of the trip's seats for reading, or null when they are not in
+     * memory. Trips are only loaded once they are known to exist.
+     */
+    public TripSeats snapshotIfLoaded(long tripId) {
+        TripSeats seats = trips.getIfPresent(tripId);
+        return seats != null ? read(seats) : null;
+    }
+
+    private static TripSeats read(TripSeats seats) {
+        seats.expire(System.currentTimeMillis());
+        return seats.copy();
+    }
+
+    /**
+     * Lock the given seats for the owner until {@code until}. Any other seat
+     * the owner holds on the trip is released, so a new selection replaces
+     * the previous one.
+     *
+     * The seats are claimed in memory before this returns, all or none;
+     * nothing changes when a seat is not in the bus's layout, is booked or
+     * is held by someone else. The returned future completes once the claim is stored
+     * in the database. If it cannot be stored, the claim is undone and the
+     * future fails.
+     */
+    public CompletableFuture<LockResult> lock(long tripId, List<String> seatNumbers, long owner, LocalDateTime now,
+            LocalDateTime until) {
+
+        TripSeats seats = state(tripId);
+
+        int[] requested = new int[seatNumbers.size()];
+        for (int i = 0; i < requested.length; i++) {
+            requested[i] = seats.indexOf(seatNumbers.get(i));
+            // Extra seats are only there to show old bookings
+            if (!seats.layout().isPlaced(requested[i])) {
+                throw new IllegalArgumentException("One or more selected seats are invalid");
+            }
+        }
+        requested = Arrays.stream(requested).sorted().distinct().toArray();
+
+        TripSeats.Claim claim;
+        try {
+            claim = seats.claim(requested, owner, epochMillis(until), epochMillis(now));
+        } catch (SeatUnavailableException e) {
+            conflicts.increment();
+            throw e;
+        }
+
+        LockResult result = new LockResult(
+                Arrays.stream(claim.seats()).mapToObj(seats::seatNumber).toList(),
+                claim.released().stream().map(seats::seatNumber).toList());
+
+        return seatHoldWriter.write(tripId, owner, result.locked(), result.released(), until, now)
+                .whenComplete((done, failure) -> {
+                    if (failure == null) {
+                        seatLockExpiryService.schedule(tripId, result.locked(), until);
+                        seatEventHub.publish(tripId, SeatEvent.released(result.released()));
+                        seatEventHub.publish(tripId, SeatEvent.locked(result.locked(), owner, until));
+                    } else {
+                        seats.undo(claim);
+                    }
+                    // Readers may have seen the claim either way
+                    seats.changed(claim);
+                    // The table knows of holds this state does not; start
+                    // over from it
+                    if (failure instanceof SeatUnavailableException) {
+                        conflicts.increment();
+                        trips.invalidate(tripId);
+                    }
+                })
+                .thenApply(done -> result);
+    }
+
+    /**
+     * Mark the seats of a stored booking booked and tell the trip's
+     * watchers. A trip not in memory reads them from the table when loaded.
+     */
+    public void booked(long tripId, List<String> seatNumbers) {
+        TripSeats seats = trips.getIfPresent(tripId);
+        if (seats != null) {
+            int[] booked = seatNumbers.stream().mapToInt(seats::indexOf).toArray();
+            if (Arrays.stream(booked).allMatch(seat -> seat >= 0)) {
+                seats.booked(booked);
+            } else {
+                trips.invalidate(tripId);
+            }
+        }
+        seatEventHub.publish(tripId, SeatEvent.booked(seatNumbers));
+    }
+
+    /**
+     * Free the seats of a cancelled booking and tell the trip's watchers.
+     */
+    public void unbooked(long tripId, List<String> seatNumbers) {
+        TripSeats seats = trips.getIfPresent(tripId);
+        if (seats != null) {
+            int[] unbooked = seatNumbers.stream().mapToInt(seats::indexOf).toArray();
+            // A freed extra seat leaves the trip when it is loaded again
+            if (Arrays.stream(unbooked).allMatch(seats.layout()::isPlaced)) {
+                seats.unbooked(unbooked);
+            } else {
+                trips.invalidate(tripId);
+            }
+        }
+        seatEventHub.publish(tripId, SeatEvent.released(seatNumbers));
+    }
+
+    private TripSeats state(long tripId) {
+        return trips.get(tripId, this::load);
+    }
+
+    /**
+     * The trip's seats are those of its bus's layout; only seats ever held
+     * or booked have a row. Booked seats outside the layout, e.g. from
+     * before the bus got it, are kept after it as extra seats, so their
+     * bookings still show; they are never held again. Other stored seats
+     * outside the layout are left out.
+     */
+    private TripSeats load(Long tripId) {
+        SeatLayout layout = seatLayoutRegistry.forTrip(tripId);
+        List<SeatStateRow> rows = seatRepository.findSeatStates(tripId);
+
+        Set<String> extra = new LinkedHashSet<>();
+        for (SeatStateRow row : rows) {
+            if (isBooked(row) && layout.indexOf(row.seatNumber()) < 0) {
+                extra.add(row.seatNumber());
+            }
+        }
+        if (!extra.isEmpty()) {
+            layout = layout.withExtraSeats(List.copyOf(extra));
+        }
+
+        TripSeats seats = TripSeats.of(layout, serverId);
+        for (SeatStateRow row : rows) {
+            int seat = seats.indexOf(row.seatNumber());
+            if (isBooked(row)) {
+                seats.book(seat);
+            } else if (seat >= 0 && row.lockOwnerId() != null && row.lockedUntil() != null) {
+                seats.lock(seat, row.lockOwnerId(), epochMillis(row.lockedUntil()));
+            }
+        }
+        return seats;
+    }
+
+    private static boolean isBooked(SeatStateRow row) {
+        return row.status() == SeatStatus.BOOKED || row.bookingId() != null;
+    }
+
+    public static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    public static LocalDateTime localDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.zytra.user_server.seat.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: items scheduled for a deadline and handed back
+ * once time has advanced past it, at a granularity of one tick.
+ *
+ * Level 0 has one slot per tick for the next 64 ticks, level 1 one slot per
+ * 64 ticks, level 2 one slot per 4096 ticks. An item sits in the finest level
+ * that reaches its deadline and drops a level each time the wheel below it
+ * turns over, so scheduling and firing cost O(1) no matter how many items are
+ * pending. Deadlines beyond the last level wait in its farthest slot and are
+ * placed again when it comes round.
+ *
+ * Not thread-safe; one thread schedules and advances.
+ */
+final class TimerWheel<T> {
+
+    private static final int LEVELS = 3;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private record Timer<T>(long deadline, T item) {
+    }
+
+    private final long tickMillis;
+    private final List<List<List<Timer<T>>>> levels = new ArrayList<>(LEVELS);
+    private long currentTick;
+    private int size;
+
+    TimerWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+
+        for (int level = 0; level < LEVELS; level++) {
+            List<List<Timer<T>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new ArrayList<>());
+            }
+            levels.add(slots);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Hand the item back on the first advance to or past {@code deadlineMillis}.
+     * A deadline already passed fires on the next tick.
+     */
+    void schedule(long deadlineMillis, T item) {
+        // Round up, so an item never fires before its deadline
+        long deadline = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        place(new Timer<>(deadline, item));
+        size++;
+    }
+
+    /**
+     * Move time forward to {@code nowMillis}, passing every item that fell
+     * due to {@code due}, earliest deadline first.
+     */
+    void advance(long nowMillis, Consumer<T> due) {
+        long target = nowMillis / tickMillis;
+
+        while (currentTick < target) {
+            long tick = ++currentTick;
+
+            // Turn the coarser wheels first, so their items can land in the
+            // slots about to fire
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, slot(tick, level));
+                }
+            }
+
+            List<Timer<T>> slot = levels.get(0).get(slot(tick, 0));
+            if (!slot.isEmpty()) {
+                List<Timer<T>> fired = new ArrayList<>(slot);
+                slot.clear();
+                size -= fired.size();
+                fired.forEach(timer -> due.accept(timer.item()));
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        List<Timer<T>> timers = levels.get(level).get(slot);
+        if (timers.isEmpty()) {
+            return;
+        }
+        List<Timer<T>> moved = new ArrayList<>(timers);
+        timers.clear();
+        moved.forEach(this::place);
+    }
+
+    private void place(Timer<T> timer) {
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            // Slots of this level between now and the deadline; the slot of
+            // the current position has already been passed
+            if ((timer.deadline() >>> shift) - (currentTick >>> shift) < SLOTS) {
+                levels.get(level).get(slot(timer.deadline(), level)).add(timer);
+                return;
+            }
+        }
+
+        // Too far out: park in the last slot before this level wraps around
+        int top = LEVELS - 1;
+        int slot = (int) (((currentTick >>> (SLOT_BITS * top)) + SLOT_MASK) & SLOT_MASK);
+        levels.get(top).get(slot).add(timer);
+    }
+
+    private static int slot(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+}
@@ -0,0 +1,527 @@
+package com.zytra.user_server.seat.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+
+/**
+ * Seat state of one trip packed into atomic primitive arrays, changed with
+ * compare-and-set only.
+ *
+ * Bit i of {@code held} is set while seat i is taken: held by a user, booked,
+ * or in the middle of being claimed or released. The seat's hold word says
+ * which: the lock owner in the high 32 bits and the lock expiry in epoch
+ * seconds in the low 32 bits, {@link #BOOKED} for a booked seat, or
+ * {@link #CLAIMING} while the bit belongs to a claim or release in progress.
+ * A free seat has its bit clear and its hold word at {@link #CLAIMING}.
+ *
+ * A claim sets the bits of all requested seats word by word with a CAS and
+ * only then writes their hold words, so two claims can never both own a
+ * seat; if any seat turns out to be taken, the bits already set are cleared
+ * again and nothing changes. A hold that has expired is reclaimed by whoever
+ * runs into it.
+ *
+ * Every change to a seat raises the trip's seat map {@link #version()} and
+ * is stamped with it, so readers can ask which seats changed since the
+ * version they last saw. Locks are stamped when they are stored or undone,
+ * and again when they run out, which is noticed by the next reader. The
+ * low {@value #SERVER_BITS} bits of a version name the server that made
+ * it, so a version from another server is never taken for one of this
+ * state's.
+ *
+ * Seat numbers and positions come from the trip's {@link SeatLayout},
+ * shared with every trip of the same layout.
+ */
+public final class TripSeats {
+
+    public static final long NO_OWNER = 0L;
+
+    static final long CLAIMING = 0L;
+    static final long BOOKED = -1L;
+
+    static final int SERVER_BITS = 10;
+    static final int MAX_SERVER_ID = (1 << SERVER_BITS) - 1;
+    private static final long VERSION_STEP = 1L << SERVER_BITS;
+
+    /**
+     * A successful claim, with what it replaced so it can be undone.
+     */
+    static final class Claim {
+
+        private final int[] seats;
+        private final long[] previous;
+        private final long hold;
+        private final List<Integer> released = new ArrayList<>();
+        private final List<Long> releasedHolds = new ArrayList<>();
+
+        private Claim(int[] seats, long[] previous, long hold) {
+            this.seats = seats;
+            this.previous = previous;
+            this.hold = hold;
+        }
+
+        int[] seats() {
+            return seats;
+        }
+
+        List<Integer> released() {
+            return released;
+        }
+
+    }
+
+    private final SeatLayout layout;
+    private final AtomicLongArray held;
+    private final AtomicLongArray booked;
+    private final AtomicLongArray holds;
+
+    // Seat map versions, guarded by this: the version each seat last
+    // changed at, and the lock expiries already stamped
+    private final long firstVersion;
+    private final long[] changes;
+    private long version;
+    private long expiriesCheckedUntil;
+    private long nextExpiry = Long.MAX_VALUE;
+
+    private TripSeats(SeatLayout layout, AtomicLongArray held, AtomicLongArray booked, AtomicLongArray holds,
+            long firstVersion, long[] changes, long version) {
+        this.layout = layout;
+        this.held = held;
+        this.booked = booked;
+        this.holds = holds;
+        this.firstVersion = firstVersion;
+        this.changes = changes;
+        this.version = version;
+    }
+
+    /**
+     * Empty state for the seats of the layout, all of them available, with
+     * the versions of server {@code serverId}, 0 to {@value #MAX_SERVER_ID}.
+     *
+     * Versions count up from the current time in milliseconds, above the
+     * server id, so a trip loaded again, here or after a restart, carries on
+     * above the versions handed out before unless it changed more than once
+     * a millisecond. They stay below 2^53, exact as JSON numbers.
+     */
+    public static TripSeats of(SeatLayout layout, int serverId) {
+        if (serverId < 0 || serverId > MAX_SERVER_ID) {
+            throw new IllegalArgumentException("Server id must be between 0 and " + MAX_SERVER_ID);
+        }
+        int words = (layout.size() + 63) >>> 6;
+        long firstVersion = System.currentTimeMillis() * VERSION_STEP + serverId;
+        long[] changes = new long[layout.size()];
+        Arrays.fill(changes, firstVersion);
+        return new TripSeats(layout, new AtomicLongArray(words), new AtomicLongArray(words),
+                new AtomicLongArray(layout.size()), firstVersion, changes, firstVersion);
+    }
+
+    /**
+     * Empty state for a single row of the given seats, on server 0.
+     */
+    public static TripSeats of(List<String> seatNumbers) {
+        return of(SeatLayout.of(seatNumbers), 0);
+    }
+
+    /**
+     * Copy for reading. Each seat is read atomically, the seats one after
+     * the other.
+     */
+    public TripSeats copy() {
+        // Versions first: a change to the seats copied after is stamped
+        // above the copied version, and shows up again in the next delta
+        long copiedVersion;
+        long[] copiedChanges;
+        synchronized (this) {
+            copiedVersion = version;
+            copiedChanges = changes.clone();
+        }
+        return new TripSeats(layout, copy(held), copy(booked), copy(holds), firstVersion, copiedChanges,
+                copiedVersion);
+    }
+
+    private static AtomicLongArray copy(AtomicLongArray array) {
+        long[] values = new long[array.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i);
+        }
+        return new AtomicLongArray(values);
+    }
+
+    public SeatLayout layout() {
+        return layout;
+    }
+
+    public int size() {
+        return layout.size();
+    }
+
+    public String seatNumber(int seat) {
+        return layout.seatNumber(seat);
+    }
+
+    /**
+     * Position of the seat, or -1 when the trip has no such seat.
+     */
+    public int indexOf(String seatNumber) {
+        return layout.indexOf(seatNumber);
+    }
+
+    public boolean isBooked(int seat) {
+        return (booked.get(seat >>> 6) & (1L << seat)) != 0;
+    }
+
+    public boolean isLocked(int seat, long now) {
+        return isLive(holds.get(seat), now);
+    }
+
+    /**
+     * User holding a live lock on the seat, or {@link #NO_OWNER}.
+     */
+    public long lockOwner(int seat, long now) {
+        long hold = holds.get(seat);
+        return isLive(hold, now) ? owner(hold) : NO_OWNER;
+    }
+
+    /**
+     * Expiry of a live lock on the seat in epoch millis, or 0.
+     */
+    public long lockExpiry(int seat, long now) {
+        long hold = holds.get(seat);
+        return isLive(hold, now) ? expiry(hold) : 0L;
+    }
+
+    public int bookedCount() {
+        int count = 0;
+        for (int w = 0; w < booked.length(); w++) {
+            count += Long.bitCount(booked.get(w));
+        }
+        return count;
+    }
+
+    /**
+     * Seats neither booked nor held by a live lock.
+     */
+    public int availableCount(long now) {
+        int taken = 0;
+        for (int w = 0; w < held.length(); w++) {
+            long bits = held.get(w);
+            while (bits != 0) {
+                long hold = holds.get((w << 6) + Long.numberOfTrailingZeros(bits));
+                if (hold == BOOKED || hold == CLAIMING || expiry(hold) > now) {
+                    taken++;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return size() - taken;
+    }
+
+    /**
+     * Version of the seat map; raised by every change to a seat.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Seats changed after version {@code since}, ascending, or null when
+     * {@code since} is not a version of this state, e.g. one from before the
+     * trip was last loaded or from another server, and the whole map has to
+     * be read again.
+     */
+    public synchronized int[] changedSince(long since) {
+        if (since < firstVersion || since > version || (since - firstVersion) % VERSION_STEP != 0) {
+            return null;
+        }
+        int count = 0;
+        int[] changed = new int[changes.length];
+        for (int seat = 0; seat < changes.length; seat++) {
+            if (changes[seat] > since) {
+                changed[count++] = seat;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Stamp the seats of a claim, and those it released, as changed. Called
+     * once the claim is stored or undone.
+     */
+    synchronized void changed(Claim claim) {
+        version += VERSION_STEP;
+        for (int seat : claim.seats) {
+            changes[seat] = version;
+        }
+        for (int seat : claim.released) {
+            changes[seat] = version;
+        }
+        nextExpiry = Math.min(nextExpiry, expiry(claim.hold));
+    }
+
+    /**
+     * Stamp the locks that ran out by {@code now} as changed. Costs nothing
+     * until the next lock expiry has passed.
+     */
+    synchronized void expire(long now) {
+        if (now < nextExpiry) {
+            return;
+        }
+
+        boolean stamped = false;
+        long next = Long.MAX_VALUE;
+        for (int seat = 0; seat < changes.length; seat++) {
+            long hold = holds.get(seat);
+            if (hold == CLAIMING || hold == BOOKED) {
+                continue;
+            }
+            long expiry = expiry(hold);
+            if (expiry > now) {
+                next = Math.min(next, expiry);
+            } else if (expiry > expiriesCheckedUntil) {
+                if (!stamped) {
+                    version += VERSION_STEP;
+                    stamped = true;
+                }
+                changes[seat] = version;
+            }
+        }
+        expiriesCheckedUntil = now;
+        nextExpiry = next;
+    }
+
+    static long hold(long owner, long expiryMillis) {
+        if (owner <= 0 || owner > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid lock owner: " + owner);
+        }
+        return owner << 32 | (expiryMillis / 1000) & 0xffffffffL;
+    }
+
+    private static long owner(long hold) {
+        return hold >>> 32;
+    }
+
+    private static long expiry(long hold) {
+        return (hold & 0xffffffffL) * 1000;
+    }
+
+    private static boolean isLive(long hold, long now) {
+        return hold != CLAIMING && hold != BOOKED && expiry(hold) > now;
+    }
+
+    /**
+     * Claim all of {@code seats} (ascending, distinct) for the owner until
+     * {@code until}, then release any other seat the owner holds. Seats the
+     * owner already holds are extended. Either every seat is claimed or the
+     * state is left as it was.
+     *
+     * @throws SeatUnavailableException when a seat is booked or held by
+     *                                  someone else
+     */
+    Claim claim(int[] seats, long owner, long until, long now) {
+        long hold = hold(owner, until);
+        long[] previous = new long[seats.length];
+        long[] claimedBits = new long[held.length()];
+
+        try {
+            for (int first = 0; first < seats.length;) {
+                int word = seats[first] >>> 6;
+                int end = first;
+                long mask = 0;
+                while (end < seats.length && seats[end] >>> 6 == word) {
+                    mask |= 1L << seats[end++];
+                }
+                claimedBits[word] = claimWord(word, mask, seats, first, end, previous, owner, now);
+                first = end;
+            }
+        } catch (SeatUnavailableException e) {
+            undoClaim(seats, previous, claimedBits);
+            throw e;
+        }
+
+        for (int seat : seats) {
+            holds.set(seat, hold);
+        }
+
+        Claim claim = new Claim(seats, previous, hold);
+        releaseOthers(claim, owner, now);
+        return claim;
+    }
+
+    /**
+     * Set the free bits of {@code mask} in one CAS, after taking over the
+     * owner's own holds among the rest and reclaiming expired ones. Returns
+     * the bits newly set.
+     */
+    private long claimWord(int word, long mask, int[] seats, int first, int end, long[] previous, long owner,
+            long now) {
+
+        while (true) {
+            long current = held.get(word);
+            boolean retry = false;
+
+            for (int i = first; i < end; i++) {
+                int seat = seats[i];
+                if (previous[i] != CLAIMING || (current & (1L << seat)) == 0) {
+                    continue;
+                }
+
+                long taken = holds.get(seat);
+                if (taken == BOOKED) {
+                    throw new SeatUnavailableException("Seat already booked");
+                }
+                if (taken != CLAIMING && expiry(taken) <= now) {
+                    free(seat, taken);
+                    retry = true;
+                } else if (taken != CLAIMING && owner(taken) == owner) {
+                    if (holds.compareAndSet(seat, taken, CLAIMING)) {
+                        previous[i] = taken;
+                    } else {
+                        retry = true;
+                    }
+                } else {
+                    throw new SeatUnavailableException("Seat already locked");
+                }
+            }
+
+            if (retry) {
+                continue;
+            }
+
+            long fresh = mask & ~current;
+            if (fresh == 0 || held.compareAndSet(word, current, current | fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private void undoClaim(int[] seats, long[] previous, long[] claimedBits) {
+        for (int i = 0; i < seats.length; i++) {
+            if (previous[i] != CLAIMING) {
+                holds.set(seats[i], previous[i]);
+            }
+        }
+        for (int word = 0; word < claimedBits.length; word++) {
+            long bits = claimedBits[word];
+            if (bits != 0) {
+                held.getAndUpdate(word, current -> current & ~bits);
+            }
+        }
+    }
+
+    private void releaseOthers(Claim claim, long owner, long now) {
+        int next = 0;
+        for (int w = 0; w < held.length(); w++) {
+            long bits = held.get(w);
+            while (bits != 0) {
+                int seat = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                while (next < claim.seats.length && claim.seats[next] < seat) {
+                    next++;
+                }
+                if (next < claim.seats.length && claim.seats[next] == seat) {
+                    continue;
+                }
+
+                long hold = holds.get(seat);
+                if (isLive(hold, now) && owner(hold) == owner && free(seat, hold)) {
+                    claim.released.add(seat);
+                    claim.releasedHolds.add(hold);
+                }
+            }
+        }
+    }
+
+    /**
+     * Undo a claim whose write failed. Seats changed by someone else since
+     * are left alone.
+     */
+    void undo(Claim claim) {
+        for (int i = 0; i < claim.seats.length; i++) {
+            int seat = claim.seats[i];
+            if (claim.previous[i] != CLAIMING) {
+                holds.compareAndSet(seat, claim.hold, claim.previous[i]);
+            } else {
+                free(seat, claim.hold);
+            }
+        }
+
+        for (int i = 0; i < claim.released.size(); i++) {
+            int seat = claim.released.get(i);
+            long bit = 1L << seat;
+            long current = held.get(seat >>> 6);
+            if ((current & bit) == 0 && held.compareAndSet(seat >>> 6, current, current | bit)) {
+                holds.set(seat, claim.releasedHolds.get(i));
+            }
+        }
+    }
+
+    /**
+     * Release the seat if its hold word is still {@code expected}.
+     */
+    private boolean free(int seat, long expected) {
+        if (!holds.compareAndSet(seat, expected, CLAIMING)) {
+            return false;
+        }
+        held.getAndUpdate(seat >>> 6, current -> current & ~(1L << seat));
+        return true;
+    }
+
+    /**
+     * Mark seats booked once their booking is stored, over whatever holds
+     * them, and stamp them as changed. A claim racing this one fails to
+     * store, as the table has the seats booked, and has the trip reloaded.
+     */
+    void booked(int[] seats) {
+        for (int seat : seats) {
+            book(seat);
+        }
+        synchronized (this) {
+            version += VERSION_STEP;
+            for (int seat : seats) {
+                changes[seat] = version;
+            }
+        }
+    }
+
+    /**
+     * Free booked seats once their booking is cancelled, and stamp them as
+     * changed. Seats not booked are left alone.
+     */
+    void unbooked(int[] seats) {
+        for (int seat : seats) {
+            // Claims see the seat taken until its bit is cleared
+            if (holds.compareAndSet(seat, BOOKED, CLAIMING)) {
+                booked.getAndUpdate(seat >>> 6, current -> current & ~(1L << seat));
+                held.getAndUpdate(seat >>> 6, current -> current & ~(1L << seat));
+            }
+        }
+        synchronized (this) {
+            version += VERSION_STEP;
+            for (int seat : seats) {
+                changes[seat] = version;
+            }
+        }
+    }
+
+    void book(int seat) {
+        booked.getAndUpdate(seat >>> 6, current -> current | 1L << seat);
+        held.getAndUpdate(seat >>> 6, current -> current | 1L << seat);
+        holds.set(seat, BOOKED);
+    }
+
+    /**
+     * Loading only; the state is not shared yet.
+     */
+    void lock(int seat, long owner, long until) {
+        held.getAndUpdate(seat >>> 6, current -> current | 1L << seat);
+        holds.set(seat, hold(owner, until));
+        synchronized (this) {
+            nextExpiry = Math.min(nextExpiry, expiry(holds.get(seat)));
+        }
+    }
+
+}
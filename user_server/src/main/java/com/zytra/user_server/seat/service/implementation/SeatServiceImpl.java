@@ -1,37 +1,46 @@
 package com.zytra.user_server.seat.service.implementation;
 
+import com.zytra.user_server.bus.service.SearchResultCache;
 import com.zytra.user_server.seat.service.SeatService;
-import com.zytra.user_server.user.entity.UserEntity;
 import com.zytra.user_server.user.repository.UserRepository;
 
-import jakarta.transaction.Transactional;
-
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import com.zytra.user_server.enums.SeatStatus;
 import com.zytra.user_server.seat.dto.LockSeatsResponse;
-import com.zytra.user_server.seat.entity.SeatEntity;
-import com.zytra.user_server.seat.repository.SeatRepository;
-
-import lombok.RequiredArgsConstructor;
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+import com.zytra.user_server.seat.service.SeatEventHub;
+import com.zytra.user_server.seat.service.SeatStateEngine;
+import com.zytra.user_server.trips.exception.TripNotFoundException;
+import com.zytra.user_server.trips.repository.TripRepository;
 
 @Service
-@RequiredArgsConstructor
 public class SeatServiceImpl implements SeatService {
 
     private final UserRepository userRepository;
-    private final SeatRepository seatRepository;
+    private final TripRepository tripRepository;
+    private final SeatStateEngine seatStateEngine;
+    private final SearchResultCache searchResultCache;
+    private final SeatEventHub seatEventHub;
 
     private static final int LOCK_DURATION_MINUTES = 10;
 
+    public SeatServiceImpl(UserRepository userRepository, TripRepository tripRepository,
+            SeatStateEngine seatStateEngine, SearchResultCache searchResultCache, SeatEventHub seatEventHub) {
+        this.userRepository = userRepository;
+        this.tripRepository = tripRepository;
+        this.seatStateEngine = seatStateEngine;
+        this.searchResultCache = searchResultCache;
+        this.seatEventHub = seatEventHub;
+    }
+
     @Override
-    @Transactional
     public LockSeatsResponse lockSeats(long tripId, String[] seats, Long lockOwner) {
 
         // resolve lockOwner id -> UserEntity
@@ -39,84 +48,64 @@ public class SeatServiceImpl implements SeatService {
             throw new RuntimeException("lockOwner id is required");
         }
 
-        UserEntity user = userRepository.findById(lockOwner)
-                .orElseThrow(() -> new RuntimeException("User not found with id: " + lockOwner));
+        if (!userRepository.existsById(lockOwner)) {
+            throw new RuntimeException("User not found with id: " + lockOwner);
+        }
 
         if (seats == null || seats.length == 0) {
             throw new RuntimeException("No seats specified to lock");
         }
 
-        List<String> seatList = Arrays.asList(seats);
-        List<SeatEntity> currentLocks = seatRepository.findByTripIdAndSeatNumberIn(tripId, seatList);
-
-        if (currentLocks.size() != seatList.size()) {
-            throw new RuntimeException("One or more selected seats are invalid");
+        // Any trip has the full seat layout in memory; make sure it exists
+        // before its seats are stored
+        if (!tripRepository.existsById(tripId)) {
+            throw new TripNotFoundException("Trip not found with id: " + tripId);
         }
 
-        List<SeatEntity> allLocksByUser = seatRepository.findByTripIdAndLockOwnerId(tripId, lockOwner);
-
-        HashSet<SeatEntity> lockSet = new HashSet<>(currentLocks);
-
-        lockSet.addAll(allLocksByUser);
-
-        List<SeatEntity> existingSeats = new ArrayList<>(lockSet);
-
         LocalDateTime now = LocalDateTime.now();
+        // Whole seconds, the precision the in-memory hold keeps
+        LocalDateTime lockedUntil = now.plusMinutes(LOCK_DURATION_MINUTES).truncatedTo(ChronoUnit.SECONDS);
 
-        for (SeatEntity seat : existingSeats) {
+        // Seats are claimed in memory without waiting on row locks; the
+        // response is sent once the claim has been written
+        CompletableFuture<SeatStateEngine.LockResult> claim = seatStateEngine.lock(tripId, Arrays.asList(seats),
+                lockOwner, now, lockedUntil);
+        SeatStateEngine.LockResult result = awaitConfirmation(claim);
 
-            // Removing expired locks before attempting to lock
-            if (seat.getLockedUntil() != null && seat.getLockedUntil().isBefore(now)) {
-
-                seat.setStatus(SeatStatus.AVAILABLE);
-                seat.setLockedUntil(null);
-                seat.setLockOwner(null);
-            }
+        // Drop cached search results for this trip
+        searchResultCache.invalidateTrip(tripId);
 
-            // Already locked by someone else
-            if (seat.getLockedUntil() != null && seat.getLockedUntil().isAfter(now) &&
-                    !seat.getLockOwner().getId().equals(lockOwner)) {
+        LockSeatsResponse response = LockSeatsResponse.builder()
+                .message("Seats locked successfully")
+                .lockedSeats(result.locked().toArray(String[]::new))
+                .lockExpiresAt(lockedUntil).build();
 
-                throw new RuntimeException("Seat already locked");
-            }
+        return response;
 
-            // Booked seat
-            if (seat.getStatus() == SeatStatus.BOOKED) {
-                throw new RuntimeException("Seat already booked");
-            }
+    }
 
-            // if seat is locked by the same user and lock not expired and seat is not in
-            // current locks then unlock it
-            if (seat.getLockedUntil() != null && seat.getLockedUntil().isAfter(now) &&
-                    seat.getLockOwner().getId().equals(lockOwner) &&
-                    !currentLocks.contains(seat)) {
-                seat.setStatus(SeatStatus.AVAILABLE);
-                seat.setLockedUntil(null);
-                seat.setLockOwner(null);
+    @Override
+    public SseEmitter subscribe(long tripId) {
+        if (!tripRepository.existsById(tripId)) {
+            throw new TripNotFoundException("Trip not found with id: " + tripId);
+        }
+        return seatEventHub.subscribe(tripId);
+    }
 
-                continue;
+    // No timeout: the writer completes every claim it takes, and one given
+    // up on here would still be written and stay held in memory
+    private SeatStateEngine.LockResult awaitConfirmation(CompletableFuture<SeatStateEngine.LockResult> claim) {
+        try {
+            return claim.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SeatUnavailableException unavailable) {
+                throw unavailable;
             }
-
-            // Lock seat
-            seat.setLockOwner(user);
-            seat.setLockedUntil(now.plusMinutes(LOCK_DURATION_MINUTES));
+            throw new RuntimeException("Seat hold could not be saved", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for seat hold confirmation");
         }
-
-        seatRepository.saveAll(existingSeats);
-
-        // Prepare response
-
-        String[] lockedSeatNumbers = existingSeats.stream()
-                .map(SeatEntity::getSeatNumber)
-                .toArray(String[]::new);
-
-        LockSeatsResponse response = LockSeatsResponse.builder()
-                .message("Seats locked successfully")
-                .lockedSeats(lockedSeatNumbers)
-                .lockExpiresAt(now.plusMinutes(LOCK_DURATION_MINUTES)).build();
-
-        return response;
-
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.zytra.user_server.tickets.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.zytra.user_server.enums.TicketStatus;
+import com.zytra.user_server.tickets.dto.TicketResponse;
+import com.zytra.user_server.tickets.service.TicketService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/bookings")
+@RequiredArgsConstructor
+public class TicketController {
+
+    private final TicketService ticketService;
+
+    /**
+     * Ticket of the booking. Answers 202 while the booking is being paid or
+     * its ticket rendered; poll again until it is ISSUED or CANCELLED. Only
+     * the signed in user's own bookings have a ticket to them.
+     */
+    @GetMapping("/{bookingId}/ticket")
+    public ResponseEntity<TicketResponse> getTicket(@PathVariable Long bookingId,
+            @RequestAttribute("authenticatedUserId") Long userId) {
+        TicketResponse ticket = ticketService.getTicket(bookingId, userId);
+        HttpStatus status = ticket.getStatus() == TicketStatus.PENDING ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(ticket);
+    }
+
+}
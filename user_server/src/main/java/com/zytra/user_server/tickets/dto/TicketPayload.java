@@ -0,0 +1,13 @@
+package com.zytra.user_server.tickets.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * What a ticket's QR code says, as signed by
+ * {@link com.zytra.user_server.tickets.service.TicketCodec}.
+ */
+public record TicketPayload(long bookingId, long tripId, LocalDate travelDate, List<String> seatNumbers,
+        Instant issuedAt) {
+}
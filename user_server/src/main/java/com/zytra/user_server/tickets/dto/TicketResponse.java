@@ -0,0 +1,24 @@
+package com.zytra.user_server.tickets.dto;
+
+import java.time.LocalDateTime;
+
+import com.zytra.user_server.enums.TicketStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@AllArgsConstructor
+@Data
+@Builder
+
+public class TicketResponse {
+
+    private Long bookingId;
+    private TicketStatus status;
+    private String ticketNumber;
+    // Text of the QR code, see TicketCodec
+    private String qrCodeData;
+    private LocalDateTime generatedAt;
+
+}
@@ -0,0 +1,19 @@
+package com.zytra.user_server.tickets.dto;
+
+import java.time.LocalDate;
+
+/**
+ * What goes on the ticket of a confirmed booking, as loaded for rendering.
+ */
+public interface TicketSource {
+
+    Long getBookingId();
+
+    Long getTripId();
+
+    LocalDate getTravelDate();
+
+    // Comma separated, in seat number order
+    String getSeatNumbers();
+
+}
@@ -0,0 +1,69 @@
+package com.zytra.user_server.tickets.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.zytra.user_server.tickets.dto.TicketSource;
+import com.zytra.user_server.tickets.entity.TicketEntity;
+
+public interface TicketRepository extends JpaRepository<TicketEntity, Long> {
+
+    Optional<TicketEntity> findByBookingId(Long bookingId);
+
+    /**
+     * The CONFIRMED bookings among the given ones that have no ticket yet,
+     * with their trip and seats.
+     */
+    @Query(value = """
+            SELECT b.id AS "bookingId", b.trip_id AS "tripId", t.travel_date AS "travelDate",
+                   string_agg(s.seat_number, ',' ORDER BY s.seat_number) AS "seatNumbers"
+            FROM bookings b
+            JOIN trips t ON t.id = b.trip_id
+            JOIN booking_seats bs ON bs.booking_id = b.id
+            JOIN seats s ON s.id = bs.seat_id
+            WHERE b.id = ANY(CAST(:ids AS bigint[]))
+              AND b.booking_status = 'CONFIRMED'
+              AND NOT EXISTS (SELECT 1 FROM tickets k WHERE k.booking_id = b.id)
+            GROUP BY b.id, t.travel_date
+            """, nativeQuery = true)
+    List<TicketSource> findTicketSources(@Param("ids") Long[] ids);
+
+    /**
+     * Up to {@code limit} CONFIRMED bookings made before {@code before} that
+     * still have no ticket, oldest first.
+     */
+    @Query(value = """
+            SELECT b.id
+            FROM bookings b
+            WHERE b.booking_status = 'CONFIRMED'
+              AND b.created_at < :before
+              AND NOT EXISTS (SELECT 1 FROM tickets k WHERE k.booking_id = b.id)
+            ORDER BY b.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Long> findConfirmedWithoutTicket(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /**
+     * Store the tickets of the given bookings, one per booking, in one
+     * statement. Bookings that already have a ticket keep it.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO tickets (booking_id, ticket_number, qr_code_data, generated_at)
+            SELECT u.booking_id, u.ticket_number, u.qr_code_data, CAST(:generatedAt AS timestamp)
+            FROM unnest(CAST(:bookingIds AS bigint[]), CAST(:ticketNumbers AS varchar[]),
+                        CAST(:qrCodes AS text[])) AS u(booking_id, ticket_number, qr_code_data)
+            ON CONFLICT (booking_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertTickets(@Param("bookingIds") Long[] bookingIds,
+            @Param("ticketNumbers") String[] ticketNumbers,
+            @Param("qrCodes") String[] qrCodes,
+            @Param("generatedAt") LocalDateTime generatedAt);
+
+}
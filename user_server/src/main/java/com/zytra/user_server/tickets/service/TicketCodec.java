@@ -0,0 +1,176 @@
+package com.zytra.user_server.tickets.service;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.zytra.user_server.seat.service.SeatLayout;
+import com.zytra.user_server.tickets.dto.TicketPayload;
+
+/**
+ * Turns tickets into the text of their QR code and back.
+ *
+ * The payload is packed into bytes (format version, booking, trip, travel
+ * day, issue time in epoch seconds, then each seat number prefixed by its
+ * length) and followed by the first {@value #TAG_LENGTH} bytes of its
+ * HMAC-SHA256, so a scanner holding the key can check a ticket offline. The
+ * whole is base64url encoded behind {@value #PREFIX}; a ticket of a few
+ * seats comes to well under 100 characters, a small QR code.
+ *
+ * Encoding goes through an {@link Encoder}, which owns its buffers and MAC
+ * and is reused for every ticket one thread renders.
+ */
+public final class TicketCodec {
+
+    public static final String PREFIX = "ZT1.";
+
+    static final int TAG_LENGTH = 16;
+
+    private static final byte VERSION = 1;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAX_SEATS = 255;
+    // Version, booking, trip, day, issue time, seat count
+    private static final int HEADER_LENGTH = 1 + 8 + 8 + 4 + 8 + 1;
+    private static final int MAX_LENGTH = HEADER_LENGTH + MAX_SEATS * (1 + SeatLayout.MAX_LABEL_LENGTH) + TAG_LENGTH;
+
+    private final SecretKeySpec key;
+
+    public TicketCodec(String secret) {
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            throw new IllegalArgumentException("Ticket signing key must be at least 32 bytes");
+        }
+        this.key = new SecretKeySpec(bytes, ALGORITHM);
+    }
+
+    /**
+     * A new encoder, for use by one thread at a time.
+     */
+    public Encoder encoder() {
+        return new Encoder();
+    }
+
+    /**
+     * Read a ticket's QR code text.
+     *
+     * @throws IllegalArgumentException when the text is not a ticket or its
+     *                                  signature does not match
+     */
+    public TicketPayload decode(String qrCodeData) {
+        if (qrCodeData == null || !qrCodeData.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Not a ticket");
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(qrCodeData.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a ticket");
+        }
+        if (bytes.length < HEADER_LENGTH + TAG_LENGTH) {
+            throw new IllegalArgumentException("Not a ticket");
+        }
+
+        int length = bytes.length - TAG_LENGTH;
+        Mac mac = newMac();
+        mac.update(bytes, 0, length);
+        byte[] expected = Arrays.copyOf(mac.doFinal(), TAG_LENGTH);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(bytes, length, bytes.length))) {
+            throw new IllegalArgumentException("Ticket signature does not match");
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            if (buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Unknown ticket version");
+            }
+            long bookingId = buffer.getLong();
+            long tripId = buffer.getLong();
+            LocalDate travelDate = LocalDate.ofEpochDay(buffer.getInt());
+            Instant issuedAt = Instant.ofEpochSecond(buffer.getLong());
+            int seats = Byte.toUnsignedInt(buffer.get());
+            List<String> seatNumbers = new ArrayList<>(seats);
+            for (int i = 0; i < seats; i++) {
+                byte[] label = new byte[buffer.get()];
+                buffer.get(label);
+                seatNumbers.add(new String(label, StandardCharsets.US_ASCII));
+            }
+            return new TicketPayload(bookingId, tripId, travelDate, seatNumbers, issuedAt);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Not a ticket");
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Encodes tickets into QR code text, reusing its buffers and MAC from one
+     * ticket to the next. Not thread-safe.
+     */
+    public final class Encoder {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_LENGTH);
+        private final byte[] tag = new byte[32];
+        private final Mac mac = newMac();
+        private final Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+
+        private Encoder() {
+        }
+
+        public String encode(TicketPayload ticket) {
+            if (ticket.seatNumbers().isEmpty() || ticket.seatNumbers().size() > MAX_SEATS) {
+                throw new IllegalArgumentException("A ticket has 1 to " + MAX_SEATS + " seats");
+            }
+
+            buffer.clear();
+            try {
+                buffer.put(VERSION)
+                        .putLong(ticket.bookingId())
+                        .putLong(ticket.tripId())
+                        .putInt((int) ticket.travelDate().toEpochDay())
+                        .putLong(ticket.issuedAt().getEpochSecond())
+                        .put((byte) ticket.seatNumbers().size());
+                for (String seatNumber : ticket.seatNumbers()) {
+                    buffer.put((byte) seatNumber.length());
+                    for (int i = 0; i < seatNumber.length(); i++) {
+                        buffer.put((byte) seatNumber.charAt(i));
+                    }
+                }
+            } catch (BufferOverflowException e) {
+                throw new IllegalArgumentException("Seat number too long");
+            }
+
+            mac.update(buffer.array(), 0, buffer.position());
+            try {
+                mac.doFinal(tag, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            buffer.put(tag, 0, TAG_LENGTH);
+
+            return PREFIX + base64.encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+        }
+
+    }
+
+}
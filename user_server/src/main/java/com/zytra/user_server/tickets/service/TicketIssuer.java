@@ -0,0 +1,205 @@
+package com.zytra.user_server.tickets.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.tickets.dto.TicketPayload;
+import com.zytra.user_server.tickets.dto.TicketSource;
+import com.zytra.user_server.tickets.repository.TicketRepository;
+import com.zytra.user_server.util.ReferenceGenerator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Issues the tickets of confirmed bookings, off the confirmation path.
+ *
+ * Bookings to issue go into a bounded queue drained by a few worker
+ * threads, each with its own {@link TicketCodec.Encoder}. A worker takes
+ * whatever is queued up to {@code ticket.issuer.batch-size}, loads those
+ * bookings in one query, renders their QR code data and stores the tickets
+ * in one statement. When the queue is full the booking is left out; so are
+ * bookings queued when the server stopped. A periodic sweep queues confirmed
+ * bookings that have been without a ticket for
+ * {@code ticket.issuer.sweep-grace-seconds}, so these get theirs late rather
+ * than never. Issuing a booking twice stores one ticket.
+ */
+@Service
+@Slf4j
+public class TicketIssuer {
+
+    private final TicketRepository ticketRepository;
+    private final TicketCodec ticketCodec;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceGenerator referenceGenerator;
+    private final BlockingQueue<Long> queue;
+    private final Thread[] workers;
+    private final int batchSize;
+    private final int sweepBatchSize;
+    private final long sweepGraceSeconds;
+
+    private final Counter issued;
+    private final Counter dropped;
+    private final Timer renderTimer;
+
+    private volatile boolean running;
+
+    public TicketIssuer(
+            TicketRepository ticketRepository,
+            TransactionTemplate transactionTemplate,
+            ReferenceGenerator referenceGenerator,
+            @Value("${ticket.signing-key}") String signingKey,
+            @Value("${ticket.issuer.workers:2}") int workerCount,
+            @Value("${ticket.issuer.queue-capacity:10000}") int queueCapacity,
+            @Value("${ticket.issuer.batch-size:100}") int batchSize,
+            @Value("${ticket.issuer.sweep-batch-size:1000}") int sweepBatchSize,
+            @Value("${ticket.issuer.sweep-grace-seconds:60}") long sweepGraceSeconds,
+            MeterRegistry meterRegistry) {
+
+        this.ticketRepository = ticketRepository;
+        this.ticketCodec = new TicketCodec(signingKey);
+        this.transactionTemplate = transactionTemplate;
+        this.referenceGenerator = referenceGenerator;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new Thread[workerCount];
+        this.batchSize = batchSize;
+        this.sweepBatchSize = sweepBatchSize;
+        this.sweepGraceSeconds = sweepGraceSeconds;
+
+        this.issued = Counter.builder("tickets.issued").register(meterRegistry);
+        this.dropped = Counter.builder("tickets.dropped")
+                .description("Bookings left out of a full queue, to be issued by the sweep")
+                .register(meterRegistry);
+        this.renderTimer = Timer.builder("tickets.render")
+                .description("Rendering the QR code data of one batch of tickets")
+                .register(meterRegistry);
+        Gauge.builder("tickets.pending", queue, BlockingQueue::size)
+                .description("Bookings queued for a ticket")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Thread.ofPlatform().name("ticket-issuer-" + i).daemon().start(this::work);
+        }
+    }
+
+    /**
+     * Stop the workers, letting the batches under way finish. Bookings still
+     * queued are left to the sweep.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+        for (Thread worker : workers) {
+            if (worker != null) {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        }
+    }
+
+    /**
+     * Queue the bookings for a ticket. Never blocks; bookings that do not
+     * fit are left to the sweep.
+     */
+    public void issue(Collection<Long> bookingIds) {
+        for (Long bookingId : bookingIds) {
+            if (!queue.offer(bookingId)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Queue confirmed bookings still without a ticket.
+     */
+    @Scheduled(fixedDelayString = "${ticket.issuer.sweep-interval-ms:60000}")
+    public void sweep() {
+        List<Long> missing = ticketRepository.findConfirmedWithoutTicket(
+                LocalDateTime.now().minusSeconds(sweepGraceSeconds), sweepBatchSize);
+        if (!missing.isEmpty()) {
+            log.info("Issuing {} missing tickets", missing.size());
+            issue(missing);
+        }
+    }
+
+    private void work() {
+        TicketCodec.Encoder encoder = ticketCodec.encoder();
+        List<Long> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                issue(batch, encoder, LocalDateTime.now());
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                // The sweep tries these again
+                log.error("Issuing tickets of {} bookings failed: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Issue the tickets of those of the bookings that are confirmed and
+     * have none yet.
+     *
+     * @return number of tickets stored
+     */
+    int issue(List<Long> bookingIds, TicketCodec.Encoder encoder, LocalDateTime now) {
+        List<TicketSource> sources = ticketRepository.findTicketSources(bookingIds.toArray(Long[]::new));
+        if (sources.isEmpty()) {
+            return 0;
+        }
+
+        Long[] ids = new Long[sources.size()];
+        String[] ticketNumbers = new String[sources.size()];
+        String[] qrCodes = new String[sources.size()];
+        Instant issuedAt = now.atZone(ZoneId.systemDefault()).toInstant();
+        renderTimer.record(() -> {
+            for (int i = 0; i < ids.length; i++) {
+                TicketSource source = sources.get(i);
+                ids[i] = source.getBookingId();
+                ticketNumbers[i] = referenceGenerator.next(ReferenceGenerator.TICKET);
+                qrCodes[i] = encoder.encode(new TicketPayload(source.getBookingId(), source.getTripId(),
+                        source.getTravelDate(), Arrays.asList(source.getSeatNumbers().split(",")), issuedAt));
+            }
+        });
+
+        int stored = transactionTemplate.execute(status -> ticketRepository.insertTickets(ids, ticketNumbers,
+                qrCodes, now));
+        issued.increment(stored);
+        return stored;
+    }
+
+    TicketCodec.Encoder encoder() {
+        return ticketCodec.encoder();
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.zytra.user_server.tickets.service;
+
+import com.zytra.user_server.tickets.dto.TicketResponse;
+
+public interface TicketService {
+
+    TicketResponse getTicket(Long bookingId, Long userId);
+
+}
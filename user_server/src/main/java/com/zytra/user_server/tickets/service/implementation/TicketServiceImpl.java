@@ -0,0 +1,49 @@
+package com.zytra.user_server.tickets.service.implementation;
+
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.bookings.entity.BookingEntity;
+import com.zytra.user_server.bookings.exception.BookingNotFoundException;
+import com.zytra.user_server.bookings.repository.BookingRepository;
+import com.zytra.user_server.enums.BookingStatus;
+import com.zytra.user_server.enums.TicketStatus;
+import com.zytra.user_server.tickets.dto.TicketResponse;
+import com.zytra.user_server.tickets.repository.TicketRepository;
+import com.zytra.user_server.tickets.service.TicketService;
+
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class TicketServiceImpl implements TicketService {
+
+    private final BookingRepository bookingRepository;
+    private final TicketRepository ticketRepository;
+
+    /**
+     * The ticket of the user's booking: ISSUED with its QR code data once
+     * {@link com.zytra.user_server.tickets.service.TicketIssuer} has stored
+     * it, PENDING until then and CANCELLED if the booking was.
+     */
+    @Override
+    public TicketResponse getTicket(Long bookingId, Long userId) {
+        BookingEntity booking = bookingRepository.findById(bookingId)
+                .filter(found -> found.getUserId().equals(userId))
+                .orElseThrow(() -> new BookingNotFoundException("Booking not found with id: " + bookingId));
+
+        if (booking.getBookingStatus() == BookingStatus.CANCELLED) {
+            return TicketResponse.builder().bookingId(bookingId).status(TicketStatus.CANCELLED).build();
+        }
+
+        return ticketRepository.findByBookingId(bookingId)
+                .map(ticket -> TicketResponse.builder()
+                        .bookingId(bookingId)
+                        .status(TicketStatus.ISSUED)
+                        .ticketNumber(ticket.getTicketNumber())
+                        .qrCodeData(ticket.getQrCodeData())
+                        .generatedAt(ticket.getGeneratedAt())
+                        .build())
+                .orElseGet(() -> TicketResponse.builder().bookingId(bookingId).status(TicketStatus.PENDING).build());
+    }
+
+}
@@ -1,12 +1,16 @@
 package com.zytra.user_server.trips.controller;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.zytra.user_server.trips.dto.SeatMapResponse;
 import com.zytra.user_server.trips.dto.TripResponse;
 import com.zytra.user_server.trips.service.TripService;
 
@@ -25,4 +29,19 @@ public class TripController {
         return tripService.getTripDetails(tripId);
     }
 
+    /**
+     * Seats changed since the given seat map version, tagged with the
+     * current version; 304 when it matches If-None-Match.
+     */
+    @GetMapping("/{tripId}/seats")
+    public ResponseEntity<SeatMapResponse> getSeatMap(@PathVariable Long tripId,
+            @RequestParam(required = false) Long since, WebRequest request) {
+        SeatMapResponse seatMap = tripService.getSeatMap(tripId, since);
+        String eTag = "\"" + seatMap.getVersion() + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(seatMap);
+    }
+
 }
@@ -0,0 +1,18 @@
+package com.zytra.user_server.trips.dto;
+
+/**
+ * Outcome of repairing one chunk of trip seat counters.
+ */
+public interface AvailableSeatsRepair {
+
+    /**
+     * Highest trip id of the chunk, null when no trip was left to check.
+     */
+    Long getLastTripId();
+
+    /**
+     * Trips of the chunk whose counter had drifted and was fixed.
+     */
+    long getRepaired();
+
+}
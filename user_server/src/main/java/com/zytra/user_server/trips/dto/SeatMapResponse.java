@@ -0,0 +1,26 @@
+package com.zytra.user_server.trips.dto;
+
+import java.util.List;
+
+import com.zytra.user_server.seat.dto.SeatDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+
+public class SeatMapResponse {
+    private Long tripId;
+    private long version;
+
+    // True when seats holds every seat of the trip, false when only those
+    // changed since the version asked for
+    private boolean complete;
+    private List<SeatDTO> seats;
+
+}
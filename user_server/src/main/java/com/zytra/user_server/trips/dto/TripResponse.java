@@ -5,6 +5,7 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 
+import com.zytra.user_server.enums.SeatLayoutType;
 import com.zytra.user_server.seat.dto.SeatDTO;
 
 import lombok.AllArgsConstructor;
@@ -30,9 +31,13 @@ public class TripResponse {
     private int availableSeats;
     private BigDecimal fare;
 
-    // Seat matrix: 12 rows (A-L), 4 columns per row (2x2 layout)
+    // Seat matrix as the bus's seat layout: rows of every deck in turn, null
+    // for aisles and other gaps
     private List<List<SeatDTO>> seatMatrix;
-    private int totalRows; // 12 rows (A-L)
-    private int seatsPerRow; // 4 seats per row (2x2)
+    private int totalRows; // rows of all decks
+    private int seatsPerRow; // width of the widest row, gaps included
+    private SeatLayoutType layoutType;
+    private int decks;
+    private long seatMapVersion; // for GET /trips/{tripId}/seats?since=
 
 }
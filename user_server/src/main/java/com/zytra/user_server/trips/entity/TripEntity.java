@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "trips", indexes = {
-                @Index(name = "idx_trip_search", columnList = "travel_date")
+                @Index(name = "idx_trip_search", columnList = "travel_date"),
+                @Index(name = "idx_trip_schedule_date_status", columnList = "schedule_id, travel_date, status")
 }, uniqueConstraints = {
                 @UniqueConstraint(name = "uq_trip", columnNames = { "schedule_id", "travel_date" })
 })
@@ -35,7 +36,8 @@ public class TripEntity {
         @Column(name = "travel_date", nullable = false)
         private LocalDate travelDate;
 
-        @Column(name = "available_seats", nullable = false)
+        // Kept by the seats triggers; a stale entity must never write it back
+        @Column(name = "available_seats", nullable = false, updatable = false)
         private Integer availableSeats;
 
         @Column(name = "fare", nullable = false, precision = 10, scale = 2)
@@ -1,17 +1,27 @@
 package com.zytra.user_server.trips.repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.zytra.user_server.bus.dto.BusSearchRow;
+import com.zytra.user_server.enums.ScheduleStatus;
 import com.zytra.user_server.enums.TripSeatStatus;
+import com.zytra.user_server.enums.TripStatus;
+import com.zytra.user_server.trips.dto.AvailableSeatsRepair;
 import com.zytra.user_server.trips.entity.TripEntity;
 
 import jakarta.persistence.LockModeType;
@@ -62,4 +72,261 @@ public interface TripRepository extends JpaRepository<TripEntity, Long> {
             @Param("status") TripSeatStatus status,
             @Param("today") LocalDate today);
 
+    /**
+     * Create the missing trips of the given ACTIVE schedules for every day in
+     * [fromDate, toDate] the schedule runs on (see ServiceCalendar), in a
+     * single set-based insert. Existing (schedule_id, travel_date) rows are
+     * left untouched, so the operation is idempotent and safe to run from
+     * several instances at once.
+     *
+     * @return number of trips created
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+                INSERT INTO trips (schedule_id, travel_date, available_seats, fare, status, seat_status, created_at)
+                SELECT s.id, CAST(d.day AS date), b.total_seats, :farePerKm * r.distance_km,
+                       'ACTIVE', 'NOT_INITIALIZED', now()
+                FROM schedules s
+                JOIN bus b ON b.id = s.bus_id
+                JOIN routes r ON r.id = s.route_id
+                CROSS JOIN generate_series(CAST(:fromDate AS date), CAST(:toDate AS date), interval '1 day') AS d(day)
+                WHERE s.id IN (:scheduleIds)
+                  AND s.status = 'ACTIVE'
+                  AND CAST(d.day AS date) BETWEEN s.active_from AND s.active_to
+                  AND schedule_runs_on(s.frequency, s.run_days, s.custom_run_dates,
+                                       s.active_from, s.active_to, CAST(d.day AS date))
+                ON CONFLICT (schedule_id, travel_date) DO NOTHING
+            """, nativeQuery = true)
+    int materializeTrips(
+            @Param("scheduleIds") Collection<Long> scheduleIds,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate,
+            @Param("farePerKm") BigDecimal farePerKm);
+
+    /**
+     * Get-or-create the trips of the given schedules on a travel date in one
+     * round-trip. Schedules not running on the date get no trip. Missing
+     * (schedule_id, travel_date) rows are inserted with conflict-ignore
+     * semantics, so concurrent callers never fail on uq_trip, and the union
+     * with the existing rows returns every trip at once.
+     *
+     * A row committed by a concurrent caller after this statement's snapshot
+     * is neither inserted nor returned; callers should re-read any schedule
+     * missing from the result.
+     */
+    @Transactional
+    @Query(value = """
+                WITH inserted AS (
+                    INSERT INTO trips (schedule_id, travel_date, available_seats, fare, status, seat_status, created_at)
+                    SELECT s.id, :travelDate, b.total_seats, :fare, 'ACTIVE', 'NOT_INITIALIZED', now()
+                    FROM schedules s
+                    JOIN bus b ON b.id = s.bus_id
+                    WHERE s.id IN (:scheduleIds)
+                      AND schedule_runs_on(s.frequency, s.run_days, s.custom_run_dates,
+                                           s.active_from, s.active_to, :travelDate)
+                    ON CONFLICT (schedule_id, travel_date) DO NOTHING
+                    RETURNING *
+                )
+                SELECT * FROM inserted
+                UNION ALL
+                SELECT t.* FROM trips t
+                WHERE t.schedule_id IN (:scheduleIds)
+                  AND t.travel_date = :travelDate
+            """, nativeQuery = true)
+    List<TripEntity> getOrCreateTrips(
+            @Param("scheduleIds") Collection<Long> scheduleIds,
+            @Param("travelDate") LocalDate travelDate,
+            @Param("fare") BigDecimal fare);
+
+    /**
+     * Recount the free seats of the next chunk of trips travelling from
+     * {@code today} on with an id above {@code afterId}, and fix the counter
+     * of those that drifted (see V6__trip_available_seats_counter.sql).
+     *
+     * Trips locked by a running hold or booking are skipped rather than
+     * waited for: their counter is being moved by the trigger and is checked
+     * again on the next run.
+     */
+    @Transactional
+    @Query(value = """
+                WITH claimed AS (
+                    SELECT t.id, b.total_seats
+                    FROM trips t
+                    JOIN schedules s ON s.id = t.schedule_id
+                    JOIN bus b ON b.id = s.bus_id
+                    WHERE t.travel_date >= :today
+                      AND t.id > :afterId
+                    ORDER BY t.id
+                    LIMIT :chunkSize
+                    FOR UPDATE OF t SKIP LOCKED
+                ),
+                counted AS (
+                    SELECT c.id,
+                           c.total_seats - count(se.id) FILTER (
+                               WHERE seat_taken(se.status, se.booking_id, se.lock_owner_id)) AS available
+                    FROM claimed c
+                    LEFT JOIN seats se ON se.trip_id = c.id
+                    GROUP BY c.id, c.total_seats
+                ),
+                repaired AS (
+                    UPDATE trips t
+                    SET available_seats = counted.available
+                    FROM counted
+                    WHERE t.id = counted.id
+                      AND t.available_seats <> counted.available
+                    RETURNING t.id
+                )
+                SELECT (SELECT max(id) FROM claimed) AS "lastTripId",
+                       (SELECT count(*) FROM repaired) AS "repaired"
+            """, nativeQuery = true)
+    AvailableSeatsRepair repairAvailableSeats(
+            @Param("today") LocalDate today,
+            @Param("afterId") long afterId,
+            @Param("chunkSize") int chunkSize);
+
+    /**
+     * Read-only bus search for a route and travel date, projected straight
+     * into rows without loading entities.
+     *
+     * Every active schedule running on the date yields a row: either its
+     * bookable trip (ACTIVE, seats left) or, if no trip exists yet, a row with
+     * null trip columns. Sold-out and cancelled trips are left out. Rows are
+     * ordered by departure time.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+                SELECT new com.zytra.user_server.bus.dto.BusSearchRow(
+                    s.id, t.id, b.busNumber, b.description, r.source, r.destination,
+                    t.travelDate, s.departureTime, s.arrivalTime, t.availableSeats, t.fare, t.status)
+                FROM ScheduleEntity s
+                JOIN s.bus b
+                JOIN s.route r
+                LEFT JOIN TripEntity t ON t.schedule = s AND t.travelDate = :travelDate
+                WHERE r.id = :routeId
+                  AND s.status = :scheduleStatus
+                  AND s.activeFrom <= :travelDate
+                  AND s.activeTo >= :travelDate
+                  AND function('schedule_runs_on', s.frequency, s.runDays, s.customRunDates,
+                               s.activeFrom, s.activeTo, :travelDate) = true
+                  AND (t.id IS NULL OR (t.status = :tripStatus AND t.availableSeats > 0))
+                ORDER BY s.departureTime, t.id
+            """)
+    List<BusSearchRow> findSearchRows(
+            @Param("routeId") Long routeId,
+            @Param("travelDate") LocalDate travelDate,
+            @Param("scheduleStatus") ScheduleStatus scheduleStatus,
+            @Param("tripStatus") TripStatus tripStatus);
+
+    /**
+     * Range counterpart of {@link #findByScheduleIdInAndTravelDate}: every trip
+     * of the given schedules with a travel date in [fromDate, toDate], whatever
+     * its status, projected into search rows and ordered by date and departure
+     * time.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+                SELECT new com.zytra.user_server.bus.dto.BusSearchRow(
+                    s.id, t.id, b.busNumber, b.description, r.source, r.destination,
+                    t.travelDate, s.departureTime, s.arrivalTime, t.availableSeats, t.fare, t.status)
+                FROM TripEntity t
+                JOIN t.schedule s
+                JOIN s.bus b
+                JOIN s.route r
+                WHERE s.id IN :scheduleIds
+                  AND t.travelDate BETWEEN :fromDate AND :toDate
+                ORDER BY t.travelDate, s.departureTime, t.id
+            """)
+    List<BusSearchRow> findSearchRowsByScheduleIdInAndTravelDateBetween(
+            @Param("scheduleIds") Collection<Long> scheduleIds,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate);
+
+    /**
+     * One page of bookable trips of a route on a travel date, with the
+     * search filters applied and ordered by (departure time, trip id)
+     * ascending. The page starts after the keyset position
+     * (afterDeparture, afterTripId); pass 00:00 and 0 for the first page.
+     *
+     * Unused filters are passed as sentinels that match every row: 00:00 to
+     * 23:59:59 for the departure window, a huge fare and an empty
+     * description.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+                SELECT new com.zytra.user_server.bus.dto.BusSearchRow(
+                    s.id, t.id, b.busNumber, b.description, r.source, r.destination,
+                    t.travelDate, s.departureTime, s.arrivalTime, t.availableSeats, t.fare, t.status)
+                FROM TripEntity t
+                JOIN t.schedule s
+                JOIN s.bus b
+                JOIN s.route r
+                WHERE r.id = :routeId
+                  AND t.travelDate = :travelDate
+                  AND s.status = :scheduleStatus
+                  AND s.activeFrom <= :travelDate
+                  AND s.activeTo >= :travelDate
+                  AND t.status = :tripStatus
+                  AND t.availableSeats > 0
+                  AND s.departureTime BETWEEN :departureFrom AND :departureTo
+                  AND t.fare <= :maxFare
+                  AND (:busDescription = '' OR LOWER(b.description) = :busDescription)
+                  AND (s.departureTime > :afterDeparture
+                       OR (s.departureTime = :afterDeparture AND t.id > :afterTripId))
+                ORDER BY s.departureTime, t.id
+            """)
+    List<BusSearchRow> findSearchPageAscending(
+            @Param("routeId") Long routeId,
+            @Param("travelDate") LocalDate travelDate,
+            @Param("scheduleStatus") ScheduleStatus scheduleStatus,
+            @Param("tripStatus") TripStatus tripStatus,
+            @Param("departureFrom") LocalTime departureFrom,
+            @Param("departureTo") LocalTime departureTo,
+            @Param("maxFare") BigDecimal maxFare,
+            @Param("busDescription") String busDescription,
+            @Param("afterDeparture") LocalTime afterDeparture,
+            @Param("afterTripId") Long afterTripId,
+            Limit limit);
+
+    /**
+     * Descending counterpart of {@link #findSearchPageAscending}: the page
+     * starts before (beforeDeparture, beforeTripId); pass 23:59:59 and
+     * {@link Long#MAX_VALUE} for the first page.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+                SELECT new com.zytra.user_server.bus.dto.BusSearchRow(
+                    s.id, t.id, b.busNumber, b.description, r.source, r.destination,
+                    t.travelDate, s.departureTime, s.arrivalTime, t.availableSeats, t.fare, t.status)
+                FROM TripEntity t
+                JOIN t.schedule s
+                JOIN s.bus b
+                JOIN s.route r
+                WHERE r.id = :routeId
+                  AND t.travelDate = :travelDate
+                  AND s.status = :scheduleStatus
+                  AND s.activeFrom <= :travelDate
+                  AND s.activeTo >= :travelDate
+                  AND t.status = :tripStatus
+                  AND t.availableSeats > 0
+                  AND s.departureTime BETWEEN :departureFrom AND :departureTo
+                  AND t.fare <= :maxFare
+                  AND (:busDescription = '' OR LOWER(b.description) = :busDescription)
+                  AND (s.departureTime < :beforeDeparture
+                       OR (s.departureTime = :beforeDeparture AND t.id < :beforeTripId))
+                ORDER BY s.departureTime DESC, t.id DESC
+            """)
+    List<BusSearchRow> findSearchPageDescending(
+            @Param("routeId") Long routeId,
+            @Param("travelDate") LocalDate travelDate,
+            @Param("scheduleStatus") ScheduleStatus scheduleStatus,
+            @Param("tripStatus") TripStatus tripStatus,
+            @Param("departureFrom") LocalTime departureFrom,
+            @Param("departureTo") LocalTime departureTo,
+            @Param("maxFare") BigDecimal maxFare,
+            @Param("busDescription") String busDescription,
+            @Param("beforeDeparture") LocalTime beforeDeparture,
+            @Param("beforeTripId") Long beforeTripId,
+            Limit limit);
+
 }
@@ -0,0 +1,72 @@
+package com.zytra.user_server.trips.service;
+
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.trips.dto.AvailableSeatsRepair;
+import com.zytra.user_server.trips.repository.TripRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks trips.available_seats against the seats table and fixes trips whose
+ * counter drifted, e.g. after seats were edited by hand with the triggers
+ * disabled. The triggers keep the counter right on their own; any repair here
+ * is logged, as it points at a write path that went around them.
+ *
+ * Upcoming trips are walked in id order, a chunk per statement.
+ */
+@Service
+@Slf4j
+public class AvailableSeatsReconciler {
+
+    private final TripRepository tripRepository;
+    private final Counter tripsRepaired;
+
+    @Value("${trip.available-seats.reconcile-chunk-size:500}")
+    private int chunkSize;
+
+    public AvailableSeatsReconciler(TripRepository tripRepository, MeterRegistry meterRegistry) {
+        this.tripRepository = tripRepository;
+        this.tripsRepaired = Counter.builder("trips.available_seats.repaired").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${trip.available-seats.reconcile-initial-delay-ms:60000}", fixedDelayString = "${trip.available-seats.reconcile-interval-ms:900000}")
+    public void reconcile() {
+        try {
+            reconcile(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Available seats reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Repair the counters of every trip travelling from {@code today} on.
+     *
+     * @return number of trips repaired
+     */
+    public long reconcile(LocalDate today) {
+        long repaired = 0;
+        long afterId = 0;
+        while (true) {
+            AvailableSeatsRepair chunk = tripRepository.repairAvailableSeats(today, afterId, chunkSize);
+            if (chunk.getLastTripId() == null) {
+                break;
+            }
+            repaired += chunk.getRepaired();
+            afterId = chunk.getLastTripId();
+        }
+
+        if (repaired > 0) {
+            tripsRepaired.increment(repaired);
+            log.warn("Repaired the available seats of {} trips from {}", repaired, today);
+        }
+        return repaired;
+    }
+
+}
@@ -2,19 +2,14 @@ package com.zytra.user_server.trips.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.zytra.user_server.bus.entity.BusEntity;
-import com.zytra.user_server.enums.SeatStatus;
-import com.zytra.user_server.enums.TripSeatStatus;
-import com.zytra.user_server.enums.TripStatus;
-import com.zytra.user_server.schedule.entity.ScheduleEntity;
-import com.zytra.user_server.seat.entity.SeatEntity;
-import com.zytra.user_server.seat.repository.SeatRepository;
 import com.zytra.user_server.trips.entity.TripEntity;
 import com.zytra.user_server.trips.repository.TripRepository;
 
@@ -26,26 +21,38 @@ public class TripCreationService {
 
     private final TripRepository tripRepository;
 
+    /**
+     * Return the trip of every given schedule on the travel date, creating the
+     * missing ones. Safe to call concurrently for the same schedules and date:
+     * creation never fails on the uq_trip constraint, so it cannot poison the
+     * caller's transaction.
+     *
+     * @return trips keyed by schedule id, whatever their status
+     */
     @Transactional
-    public TripEntity createTripWithSeats(
-            ScheduleEntity schedule,
+    public Map<Long, TripEntity> getOrCreateTrips(
+            Set<Long> scheduleIds,
             LocalDate travelDate,
             BigDecimal fare) {
 
-        BusEntity bus = schedule.getBus();
+        Map<Long, TripEntity> trips = new HashMap<>();
+        if (scheduleIds.isEmpty()) {
+            return trips;
+        }
 
-        TripEntity trip = TripEntity.builder()
-                .schedule(schedule)
-                .travelDate(travelDate)
-                .availableSeats(bus.getTotalSeats())
-                .fare(fare)
-                .status(TripStatus.ACTIVE)
-                .seatStatus(TripSeatStatus.NOT_INITIALIZED)
-                .build();
+        for (TripEntity trip : tripRepository.getOrCreateTrips(scheduleIds, travelDate, fare)) {
+            trips.put(trip.getSchedule().getId(), trip);
+        }
 
-        trip = tripRepository.save(trip);
+        // Rows committed by a concurrent creator after our statement started
+        // are invisible to it; a fresh statement sees them
+        if (trips.size() < scheduleIds.size()) {
+            List<TripEntity> committedMeanwhile = tripRepository.findByScheduleIdInAndTravelDate(scheduleIds,
+                    travelDate);
+            committedMeanwhile.forEach(trip -> trips.putIfAbsent(trip.getSchedule().getId(), trip));
+        }
 
-        return trip;
+        return trips;
     }
 
 }
@@ -0,0 +1,158 @@
+package com.zytra.user_server.trips.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.zytra.user_server.enums.ScheduleStatus;
+import com.zytra.user_server.schedule.repository.ScheduleRepository;
+import com.zytra.user_server.trips.repository.TripRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates trips ahead of time for every ACTIVE schedule across the whole
+ * booking window, so bus search only has to read them.
+ *
+ * A full pass over the window runs shortly after startup and once a day to
+ * pick up new or reactivated schedules; in between, each run only rolls the
+ * horizon forward by the days that have not been materialized yet. Schedules
+ * are processed in chunks, each chunk being one set-based insert.
+ */
+@Service
+@Slf4j
+public class TripMaterializer {
+
+    private final TripRepository tripRepository;
+    private final ScheduleRepository scheduleRepository;
+
+    private final Counter tripsCreated;
+    private final Timer passTimer;
+    private final AtomicInteger schedulesTotal = new AtomicInteger();
+    private final AtomicInteger schedulesDone = new AtomicInteger();
+    private final AtomicLong lastPassTripsPerSecond = new AtomicLong();
+
+    @Value("${booking.window.days}")
+    private int bookingWindowDays;
+
+    @Value("${fare.per.km:2.5}")
+    private BigDecimal farePerKm;
+
+    @Value("${trip.materializer.batch-size:200}")
+    private int batchSize;
+
+    // Last travel date for which every ACTIVE schedule has its trip
+    private volatile LocalDate materializedThrough;
+
+    public TripMaterializer(TripRepository tripRepository, ScheduleRepository scheduleRepository,
+            MeterRegistry meterRegistry) {
+        this.tripRepository = tripRepository;
+        this.scheduleRepository = scheduleRepository;
+
+        this.tripsCreated = Counter.builder("trips.materializer.created").register(meterRegistry);
+        this.passTimer = Timer.builder("trips.materializer.pass").register(meterRegistry);
+        Gauge.builder("trips.materializer.progress", this, TripMaterializer::progress).register(meterRegistry);
+        Gauge.builder("trips.materializer.throughput", lastPassTripsPerSecond, AtomicLong::get)
+                .baseUnit("trips/s")
+                .register(meterRegistry);
+        Gauge.builder("trips.materializer.lag", this, TripMaterializer::lagDays).baseUnit("days")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Roll the materialized horizon forward. Falls back to a full pass when
+     * nothing has been materialized yet (e.g. right after startup).
+     */
+    @Scheduled(initialDelayString = "${trip.materializer.initial-delay-ms:10000}", fixedDelayString = "${trip.materializer.interval-ms:600000}")
+    public void rollForward() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = materializedThrough == null || materializedThrough.isBefore(today)
+                ? today
+                : materializedThrough.plusDays(1);
+
+        runSafely(from);
+    }
+
+    /**
+     * Walk the whole booking window again to cover schedules that were
+     * created or reactivated after their dates were rolled in.
+     */
+    @Scheduled(cron = "${trip.materializer.full-pass-cron:0 30 3 * * *}")
+    public void fullPass() {
+        runSafely(LocalDate.now());
+    }
+
+    public LocalDate getMaterializedThrough() {
+        return materializedThrough;
+    }
+
+    private void runSafely(LocalDate from) {
+        try {
+            materialize(from, LocalDate.now().plusDays(bookingWindowDays));
+        } catch (Exception e) {
+            log.error("Trip materialization from {} failed: {}", from, e.getMessage());
+        }
+    }
+
+    /**
+     * Create every missing trip with a travel date in [from, to].
+     */
+    public synchronized void materialize(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return;
+        }
+
+        long started = System.nanoTime();
+
+        List<Long> scheduleIds = scheduleRepository.findIdsByStatusAndActiveBetween(ScheduleStatus.ACTIVE, from, to);
+        schedulesTotal.set(scheduleIds.size());
+        schedulesDone.set(0);
+
+        int created = 0;
+        for (int start = 0; start < scheduleIds.size(); start += batchSize) {
+            List<Long> chunk = scheduleIds.subList(start, Math.min(start + batchSize, scheduleIds.size()));
+
+            int inserted = tripRepository.materializeTrips(chunk, from, to, farePerKm);
+            created += inserted;
+            tripsCreated.increment(inserted);
+            schedulesDone.addAndGet(chunk.size());
+        }
+
+        long elapsedNanos = System.nanoTime() - started;
+        passTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        lastPassTripsPerSecond.set(created * 1_000_000_000L / Math.max(elapsedNanos, 1));
+
+        if (materializedThrough == null || to.isAfter(materializedThrough)) {
+            materializedThrough = to;
+        }
+
+        log.info("Materialized {} trips for {} schedules from {} to {} in {} ms", created, scheduleIds.size(), from,
+                to, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    private double progress() {
+        int total = schedulesTotal.get();
+        return total == 0 ? 1.0 : (double) schedulesDone.get() / total;
+    }
+
+    private double lagDays() {
+        LocalDate horizon = LocalDate.now().plusDays(bookingWindowDays);
+        if (materializedThrough == null) {
+            return bookingWindowDays + 1;
+        }
+        return Math.max(0, ChronoUnit.DAYS.between(materializedThrough, horizon));
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.zytra.user_server.trips.service;
 
+import com.zytra.user_server.trips.dto.SeatMapResponse;
 import com.zytra.user_server.trips.dto.TripResponse;
 
 public interface TripService {
 
     public TripResponse getTripDetails(Long tripId);
 
+    public SeatMapResponse getSeatMap(Long tripId, Long since);
+
 }
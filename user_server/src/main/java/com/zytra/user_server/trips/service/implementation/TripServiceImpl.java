@@ -1,9 +1,8 @@
 package com.zytra.user_server.trips.service.implementation;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,20 +15,20 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
 import com.zytra.user_server.bus.entity.BusEntity;
-import com.zytra.user_server.enums.SeatStatus;
 import com.zytra.user_server.enums.TripStatus;
 import com.zytra.user_server.routes.entity.RouteEntity;
 import com.zytra.user_server.schedule.entity.ScheduleEntity;
 import com.zytra.user_server.seat.dto.SeatDTO;
-import com.zytra.user_server.seat.entity.SeatEntity;
-import com.zytra.user_server.seat.repository.SeatRepository;
+import com.zytra.user_server.seat.service.SeatLayout;
+import com.zytra.user_server.seat.service.SeatStateEngine;
+import com.zytra.user_server.seat.service.TripSeats;
+import com.zytra.user_server.trips.dto.SeatMapResponse;
 import com.zytra.user_server.trips.dto.TripResponse;
 import com.zytra.user_server.trips.entity.TripEntity;
 import com.zytra.user_server.trips.exception.TripCancelledException;
 import com.zytra.user_server.trips.exception.TripNotFoundException;
 import com.zytra.user_server.trips.repository.TripRepository;
 import com.zytra.user_server.trips.service.TripService;
-import com.zytra.user_server.user.entity.UserEntity;
 
 import lombok.RequiredArgsConstructor;
 
@@ -38,12 +37,9 @@ import lombok.RequiredArgsConstructor;
 public class TripServiceImpl implements TripService {
 
     private static final Logger log = LoggerFactory.getLogger(TripServiceImpl.class);
-    private static final int TOTAL_ROWS = 12; // Rows A-L
-    private static final int SEATS_PER_ROW = 4; // 2x2 layout
-    private static final String[] ROW_LABELS = { "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L" };
 
     private final TripRepository tripRepository;
-    private final SeatRepository seatRepository;
+    private final SeatStateEngine seatStateEngine;
 
     @Override
     @Transactional(readOnly = true)
@@ -65,13 +61,10 @@ public class TripServiceImpl implements TripService {
         RouteEntity route = schedule.getRoute();
         BusEntity bus = schedule.getBus();
 
-        // Fetch seats for the trip and build seat matrix
-        List<List<SeatDTO>> seatMatrix = buildSeatMatrix(tripEntity);
-
-        int availableSeats = tripEntity.getAvailableSeats();
-
-        int bookedSeats = seatRepository.countByTripAndStatus(tripEntity, SeatStatus.BOOKED);
-        availableSeats = tripEntity.getSchedule().getBus().getTotalSeats() - bookedSeats;
+        // Seat state comes from memory, loaded from the seats table once per trip
+        TripSeats seats = seatStateEngine.snapshot(tripEntity.getId());
+        SeatLayout layout = seats.layout();
+        List<List<SeatDTO>> seatMatrix = buildSeatMatrix(seats, System.currentTimeMillis());
 
         log.debug("Successfully fetched trip details for tripId: {}", tripId);
 
@@ -85,55 +78,95 @@ public class TripServiceImpl implements TripService {
                 .busNumber(bus.getBusNumber())
                 .busType(bus.getDescription())
                 .distanceInKm(route.getDistanceKm())
-                .availableSeats(availableSeats)
+                .availableSeats(tripEntity.getAvailableSeats())
                 .fare(tripEntity.getFare())
                 .seatMatrix(seatMatrix)
-                .totalRows(TOTAL_ROWS)
-                .seatsPerRow(SEATS_PER_ROW)
+                .totalRows(seatMatrix.size())
+                .seatsPerRow(layout.columns())
+                .layoutType(layout.type())
+                .decks(layout.deckCount())
+                .seatMapVersion(seats.version())
                 .build();
     }
 
     /**
-     * Builds a 2D seat matrix from the seats stored in the database.
-     * Layout: 12 rows (A-L), 4 seats per row (2x2 configuration).
-     * Seat numbers: A1, A2, A3, A4, B1, B2, B3, B4, ..., L1, L2, L3, L4
+     * Seats changed since version {@code since}, or all of them when no
+     * version is given or it is too old to tell. Answered from memory for
+     * trips whose seats are loaded.
      */
-    private List<List<SeatDTO>> buildSeatMatrix(TripEntity tripEntity) {
-        List<SeatEntity> seats = seatRepository.findByTripOrderBySeatNumber(tripEntity);
-
-        // Create a map for quick lookup of existing seats
-        // Handle duplicates by taking the first occurrence (LinkedHashMap preserves
-        // insertion order)
-        Map<String, SeatEntity> seatMap = new LinkedHashMap<>();
-        for (SeatEntity seat : seats) {
-            seatMap.putIfAbsent(seat.getSeatNumber(), seat);
+    @Override
+    public SeatMapResponse getSeatMap(Long tripId, Long since) {
+        TripSeats seats = seatStateEngine.snapshotIfLoaded(tripId);
+        if (seats == null) {
+            TripEntity tripEntity = tripRepository.findById(tripId)
+                    .orElseThrow(() -> new TripNotFoundException("Trip not found with id: " + tripId));
+            if (tripEntity.getStatus() == TripStatus.CANCELLED) {
+                throw new TripCancelledException("Trip with id " + tripId + " is cancelled");
+            }
+            seats = seatStateEngine.snapshot(tripId);
         }
 
-        List<List<SeatDTO>> matrix = new ArrayList<>();
-
-        for (int row = 0; row < TOTAL_ROWS; row++) {
-            List<SeatDTO> rowSeats = new ArrayList<>();
-            String rowLabel = ROW_LABELS[row];
+        int[] changed = since != null ? seats.changedSince(since) : null;
+        boolean complete = changed == null;
+        if (complete) {
+            changed = IntStream.range(0, seats.size()).toArray();
+        }
 
-            for (int col = 1; col <= SEATS_PER_ROW; col++) {
-                String seatNumber = rowLabel + col;
+        long now = System.currentTimeMillis();
+        List<SeatDTO> seatDTOs = new ArrayList<>(changed.length);
+        for (int seat : changed) {
+            seatDTOs.add(seatDTO(seats, seat, now));
+        }
 
-                SeatEntity seatEntity = seatMap.get(seatNumber);
-                UserEntity lockOwner = seatEntity != null ? seatEntity.getLockOwner() : null;
+        return SeatMapResponse.builder()
+                .tripId(tripId)
+                .version(seats.version())
+                .complete(complete)
+                .seats(seatDTOs)
+                .build();
+    }
 
-                SeatDTO seatDTO = SeatDTO.builder()
-                        .seatNumber(seatNumber)
-                        .lockOwner(lockOwner != null ? lockOwner.getId() : null)
-                        .lockedUntil(seatEntity != null ? seatEntity.getLockedUntil() : null)
-                        .isBooked(seatEntity != null && seatEntity.getBooking() != null ? true : false)
-                        .build();
+    /**
+     * Builds a 2D seat matrix from the trip's in-memory seat state, laid out
+     * as its {@link SeatLayout}: the rows of each deck in turn, null where
+     * the row has a gap. Seats never held or booked are available.
+     */
+    private static List<List<SeatDTO>> buildSeatMatrix(TripSeats seats, long now) {
+        SeatLayout layout = seats.layout();
+        List<List<SeatDTO>> matrix = new ArrayList<>();
 
-                rowSeats.add(seatDTO);
+        for (int deck = 0; deck < layout.deckCount(); deck++) {
+            Integer deckNumber = layout.deckCount() > 1 ? deck + 1 : null;
+            for (int row = 0; row < layout.rows(deck); row++) {
+                List<SeatDTO> rowSeats = new ArrayList<>(layout.columns());
+                for (int col = 0; col < layout.columns(); col++) {
+                    int seat = layout.seatAt(deck, row, col);
+                    if (seat < 0) {
+                        rowSeats.add(null);
+                    } else {
+                        SeatDTO seatDTO = seatDTO(seats, seat, now);
+                        seatDTO.setDeck(deckNumber);
+                        rowSeats.add(seatDTO);
+                    }
+                }
+                matrix.add(rowSeats);
             }
-            matrix.add(rowSeats);
         }
 
         return matrix;
     }
 
+    private static SeatDTO seatDTO(TripSeats seats, int seat, long now) {
+        long lockOwner = seats.lockOwner(seat, now);
+
+        return SeatDTO.builder()
+                .seatNumber(seats.seatNumber(seat))
+                .lockOwner(lockOwner != TripSeats.NO_OWNER ? lockOwner : null)
+                .lockedUntil(lockOwner != TripSeats.NO_OWNER
+                        ? SeatStateEngine.localDateTime(seats.lockExpiry(seat, now))
+                        : null)
+                .isBooked(seats.isBooked(seat))
+                .build();
+    }
+
 }
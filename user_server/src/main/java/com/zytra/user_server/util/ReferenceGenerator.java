@@ -0,0 +1,163 @@
+package com.zytra.user_server.util;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Unique references for bookings, payments and tickets, made in process
+ * without asking the database or any other server.
+ *
+ * A reference is a 63-bit id, written as a prefix letter, 13 Crockford
+ * base32 digits and a check digit, e.g. {@code B06JHEZQZR0000A}. The id
+ * holds, from the top: milliseconds since 2025-01-01 (41 bits, until
+ * 2094), the node id of this server (10 bits) and a sequence within the
+ * millisecond (12 bits). Servers with different {@code reference.node-id}s
+ * never make the same id; within a server, each id is taken with one
+ * compare-and-set on the last (millisecond, sequence) handed out.
+ *
+ * When the sequence runs out, ids are taken from the next millisecond
+ * ahead of the clock rather than waiting, and a clock that steps back is
+ * not followed; either way ids keep increasing. A server restarted in
+ * less time than it had run ahead of its clock could repeat an id, which
+ * takes more than 4 million ids a second sustained.
+ *
+ * The check digit follows Damm's scheme over the 32 digit values, taken
+ * as the field GF(32): the running check is multiplied by x and the next
+ * digit added, and the check digit brings the total over all 14 digits to
+ * zero. Since x and x + 1 are both non-zero, it catches any single
+ * mistyped digit and any two adjacent digits swapped, the check digit
+ * included. Reading a reference back accepts lower case and the usual
+ * Crockford substitutes (I and L for 1, O for 0).
+ */
+@Component
+public class ReferenceGenerator {
+
+    public static final char BOOKING = 'B';
+    public static final char PAYMENT = 'P';
+    public static final char TICKET = 'T';
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    // Prefix, digits, check digit
+    static final int DIGITS = 13;
+    public static final int LENGTH = 1 + DIGITS + 1;
+
+    private static final long EPOCH_MS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    // x^5 + x^2 + 1, irreducible, so GF(32) has no zero divisors
+    private static final int FIELD_POLYNOMIAL = 0b100101;
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+            VALUES[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+        VALUES['O'] = VALUES['o'] = 0;
+        VALUES['I'] = VALUES['i'] = VALUES['L'] = VALUES['l'] = 1;
+    }
+
+    private final long node;
+    private final LongSupplier clock;
+    // Milliseconds since EPOCH_MS and sequence of the last id taken
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public ReferenceGenerator(@Value("${reference.node-id}") int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    ReferenceGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("reference.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.node = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * A new reference starting with the given letter, one of
+     * {@link #BOOKING}, {@link #PAYMENT} and {@link #TICKET}.
+     */
+    public String next(char prefix) {
+        return format(prefix, nextId());
+    }
+
+    /**
+     * A new id, greater than every id this generator made before.
+     */
+    public long nextId() {
+        long now = (clock.getAsLong() - EPOCH_MS) << SEQUENCE_BITS;
+        long current;
+        long taken;
+        do {
+            current = last.get();
+            // The sequence carries into the millisecond when it runs out
+            taken = Math.max(current + 1, now);
+        } while (!last.compareAndSet(current, taken));
+
+        long millis = taken >>> SEQUENCE_BITS;
+        return millis << (NODE_BITS + SEQUENCE_BITS) | node | (taken & SEQUENCE_MASK);
+    }
+
+    static String format(char prefix, long id) {
+        char[] reference = new char[LENGTH];
+        reference[0] = prefix;
+        for (int i = DIGITS; i >= 1; i--) {
+            reference[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        reference[DIGITS + 1] = ALPHABET[checkDigit(reference)];
+        return new String(reference);
+    }
+
+    /**
+     * Whether the text is a reference with the given prefix and a matching
+     * check digit.
+     */
+    public static boolean isValid(char prefix, CharSequence reference) {
+        if (reference == null || reference.length() != LENGTH
+                || Character.toUpperCase(reference.charAt(0)) != prefix) {
+            return false;
+        }
+        int check = 0;
+        for (int i = 1; i <= DIGITS + 1; i++) {
+            int value = value(reference.charAt(i));
+            if (value < 0) {
+                return false;
+            }
+            check = timesX(check) ^ value;
+        }
+        return check == 0;
+    }
+
+    // The digit that, added next, brings the running check to zero
+    private static int checkDigit(char[] reference) {
+        int check = 0;
+        for (int i = 1; i <= DIGITS; i++) {
+            check = timesX(check) ^ VALUES[reference[i]];
+        }
+        return timesX(check);
+    }
+
+    // Product with x in GF(32); addition there is xor
+    private static int timesX(int value) {
+        int shifted = value << 1;
+        return shifted >= ALPHABET.length ? shifted ^ FIELD_POLYNOMIAL : shifted;
+    }
+
+    private static int value(char c) {
+        return c < VALUES.length ? VALUES[c] : -1;
+    }
+
+}
@@ -0,0 +1,8 @@
+-- Payments are recorded under a reference of our own, made by
+-- ReferenceGenerator when the booking is stored and sent to the provider as
+-- the idempotency key of the charge. The provider's reference for the
+-- charge is kept beside it, for reconciling with the provider.
+--
+-- Apply by hand, after V9.
+
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS provider_reference VARCHAR(100);
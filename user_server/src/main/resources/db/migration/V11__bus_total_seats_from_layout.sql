@@ -0,0 +1,64 @@
+-- A bus with a seat layout has as many seats as the layout, not whatever
+-- its total_seats says. Keep total_seats equal to the layout's seat count
+-- whenever a bus gets a layout, so everything counting seats from it (the
+-- trips.available_seats counter of V6, trip creation and
+-- AvailableSeatsReconciler) counts the seats that can be sold. Layouts
+-- never change once stored (V5), so the bus is the only side to watch.
+-- Trips of a bus that gets a new layout later are set right by the
+-- reconciler's next pass.
+--
+-- Apply by hand, after V10.
+
+-- Seats in a layout definition, counted as SeatLayout.compile does: every
+-- cell of every line except gaps and deck breaks.
+CREATE OR REPLACE FUNCTION seat_layout_size(definition TEXT)
+RETURNS INTEGER
+LANGUAGE sql
+IMMUTABLE
+AS $$
+    SELECT CAST(count(*) AS INTEGER)
+    FROM regexp_split_to_table(definition, '\r\n|\n|\r') AS line,
+         regexp_split_to_table(regexp_replace(line, '^\s+|\s+$', '', 'g'), '\s+') AS cell
+    WHERE regexp_replace(line, '^\s+|\s+$', '', 'g') <> '---'
+      AND cell NOT IN ('', '_')
+$$;
+
+CREATE OR REPLACE FUNCTION bus_total_seats_from_layout()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF NEW.seat_layout_id IS NOT NULL THEN
+        SELECT seat_layout_size(l.definition) INTO NEW.total_seats
+        FROM seat_layouts l
+        WHERE l.id = NEW.seat_layout_id;
+    END IF;
+    RETURN NEW;
+END
+$$;
+
+DROP TRIGGER IF EXISTS bus_total_seats_from_layout ON bus;
+CREATE TRIGGER bus_total_seats_from_layout
+    BEFORE INSERT OR UPDATE OF seat_layout_id, total_seats ON bus
+    FOR EACH ROW EXECUTE FUNCTION bus_total_seats_from_layout();
+
+-- Buses that got a layout before this
+UPDATE bus b
+SET total_seats = seat_layout_size(l.definition)
+FROM seat_layouts l
+WHERE l.id = b.seat_layout_id
+  AND b.total_seats <> seat_layout_size(l.definition);
+
+-- And the counters of their trips, as V6 seeded them
+UPDATE trips t
+SET available_seats = counted.available
+FROM (SELECT t.id, b.total_seats - count(se.id) FILTER (
+                 WHERE seat_taken(se.status, se.booking_id, se.lock_owner_id)) AS available
+      FROM trips t
+      JOIN schedules s ON s.id = t.schedule_id
+      JOIN bus b ON b.id = s.bus_id
+      LEFT JOIN seats se ON se.trip_id = t.id
+      WHERE b.seat_layout_id IS NOT NULL
+      GROUP BY t.id, b.total_seats) counted
+WHERE t.id = counted.id
+  AND t.available_seats <> counted.available;
@@ -0,0 +1,15 @@
+-- Composite indexes backing the bus search projection query
+-- (TripRepository.findSearchRows).
+--
+-- The schema is not managed by Hibernate (no ddl-auto) and no migration tool
+-- is wired in yet, so scripts in this directory are applied by hand, in
+-- version order. CONCURRENTLY cannot run inside a transaction block.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_schedule_route_status_active
+    ON schedules (route_id, status, active_from, active_to);
+
+-- Superseded by the composite index above (same leading column)
+DROP INDEX CONCURRENTLY IF EXISTS idx_schedule_route;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_trip_schedule_date_status
+    ON trips (schedule_id, travel_date, status);
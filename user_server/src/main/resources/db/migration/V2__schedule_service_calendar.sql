@@ -0,0 +1,71 @@
+-- Service calendar for schedules: which days inside [active_from, active_to]
+-- a schedule actually runs on (see ServiceCalendar).
+--
+--   run_days          day-of-week mask for DAILY and WEEKLY schedules,
+--                     bit 0 = Monday ... bit 6 = Sunday (127 = every day)
+--   custom_run_dates  bitset of run dates for CUSTOM schedules; bit n
+--                     (get_bit numbering) is active_from + n days
+--
+-- Apply by hand, after V1.
+
+ALTER TABLE schedules ADD COLUMN IF NOT EXISTS run_days INTEGER NOT NULL DEFAULT 127;
+ALTER TABLE schedules ADD COLUMN IF NOT EXISTS custom_run_dates BYTEA;
+
+-- Existing WEEKLY schedules run on the weekday they started on
+UPDATE schedules
+SET run_days = 1 << (EXTRACT(ISODOW FROM active_from)::int - 1)
+WHERE frequency = 'WEEKLY';
+
+-- Existing CUSTOM schedules had no dates stored and ran every day; keep it
+-- that way until their dates are filled in
+UPDATE schedules
+SET custom_run_dates = decode(repeat('ff', (active_to - active_from) / 8 + 1), 'hex')
+WHERE frequency = 'CUSTOM'
+  AND custom_run_dates IS NULL;
+
+-- Whether a schedule runs on travel_date. Used by trip materialization and
+-- bus search; mirrors ServiceCalendar.runsOn. Plain SQL and IMMUTABLE, so the
+-- planner inlines it into the calling query.
+CREATE OR REPLACE FUNCTION schedule_runs_on(frequency VARCHAR, run_days INTEGER, custom_run_dates BYTEA,
+                                            active_from DATE, active_to DATE, travel_date DATE)
+RETURNS BOOLEAN
+LANGUAGE sql
+IMMUTABLE
+AS $$
+    SELECT CASE
+        WHEN travel_date < active_from OR travel_date > active_to THEN false
+        WHEN frequency <> 'CUSTOM' THEN (run_days & (1 << (EXTRACT(ISODOW FROM travel_date)::int - 1))) <> 0
+        WHEN custom_run_dates IS NULL
+             OR travel_date - active_from >= octet_length(custom_run_dates) * 8 THEN false
+        ELSE get_bit(custom_run_dates, travel_date - active_from) = 1
+    END
+$$;
+
+-- Trips already materialized on days their schedule does not run on and
+-- without any booking are removed. Every trip had its seat rows seeded
+-- up front and seats.trip_id does not cascade, so the seats of those trips
+-- go first; a trip with a seat booked or under a live lock keeps its seats
+-- and so is kept.
+DELETE FROM seats st
+USING trips t, schedules s
+WHERE st.trip_id = t.id
+  AND s.id = t.schedule_id
+  AND t.travel_date >= CURRENT_DATE
+  AND NOT schedule_runs_on(s.frequency, s.run_days, s.custom_run_dates, s.active_from, s.active_to,
+                           t.travel_date)
+  AND NOT EXISTS (SELECT 1 FROM bookings bk WHERE bk.trip_id = t.id)
+  AND NOT EXISTS (SELECT 1
+                  FROM seats taken
+                  WHERE taken.trip_id = t.id
+                    AND (taken.status = 'BOOKED'
+                         OR taken.booking_id IS NOT NULL
+                         OR taken.locked_until > now()));
+
+DELETE FROM trips t
+USING schedules s
+WHERE s.id = t.schedule_id
+  AND t.travel_date >= CURRENT_DATE
+  AND NOT schedule_runs_on(s.frequency, s.run_days, s.custom_run_dates, s.active_from, s.active_to,
+                           t.travel_date)
+  AND NOT EXISTS (SELECT 1 FROM bookings bk WHERE bk.trip_id = t.id)
+  AND NOT EXISTS (SELECT 1 FROM seats st WHERE st.trip_id = t.id);
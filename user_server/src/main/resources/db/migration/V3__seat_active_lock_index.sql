@@ -0,0 +1,11 @@
+-- Partial index over locked seats only, for the expired-lock sweep
+-- (SeatRepository.clearExpiredLocks) and for loading running locks at
+-- startup (SeatRepository.findActiveLocks). Most seats are never locked or
+-- have been released, so the index stays small.
+--
+-- Apply by hand, after V2. CONCURRENTLY cannot run inside a transaction
+-- block.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_seat_active_lock
+    ON seats (locked_until)
+    WHERE locked_until IS NOT NULL;
@@ -0,0 +1,11 @@
+-- Seat rows are written in bulk by seat initialization and on every first
+-- hold; drop indexes that only add to the cost of those writes.
+--
+-- Apply by hand, after V3. CONCURRENTLY cannot run inside a transaction
+-- block.
+
+-- Superseded by uq_seat_trip_number (same leading column)
+DROP INDEX CONCURRENTLY IF EXISTS idx_seat_trip;
+
+-- Two distinct values, and every query on status also filters by trip
+DROP INDEX CONCURRENTLY IF EXISTS idx_seat_status;
@@ -0,0 +1,20 @@
+-- Seat layouts buses can share (see SeatLayout for the definition format).
+-- A bus without one has the standard layout for its total_seats: rows of
+-- four seats, A1-A4, B1-B4, ...
+--
+-- Layouts are never changed once stored: seat rows and bookings refer to
+-- their seat numbers. Point a bus at a new layout instead.
+--
+-- Apply by hand, after V4.
+
+CREATE TABLE IF NOT EXISTS seat_layouts (
+    id          BIGSERIAL PRIMARY KEY,
+    name        VARCHAR(50) NOT NULL,
+    type        VARCHAR(20) NOT NULL,
+    definition  TEXT NOT NULL,
+    created_at  TIMESTAMP NOT NULL DEFAULT now(),
+    CONSTRAINT uq_seat_layout_name UNIQUE (name)
+);
+
+ALTER TABLE bus ADD COLUMN IF NOT EXISTS seat_layout_id BIGINT
+    CONSTRAINT fk_bus_seat_layout REFERENCES seat_layouts(id);
@@ -0,0 +1,88 @@
+-- Keep trips.available_seats up to date: the bus's total_seats less the
+-- seats that are booked or held. Every statement changing seats adjusts the
+-- counter of each trip it touched, in the same transaction, from its
+-- transition tables; AvailableSeatsReconciler repairs any drift.
+--
+-- A held seat counts as taken until its lock is cleared from the table,
+-- which SeatLockExpiryService does within a tick of it running out.
+--
+-- Apply by hand, after V5.
+
+-- Whether a seat row takes the seat away from sale. Used by the triggers and
+-- the reconciler.
+CREATE OR REPLACE FUNCTION seat_taken(status VARCHAR, booking_id BIGINT, lock_owner_id BIGINT)
+RETURNS BOOLEAN
+LANGUAGE sql
+IMMUTABLE
+AS $$
+    SELECT status = 'BOOKED' OR booking_id IS NOT NULL OR lock_owner_id IS NOT NULL
+$$;
+
+CREATE OR REPLACE FUNCTION seats_update_available_seats()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE trips t
+        SET available_seats = t.available_seats - changed.taken
+        FROM (SELECT trip_id, count(*) AS taken
+              FROM new_seats
+              WHERE seat_taken(status, booking_id, lock_owner_id)
+              GROUP BY trip_id) changed
+        WHERE t.id = changed.trip_id;
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE trips t
+        SET available_seats = t.available_seats + changed.taken
+        FROM (SELECT trip_id, count(*) AS taken
+              FROM old_seats
+              WHERE seat_taken(status, booking_id, lock_owner_id)
+              GROUP BY trip_id) changed
+        WHERE t.id = changed.trip_id;
+    ELSE
+        UPDATE trips t
+        SET available_seats = t.available_seats - changed.taken
+        FROM (SELECT trip_id, sum(taken) AS taken
+              FROM (SELECT trip_id, 1 AS taken FROM new_seats
+                    WHERE seat_taken(status, booking_id, lock_owner_id)
+                    UNION ALL
+                    SELECT trip_id, -1 FROM old_seats
+                    WHERE seat_taken(status, booking_id, lock_owner_id)) seat_changes
+              GROUP BY trip_id
+              HAVING sum(taken) <> 0) changed
+        WHERE t.id = changed.trip_id;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+DROP TRIGGER IF EXISTS seats_available_seats_insert ON seats;
+CREATE TRIGGER seats_available_seats_insert
+    AFTER INSERT ON seats
+    REFERENCING NEW TABLE AS new_seats
+    FOR EACH STATEMENT EXECUTE FUNCTION seats_update_available_seats();
+
+DROP TRIGGER IF EXISTS seats_available_seats_update ON seats;
+CREATE TRIGGER seats_available_seats_update
+    AFTER UPDATE ON seats
+    REFERENCING OLD TABLE AS old_seats NEW TABLE AS new_seats
+    FOR EACH STATEMENT EXECUTE FUNCTION seats_update_available_seats();
+
+DROP TRIGGER IF EXISTS seats_available_seats_delete ON seats;
+CREATE TRIGGER seats_available_seats_delete
+    AFTER DELETE ON seats
+    REFERENCING OLD TABLE AS old_seats
+    FOR EACH STATEMENT EXECUTE FUNCTION seats_update_available_seats();
+
+-- Start from the right numbers
+UPDATE trips t
+SET available_seats = counted.available
+FROM (SELECT t.id, b.total_seats - count(se.id) FILTER (
+                 WHERE seat_taken(se.status, se.booking_id, se.lock_owner_id)) AS available
+      FROM trips t
+      JOIN schedules s ON s.id = t.schedule_id
+      JOIN bus b ON b.id = s.bus_id
+      LEFT JOIN seats se ON se.trip_id = t.id
+      GROUP BY t.id, b.total_seats) counted
+WHERE t.id = counted.id
+  AND t.available_seats <> counted.available;
@@ -0,0 +1,11 @@
+-- Idempotency key the client sent with the booking confirmation. A retry
+-- with the same key gets the booking the first attempt made; the unique
+-- index also settles retries racing each other through different servers.
+-- Bookings made before keep a null key.
+--
+-- Apply by hand, after V6.
+
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(64);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_booking_user_idempotency_key
+    ON bookings (user_id, idempotency_key);
@@ -0,0 +1,30 @@
+-- Payments still to be charged, written in the same transaction as their
+-- PENDING booking and drained by PaymentOutboxWorker. A row is leased to a
+-- worker by moving available_at past the lease; a worker that dies before
+-- finishing leaves it to be claimed again once the lease runs out, so each
+-- row is charged at least once. The provider is given idempotency_key with
+-- every attempt and charges it only once.
+--
+-- A row is deleted in the transaction that records its payment; a booking
+-- has at most one payment, so a late duplicate finish records nothing.
+--
+-- Apply by hand, after V7.
+
+CREATE TABLE IF NOT EXISTS payment_outbox (
+    id              BIGSERIAL PRIMARY KEY,
+    booking_id      BIGINT        NOT NULL CONSTRAINT fk_payment_outbox_booking REFERENCES bookings(id),
+    idempotency_key VARCHAR(50)   NOT NULL,
+    payment_method  VARCHAR(30)   NOT NULL,
+    amount          NUMERIC(10,2) NOT NULL,
+    attempts        INTEGER       NOT NULL DEFAULT 0,
+    available_at    TIMESTAMP     NOT NULL,
+    created_at      TIMESTAMP     NOT NULL DEFAULT now(),
+    CONSTRAINT uq_payment_outbox_booking UNIQUE (booking_id)
+);
+
+-- Claim order of the workers
+CREATE INDEX IF NOT EXISTS idx_payment_outbox_available
+    ON payment_outbox (available_at, id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_payment_booking
+    ON payments (booking_id);
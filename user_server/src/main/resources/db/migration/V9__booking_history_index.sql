@@ -0,0 +1,14 @@
+-- Booking history (GET /bookings) pages through a user's bookings newest
+-- first by (created_at, id). This index serves it in that order, and
+-- includes the booking columns the page shows, so each page is read from
+-- the index alone, however many bookings the user has.
+--
+-- Apply by hand, after V8. CONCURRENTLY cannot run inside a transaction
+-- block.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_booking_user_created
+    ON bookings (user_id, created_at DESC, id DESC)
+    INCLUDE (booking_reference, booking_status, seat_count, total_amount, trip_id);
+
+-- Superseded by idx_booking_user_created (same leading column)
+DROP INDEX CONCURRENTLY IF EXISTS idx_booking_user;
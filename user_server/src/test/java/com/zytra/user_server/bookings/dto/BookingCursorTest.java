@@ -0,0 +1,31 @@
+package com.zytra.user_server.bookings.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+class BookingCursorTest {
+
+    @Test
+    void roundTripsThroughItsUrlSafeEncoding() {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.of(2025, 6, 1, 10, 15, 30, 123_456_000),
+                9_007_199_254_740_993L);
+
+        String encoded = cursor.encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+        assertEquals(cursor, BookingCursor.decode(encoded));
+    }
+
+    @Test
+    void rejectsTamperedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> BookingCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> BookingCursor.decode("MTA6MDA"));
+        assertThrows(IllegalArgumentException.class, () -> BookingCursor.decode("MjAyNS0xMy0wMVQxMDowMHwx"));
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.zytra.user_server.bookings.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.bookings.dto.BookingCursor;
+import com.zytra.user_server.bookings.dto.BookingHistoryResponse;
+import com.zytra.user_server.bookings.dto.BookingHistoryRow;
+import com.zytra.user_server.bookings.dto.BookingRequest;
+import com.zytra.user_server.bookings.dto.BookingResponse;
+import com.zytra.user_server.bookings.entity.BookingEntity;
+import com.zytra.user_server.bookings.repository.BookingRepository;
+import com.zytra.user_server.bookings.service.implementation.BookingServiceImpl;
+import com.zytra.user_server.enums.BookingStatus;
+import com.zytra.user_server.enums.TripStatus;
+import com.zytra.user_server.payments.repository.PaymentOutboxRepository;
+import com.zytra.user_server.payments.service.PaymentOutboxWorker;
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+import com.zytra.user_server.seat.repository.SeatRepository;
+import com.zytra.user_server.seat.service.SeatStateEngine;
+import com.zytra.user_server.trips.entity.TripEntity;
+import com.zytra.user_server.trips.repository.TripRepository;
+import com.zytra.user_server.util.ReferenceGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BookingServiceTest {
+
+    private static final long TRIP = 7L;
+    private static final long USER = 3L;
+    private static final String[] SEATS = { "B2", "B1" };
+
+    private BookingRepository bookingRepository;
+    private SeatRepository seatRepository;
+    private SeatStateEngine seatStateEngine;
+    private PaymentOutboxRepository paymentOutboxRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private BookingService bookingService;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        seatRepository = mock(SeatRepository.class);
+        seatStateEngine = mock(SeatStateEngine.class);
+        TripRepository tripRepository = mock(TripRepository.class);
+        when(tripRepository.findById(TRIP)).thenReturn(Optional.of(TripEntity.builder()
+                .id(TRIP)
+                .fare(new BigDecimal("250.00"))
+                .status(TripStatus.ACTIVE)
+                .build()));
+
+        when(bookingRepository.insertIfNew(anyString(), eq(USER), eq(TRIP), anyInt(), any(), anyString(),
+                anyString(), any())).thenReturn(11L);
+        when(seatRepository.bookHeldSeats(eq(TRIP), aryEq(new String[] { "B1", "B2" }), eq(USER), eq(11L), any()))
+                .thenReturn(2L);
+
+        paymentOutboxRepository = mock(PaymentOutboxRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        bookingService = new BookingServiceImpl(bookingRepository, seatRepository, tripRepository, seatStateEngine,
+                paymentOutboxRepository, mock(PaymentOutboxWorker.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new ReferenceGenerator(0), 1000, 60,
+                20, 100, meterRegistry);
+    }
+
+    @Test
+    void retriesGetTheFirstResultWithoutBookingAgain() {
+        BookingResponse first = bookingService.confirm("key-1", USER, request(TRIP));
+        assertEquals(11L, first.getBookingId());
+        assertEquals(List.of("B1", "B2"), first.getSeatNumbers());
+        assertEquals(new BigDecimal("500.00"), first.getTotalAmount());
+        // Confirmed once paid
+        assertEquals(BookingStatus.PENDING, first.getBookingStatus());
+        assertTrue(ReferenceGenerator.isValid(ReferenceGenerator.BOOKING, first.getBookingReference()));
+        verify(paymentOutboxRepository).enqueue(eq(11L),
+                argThat(reference -> ReferenceGenerator.isValid(ReferenceGenerator.PAYMENT, reference)), eq("UPI"),
+                eq(new BigDecimal("500.00")), eq(first.getCreatedAt()));
+
+        assertSame(first, bookingService.confirm("key-1", USER, request(TRIP)));
+
+        verify(bookingRepository, times(1)).insertIfNew(anyString(), anyLong(), anyLong(), anyInt(), any(),
+                anyString(), anyString(), any());
+        verify(seatRepository, times(1)).bookHeldSeats(anyLong(), any(), anyLong(), anyLong(), any());
+        verify(seatStateEngine, times(1)).booked(TRIP, List.of("B1", "B2"));
+        assertEquals(1, meterRegistry.counter("bookings.replayed").count());
+
+        // The key belongs to this booking only
+        assertThrows(IllegalArgumentException.class, () -> bookingService.confirm("key-1", USER, request(8L)));
+    }
+
+    @Test
+    void retriesOfARunningConfirmationWaitForIt() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(seatRepository.bookHeldSeats(anyLong(), any(), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            writing.countDown();
+            proceed.await();
+            return 2L;
+        });
+
+        CompletableFuture<BookingResponse> first = CompletableFuture
+                .supplyAsync(() -> bookingService.confirm("key-2", USER, request(TRIP)));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<BookingResponse> retry = CompletableFuture
+                .supplyAsync(() -> bookingService.confirm("key-2", USER, request(TRIP)));
+
+        proceed.countDown();
+        assertSame(first.get(5, TimeUnit.SECONDS), retry.get(5, TimeUnit.SECONDS));
+        verify(seatRepository, times(1)).bookHeldSeats(anyLong(), any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void holdsThatRanOutFailAndTheKeyCanBeTriedAgain() {
+        doReturn(1L).when(seatRepository).bookHeldSeats(anyLong(), any(), anyLong(), anyLong(), any());
+        assertThrows(SeatUnavailableException.class, () -> bookingService.confirm("key-3", USER, request(TRIP)));
+        verify(seatStateEngine, never()).booked(anyLong(), any());
+        verify(paymentOutboxRepository, never()).enqueue(anyLong(), anyString(), anyString(), any(), any());
+
+        doReturn(2L).when(seatRepository).bookHeldSeats(anyLong(), any(), anyLong(), anyLong(), any());
+        assertEquals(11L, bookingService.confirm("key-3", USER, request(TRIP)).getBookingId());
+        verify(bookingRepository, times(2)).insertIfNew(anyString(), anyLong(), anyLong(), anyInt(), any(),
+                anyString(), anyString(), any());
+    }
+
+    @Test
+    void bookingsOfEarlierAttemptsAreReadFromTheTable() {
+        when(bookingRepository.insertIfNew(anyString(), anyLong(), anyLong(), anyInt(), any(), anyString(),
+                eq("key-4"), any())).thenReturn(null);
+        LocalDateTime createdAt = LocalDateTime.of(2025, 6, 1, 10, 0);
+        when(bookingRepository.findByUserIdAndIdempotencyKey(USER, "key-4")).thenReturn(Optional.of(
+                BookingEntity.builder()
+                        .id(5L)
+                        .bookingReference("REF5")
+                        .trip(TripEntity.builder().id(TRIP).build())
+                        .totalAmount(new BigDecimal("500.00"))
+                        .bookingStatus(BookingStatus.CONFIRMED)
+                        .createdAt(createdAt)
+                        .build()));
+        when(bookingRepository.findSeatNumbers(5L)).thenReturn(List.of("B1", "B2"));
+
+        BookingResponse stored = bookingService.confirm("key-4", USER, request(TRIP));
+        assertEquals(5L, stored.getBookingId());
+        assertEquals("REF5", stored.getBookingReference());
+        assertEquals(List.of("B1", "B2"), stored.getSeatNumbers());
+        assertEquals(createdAt, stored.getCreatedAt());
+
+        verify(seatRepository, never()).bookHeldSeats(anyLong(), any(), anyLong(), anyLong(), any());
+        verify(seatStateEngine, never()).booked(anyLong(), any());
+    }
+
+    @Test
+    void historyPagesFollowOnFromTheLastBookingSent() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 6, 1, 10, 0);
+        BookingHistoryRow oldest = historyRow(5L, createdAt.minusDays(1));
+        List<BookingHistoryRow> newest = List.of(historyRow(9L, createdAt), historyRow(8L, createdAt), oldest);
+        when(bookingRepository.findHistoryPage(eq(USER), any(), eq(Long.MAX_VALUE), eq(3))).thenReturn(newest);
+
+        BookingHistoryResponse first = bookingService.getBookings(USER, null, 2);
+        assertEquals(List.of(9L, 8L), first.getBookings().stream()
+                .map(BookingHistoryResponse.BookingSummary::getBookingId)
+                .toList());
+        assertEquals(List.of("B1", "B2"), first.getBookings().get(0).getSeatNumbers());
+        assertEquals(BookingStatus.CONFIRMED, first.getBookings().get(0).getBookingStatus());
+        assertEquals(new BookingCursor(createdAt, 8L), BookingCursor.decode(first.getNextCursor()));
+
+        when(bookingRepository.findHistoryPage(USER, createdAt, 8L, 3)).thenReturn(List.of(oldest));
+        BookingHistoryResponse last = bookingService.getBookings(USER, first.getNextCursor(), 2);
+        assertEquals(1, last.getBookings().size());
+        assertNull(last.getNextCursor());
+
+        assertThrows(IllegalArgumentException.class, () -> bookingService.getBookings(USER, null, 101));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.getBookings(USER, "not a cursor", null));
+    }
+
+    private static BookingHistoryRow historyRow(long bookingId, LocalDateTime createdAt) {
+        BookingHistoryRow row = mock(BookingHistoryRow.class);
+        when(row.getBookingId()).thenReturn(bookingId);
+        when(row.getBookingStatus()).thenReturn("CONFIRMED");
+        when(row.getCreatedAt()).thenReturn(createdAt);
+        when(row.getSeatNumbers()).thenReturn("B1,B2");
+        return row;
+    }
+
+    private static BookingRequest request(long tripId) {
+        return new BookingRequest(tripId, SEATS.clone(), "UPI");
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.zytra.user_server.bus.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+
+import org.junit.jupiter.api.Test;
+
+class SearchCursorTest {
+
+    @Test
+    void roundTripsThroughItsUrlSafeEncoding() {
+        SearchCursor cursor = new SearchCursor(LocalTime.of(22, 5, 30), 9_007_199_254_740_993L);
+
+        String encoded = cursor.encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+        assertEquals(cursor, SearchCursor.decode(encoded));
+    }
+
+    @Test
+    void rejectsTamperedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("MTA6MDA"));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("MjU6MDB8MQ"));
+    }
+
+}
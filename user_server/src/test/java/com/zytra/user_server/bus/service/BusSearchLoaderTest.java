@@ -0,0 +1,186 @@
+package com.zytra.user_server.bus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zytra.user_server.bus.dto.BusSearchFilter;
+import com.zytra.user_server.bus.dto.BusSearchRow;
+import com.zytra.user_server.bus.dto.SearchBusesResponse;
+import com.zytra.user_server.bus.dto.SearchCursor;
+import com.zytra.user_server.bus.exception.NoBusAvailableException;
+import com.zytra.user_server.enums.Frequency;
+import com.zytra.user_server.enums.ScheduleStatus;
+import com.zytra.user_server.enums.TripStatus;
+import com.zytra.user_server.routes.entity.RouteEntity;
+import com.zytra.user_server.schedule.entity.ScheduleEntity;
+import com.zytra.user_server.schedule.repository.ScheduleRepository;
+import com.zytra.user_server.trips.repository.TripRepository;
+import com.zytra.user_server.trips.service.TripCreationService;
+
+class BusSearchLoaderTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 6, 1);
+    private static final LocalTime LAST_DEPARTURE = LocalTime.of(23, 59, 59);
+    private static final BigDecimal FARE_PER_KM = new BigDecimal("2.5");
+
+    private ScheduleRepository scheduleRepository;
+    private TripRepository tripRepository;
+    private TripCreationService tripCreationService;
+    private BusSearchLoader loader;
+    private RouteEntity route;
+
+    @BeforeEach
+    void setUp() {
+        scheduleRepository = mock(ScheduleRepository.class);
+        tripRepository = mock(TripRepository.class);
+        tripCreationService = mock(TripCreationService.class);
+        loader = new BusSearchLoader(scheduleRepository, tripRepository, tripCreationService);
+        ReflectionTestUtils.setField(loader, "farePerKm", FARE_PER_KM);
+        route = new RouteEntity();
+        route.setId(3L);
+        route.setSource("Pune");
+        route.setDestination("Goa");
+        route.setDistanceKm(450);
+
+        when(scheduleRepository.findIdsWithoutTripOnDate(3L, DATE, ScheduleStatus.ACTIVE)).thenReturn(List.of());
+        when(scheduleRepository.existsActiveScheduleOnDate(3L, DATE, ScheduleStatus.ACTIVE)).thenReturn(true);
+    }
+
+    @Test
+    void todaysSearchesSkipBusesLeavingAtOrBeforeNow() {
+        // Now is part way through 10:15:30: the bus leaving at 10:15:30
+        // has gone, even when the clock says so to the microsecond
+        loader.loadPage(route, DATE, new BusSearchFilter(), null, LocalTime.of(10, 15, 30, 1_000), 11);
+        loader.loadPage(route, DATE, new BusSearchFilter(), null, LocalTime.of(10, 15, 30), 11);
+
+        verify(tripRepository, times(2)).findSearchPageAscending(3L, DATE,
+                ScheduleStatus.ACTIVE, TripStatus.ACTIVE, LocalTime.of(10, 15, 31), LAST_DEPARTURE,
+                new BigDecimal("1000000000"), "", LocalTime.MIN, 0L, Limit.of(11));
+    }
+
+    @Test
+    void aLaterDepartureFilterWinsOverNow() {
+        BusSearchFilter filter = BusSearchFilter.builder().departureFrom(LocalTime.of(18, 0)).build();
+        loader.loadPage(route, DATE, filter, null, LocalTime.of(10, 15, 30), 11);
+
+        verify(tripRepository).findSearchPageAscending(eq(3L), eq(DATE), any(), any(), eq(LocalTime.of(18, 0)),
+                eq(LAST_DEPARTURE), any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void nothingLeavesAfterTheLastSecondOfTheDay() {
+        assertEquals(List.of(),
+                loader.loadPage(route, DATE, new BusSearchFilter(), null, LocalTime.of(23, 59, 59, 500), 11));
+        verifyNoInteractions(tripRepository);
+    }
+
+    @Test
+    void laterPagesStartAfterTheCursor() {
+        SearchCursor cursor = new SearchCursor(LocalTime.of(14, 0), 42L);
+        BusSearchFilter filter = BusSearchFilter.builder().sortOrder(Sort.Direction.DESC).build();
+        List<BusSearchRow> page = List.of(mock(BusSearchRow.class));
+        when(tripRepository.findSearchPageDescending(3L, DATE, ScheduleStatus.ACTIVE, TripStatus.ACTIVE,
+                LocalTime.MIN, LAST_DEPARTURE, new BigDecimal("1000000000"), "", LocalTime.of(14, 0), 42L,
+                Limit.of(11))).thenReturn(page);
+
+        assertEquals(page, loader.loadPage(route, DATE, filter, cursor, null, 11));
+    }
+
+    @Test
+    void anEmptyFirstPageIsOnlyAnErrorWithoutSchedules() {
+        assertEquals(List.of(), loader.loadPage(route, DATE, new BusSearchFilter(), null, null, 11));
+
+        when(scheduleRepository.existsActiveScheduleOnDate(3L, DATE, ScheduleStatus.ACTIVE)).thenReturn(false);
+        assertThrows(NoBusAvailableException.class,
+                () -> loader.loadPage(route, DATE, new BusSearchFilter(), null, null, 11));
+    }
+
+    @Test
+    void rangesReadEveryDateAtOnceAndKeepOnlyDaysWithService() {
+        LocalDate last = DATE.plusDays(2);
+        // The second schedule stops running after the first day
+        when(scheduleRepository.findActiveSchedulesByRouteAndDateRange(3L, DATE, last, ScheduleStatus.ACTIVE))
+                .thenReturn(List.of(schedule(1L, DATE, DATE.plusDays(1)), schedule(2L, DATE, DATE)));
+        when(tripRepository.findSearchRowsByScheduleIdInAndTravelDateBetween(Set.of(1L, 2L), DATE, last))
+                .thenReturn(List.of(
+                        row(2L, 20L, DATE, LocalTime.of(6, 0), 30),
+                        row(1L, 10L, DATE, LocalTime.of(9, 0), 12),
+                        row(1L, 11L, DATE.plusDays(1), LocalTime.of(9, 0), 0)));
+
+        Map<LocalDate, List<SearchBusesResponse.BusResult>> results = loader.loadResults(route,
+                Set.of(DATE, DATE.plusDays(1), last));
+
+        // The sold out trip is left out, the day without service too
+        assertEquals(Set.of(DATE, DATE.plusDays(1)), results.keySet());
+        assertEquals(List.of(20L, 10L), results.get(DATE).stream().map(SearchBusesResponse.BusResult::getTripId)
+                .toList());
+        assertEquals(List.of(), results.get(DATE.plusDays(1)));
+        verify(tripRepository, never()).materializeTrips(any(), any(), any(), any());
+    }
+
+    @Test
+    void rangesCreateTheMissingTripsOfTheWholeSpanInOneGo() {
+        LocalDate last = DATE.plusDays(1);
+        when(scheduleRepository.findActiveSchedulesByRouteAndDateRange(3L, DATE, last, ScheduleStatus.ACTIVE))
+                .thenReturn(List.of(schedule(1L, DATE, last), schedule(2L, DATE, last)));
+        when(tripRepository.findSearchRowsByScheduleIdInAndTravelDateBetween(Set.of(1L, 2L), DATE, last))
+                .thenReturn(List.of(row(1L, 10L, DATE, LocalTime.of(9, 0), 12),
+                        row(1L, 11L, last, LocalTime.of(9, 0), 12), row(2L, 20L, DATE, LocalTime.of(6, 0), 30)))
+                .thenReturn(List.of(row(1L, 10L, DATE, LocalTime.of(9, 0), 12),
+                        row(1L, 11L, last, LocalTime.of(9, 0), 12), row(2L, 20L, DATE, LocalTime.of(6, 0), 30),
+                        row(2L, 21L, last, LocalTime.of(6, 0), 30)));
+
+        Map<LocalDate, List<SearchBusesResponse.BusResult>> results = loader.loadResults(route, Set.of(DATE, last));
+
+        verify(tripRepository).materializeTrips(Set.of(2L), DATE, last, FARE_PER_KM);
+        assertEquals(2, results.get(last).size());
+    }
+
+    @Test
+    void rangesWithoutSchedulesAreEmpty() {
+        when(scheduleRepository.findActiveSchedulesByRouteAndDateRange(any(), any(), any(), any()))
+                .thenReturn(List.of());
+
+        assertEquals(Map.of(), loader.loadResults(route, Set.of(DATE, DATE.plusDays(1))));
+        verifyNoInteractions(tripRepository);
+    }
+
+    private static ScheduleEntity schedule(Long id, LocalDate activeFrom, LocalDate activeTo) {
+        return ScheduleEntity.builder()
+                .id(id)
+                .frequency(Frequency.DAILY)
+                .activeFrom(activeFrom)
+                .activeTo(activeTo)
+                .status(ScheduleStatus.ACTIVE)
+                .build();
+    }
+
+    private static BusSearchRow row(Long scheduleId, Long tripId, LocalDate travelDate, LocalTime departure,
+            int availableSeats) {
+        return new BusSearchRow(scheduleId, tripId, "WB-" + scheduleId, "AC Sleeper", "Pune", "Goa", travelDate,
+                departure, departure.plusHours(9), availableSeats, new BigDecimal("1125.00"), TripStatus.ACTIVE);
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.zytra.user_server.bus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zytra.user_server.bus.dto.SearchBusesResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SearchResultCacheTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2030, 1, 7);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    private SearchResultCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SearchResultCache(100, 300, new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void answersFromTheCacheUntilATripInTheEntryChanges() {
+        cache.get(1L, MONDAY, loader(10L, 11L));
+        cache.get(1L, TUESDAY, loader(12L));
+        cache.get(1L, MONDAY, loader(10L, 11L));
+        assertEquals(2, loads.get());
+
+        cache.invalidateTrip(11L);
+        cache.get(1L, MONDAY, loader(10L, 11L));
+        cache.get(1L, TUESDAY, loader(12L));
+        assertEquals(3, loads.get());
+
+        // Trips in no entry change nothing
+        cache.invalidateTrip(99L);
+        cache.get(1L, MONDAY, loader(10L, 11L));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void insideATransactionTheEntryIsEvictedOnCommit() {
+        cache.get(1L, MONDAY, loader(10L));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidateTrip(10L);
+            // A search before the commit still gets the cached results
+            cache.get(1L, MONDAY, loader(10L));
+            assertEquals(1, loads.get());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        cache.get(1L, MONDAY, loader(10L));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void bulkLookupsLoadOnlyMissingDatesAndIndexTheirTrips() {
+        cache.get(1L, MONDAY, loader(10L));
+
+        Map<LocalDate, List<SearchBusesResponse.BusResult>> results = cache.getAll(1L, List.of(MONDAY, TUESDAY),
+                missing -> {
+                    assertEquals(Set.of(TUESDAY), missing);
+                    loads.incrementAndGet();
+                    return Map.of(TUESDAY, List.of(result(12L)));
+                });
+        assertEquals(Set.of(MONDAY, TUESDAY), results.keySet());
+        assertEquals(2, loads.get());
+
+        cache.invalidateTrip(12L);
+        cache.get(1L, TUESDAY, loader(12L));
+        assertEquals(3, loads.get());
+    }
+
+    private Supplier<List<SearchBusesResponse.BusResult>> loader(Long... tripIds) {
+        return () -> {
+            loads.incrementAndGet();
+            return Stream.of(tripIds).map(SearchResultCacheTest::result).toList();
+        };
+    }
+
+    private static SearchBusesResponse.BusResult result(Long tripId) {
+        return SearchBusesResponse.BusResult.builder().tripId(tripId).build();
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.zytra.user_server.connections.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.zytra.user_server.connections.dto.TimetableRow;
+import com.zytra.user_server.enums.Frequency;
+import com.zytra.user_server.schedule.service.ServiceCalendar;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Connection search over small hand-made timetables, plus a latency benchmark
+ * on a synthetic network of thousands of routes: set ZYTRA_BENCHMARKS to run
+ * it.
+ */
+@Slf4j
+class TimetableTest {
+
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 10);
+
+    private static long nextScheduleId = 1;
+
+    @Test
+    void findsDirectAndOneStopJourneysEarliestArrivalFirst() {
+        Timetable timetable = Timetable.of(List.of(
+                row("Kolkata", "Siliguri", "08:00", "20:00"),
+                row("Kolkata", "Durgapur", "06:00", "10:00"),
+                row("Durgapur", "Siliguri", "10:45", "18:00")));
+
+        List<Timetable.Journey> journeys = search(timetable, "kolkata", "SILIGURI", 2);
+
+        assertEquals(2, journeys.size());
+        assertEquals(1, journeys.get(0).transfers());
+        assertEquals(minutes("18:00"), journeys.get(0).arrival());
+        assertEquals(0, journeys.get(1).transfers());
+    }
+
+    @Test
+    void respectsMinimumLayover() {
+        Timetable timetable = Timetable.of(List.of(
+                row("A", "B", "06:00", "10:00"),
+                row("B", "C", "10:15", "12:00"),
+                row("B", "C", "10:30", "12:30")));
+
+        List<Timetable.Journey> journeys = search(timetable, "A", "C", 1);
+
+        assertEquals(1, journeys.size());
+        assertEquals(minutes("10:30"), departureOfLeg(journeys.get(0), 1));
+    }
+
+    @Test
+    void waitsPastMidnightForNextDayDeparture() {
+        Timetable timetable = Timetable.of(List.of(
+                row("A", "B", "20:00", "23:00"),
+                row("B", "C", "02:00", "05:00")));
+
+        List<Timetable.Journey> journeys = search(timetable, "A", "C", 1);
+
+        assertEquals(1, journeys.size());
+        assertEquals(List.of(DATE, DATE.plusDays(1)), journeys.get(0).travelDates());
+        assertEquals(Timetable.MINUTES_PER_DAY + minutes("05:00"), journeys.get(0).arrival());
+    }
+
+    @Test
+    void skipsLegsNotRunningOnTheirTravelDate() {
+        Timetable timetable = Timetable.of(List.of(
+                row("A", "B", "20:00", "23:00"),
+                new TimetableRow(nextScheduleId++, "B", "C", LocalTime.parse("02:00"), LocalTime.parse("05:00"),
+                        Frequency.DAILY, ServiceCalendar.EVERY_DAY, null, DATE.minusDays(5), DATE)));
+
+        assertTrue(search(timetable, "A", "C", 1).isEmpty());
+    }
+
+    @Test
+    void skipsDaysOfWeekTheScheduleDoesNotRunOn() {
+        // DATE is a Thursday; the connection only runs on Fridays
+        Timetable timetable = Timetable.of(List.of(
+                row("A", "B", "06:00", "08:00"),
+                new TimetableRow(nextScheduleId++, "B", "C", LocalTime.parse("09:00"), LocalTime.parse("11:00"),
+                        Frequency.WEEKLY, ServiceCalendar.runDays(Set.of(DayOfWeek.FRIDAY)), null,
+                        DATE.minusDays(30), DATE.plusDays(30))));
+
+        assertTrue(search(timetable, "A", "C", 1).isEmpty());
+        assertEquals(1, timetable.search("A", "C", DATE.plusDays(1), 0, 1, 30, 360, 10).size());
+    }
+
+    @Test
+    void findsTwoTransferJourneysWithoutRevisitingCities() {
+        Timetable timetable = Timetable.of(List.of(
+                row("A", "B", "06:00", "07:00"),
+                row("B", "A", "08:00", "09:00"),
+                row("B", "C", "08:00", "09:00"),
+                row("C", "D", "10:00", "11:00"),
+                row("A", "D", "10:00", "12:00")));
+
+        List<Timetable.Journey> journeys = search(timetable, "A", "D", 2);
+
+        assertEquals(2, journeys.size());
+        assertEquals(2, journeys.get(0).transfers());
+        assertEquals(0, journeys.get(1).transfers());
+        assertTrue(search(timetable, "A", "D", 1).stream().allMatch(journey -> journey.transfers() == 0));
+    }
+
+    @Test
+    void incrementalUpdateKeepsExistingLegs() {
+        Timetable before = Timetable.of(List.of(row("A", "B", "06:00", "07:00")));
+        Timetable after = before.with(List.of(row("B", "C", "08:00", "09:00")));
+
+        assertTrue(search(before, "A", "C", 1).isEmpty());
+        assertEquals(1, search(after, "A", "C", 1).size());
+        assertEquals(2, after.legCount());
+        assertEquals(1, before.legCount());
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "ZYTRA_BENCHMARKS", matches = ".+")
+    void searchesSyntheticNetworkInteractively() {
+        int cities = 300;
+        int routes = 6_000;
+        int schedulesPerRoute = 4;
+        Random random = new Random(42);
+
+        List<TimetableRow> rows = new ArrayList<>(routes * schedulesPerRoute);
+        for (int i = 0; i < routes; i++) {
+            int from = random.nextInt(cities);
+            int to = (from + 1 + random.nextInt(cities - 1)) % cities;
+            int duration = 60 + random.nextInt(600);
+            for (int j = 0; j < schedulesPerRoute; j++) {
+                int departure = random.nextInt(Timetable.MINUTES_PER_DAY);
+                rows.add(new TimetableRow(nextScheduleId++, "City " + from, "City " + to,
+                        LocalTime.of(departure / 60, departure % 60),
+                        LocalTime.of((departure + duration) / 60 % 24, (departure + duration) % 60),
+                        Frequency.DAILY, ServiceCalendar.EVERY_DAY, null, DATE.minusDays(30), DATE.plusDays(30)));
+            }
+        }
+
+        long buildStarted = System.nanoTime();
+        Timetable timetable = Timetable.of(rows);
+        long buildMillis = (System.nanoTime() - buildStarted) / 1_000_000;
+
+        int searches = 2_000;
+        String[][] queries = new String[searches][];
+        for (int i = 0; i < searches; i++) {
+            queries[i] = new String[] { "City " + random.nextInt(cities), "City " + random.nextInt(cities) };
+        }
+
+        // Warm up
+        for (String[] query : queries) {
+            timetable.search(query[0], query[1], DATE, 0, 2, 30, 360, 30);
+        }
+
+        long[] nanos = new long[searches];
+        int withResults = 0;
+        for (int i = 0; i < searches; i++) {
+            long started = System.nanoTime();
+            List<Timetable.Journey> journeys = timetable.search(queries[i][0], queries[i][1], DATE, 0, 2, 30, 360,
+                    30);
+            nanos[i] = System.nanoTime() - started;
+            if (!journeys.isEmpty()) {
+                withResults++;
+            }
+        }
+        Arrays.sort(nanos);
+
+        double p50 = nanos[searches / 2] / 1_000_000.0;
+        double p99 = nanos[searches * 99 / 100] / 1_000_000.0;
+        log.info("Timetable of {} legs between {} cities built in {} ms; {} searches, {} with results,"
+                + " p50 {} ms, p99 {} ms", timetable.legCount(), timetable.cityCount(), buildMillis, searches,
+                withResults, String.format("%.3f", p50), String.format("%.3f", p99));
+
+        assertTrue(withResults > 0);
+        assertTrue(p99 < 50, "p99 search latency " + p99 + " ms");
+    }
+
+    private static List<Timetable.Journey> search(Timetable timetable, String source, String destination,
+            int maxTransfers) {
+        return timetable.search(source, destination, DATE, 0, maxTransfers, 30, 360, 10);
+    }
+
+    private static int departureOfLeg(Timetable.Journey journey, int leg) {
+        return journey.legs().get(leg).departure();
+    }
+
+    private static int minutes(String time) {
+        LocalTime parsed = LocalTime.parse(time);
+        return parsed.getHour() * 60 + parsed.getMinute();
+    }
+
+    private static TimetableRow row(String source, String destination, String departure, String arrival) {
+        return new TimetableRow(nextScheduleId++, source, destination, LocalTime.parse(departure),
+                LocalTime.parse(arrival), Frequency.DAILY, ServiceCalendar.EVERY_DAY, null, DATE.minusDays(30),
+                DATE.plusDays(30));
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.zytra.user_server.payments.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.bookings.dto.BookedSeatRow;
+import com.zytra.user_server.bookings.entity.BookingEntity;
+import com.zytra.user_server.bookings.repository.BookingRepository;
+import com.zytra.user_server.bus.service.SearchResultCache;
+import com.zytra.user_server.payments.dto.PaymentCharge;
+import com.zytra.user_server.payments.dto.PaymentResult;
+import com.zytra.user_server.payments.entity.PaymentOutboxEntity;
+import com.zytra.user_server.payments.repository.PaymentOutboxRepository;
+import com.zytra.user_server.seat.service.SeatStateEngine;
+import com.zytra.user_server.tickets.service.TicketIssuer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PaymentOutboxWorkerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 10, 0);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private PaymentOutboxRepository outbox;
+    private BookingRepository bookingRepository;
+    private SeatStateEngine seatStateEngine;
+    private SearchResultCache searchResultCache;
+    private TicketIssuer ticketIssuer;
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentOutboxWorker worker;
+
+    // Booking of each outbox row, and how the provider answers each key
+    private final Map<Long, Long> bookings = new HashMap<>();
+    private final Map<String, PaymentProvider> answers = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        outbox = mock(PaymentOutboxRepository.class);
+        bookingRepository = mock(BookingRepository.class);
+        seatStateEngine = mock(SeatStateEngine.class);
+        searchResultCache = mock(SearchResultCache.class);
+        ticketIssuer = mock(TicketIssuer.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        // Each row still in the outbox gets its payment recorded
+        when(outbox.recordPayments(any(), any(), any(), any())).thenAnswer(invocation -> Arrays
+                .stream(invocation.<Long[]>getArgument(0))
+                .map(bookings::get)
+                .toList());
+
+        PaymentProvider provider = charge -> answers.get(charge.idempotencyKey()).charge(charge);
+        worker = new PaymentOutboxWorker(outbox, bookingRepository, provider, seatStateEngine, searchResultCache,
+                ticketIssuer, new TransactionTemplate(mock(PlatformTransactionManager.class)), 4, 10, 1000, 60,
+                MAX_ATTEMPTS, 5, 300, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        // Never started; only the pool has to go
+        worker.stop();
+    }
+
+    @Test
+    void approvedChargesConfirmTheirBookingsTogether() throws InterruptedException {
+        claim(row(1L, 101L, 1), row(2L, 102L, 1), row(3L, 103L, 1));
+        answers.put("K1", charge -> PaymentResult.approved("P1"));
+        answers.put("K2", charge -> PaymentResult.approved("P2"));
+        answers.put("K3", charge -> PaymentResult.approved("P3"));
+
+        assertEquals(3, worker.drain(NOW));
+
+        verify(outbox).recordPayments(aryEq(new Long[] { 1L, 2L, 3L }), aryEq(new String[] { "P1", "P2", "P3" }),
+                eq("SUCCESS"), any());
+        verify(bookingRepository).confirmPending(aryEq(new Long[] { 101L, 102L, 103L }));
+        verify(ticketIssuer).issue(List.of(101L, 102L, 103L));
+        verify(bookingRepository, never()).cancelPending(any());
+        verify(outbox, never()).retryLater(any(), any(), anyLong(), anyLong());
+        assertEquals(3, meterRegistry.counter("payments.approved").count());
+    }
+
+    @Test
+    void declinedChargesCancelTheBookingAndFreeItsSeats() throws InterruptedException {
+        claim(row(1L, 101L, 1), row(2L, 102L, 1));
+        answers.put("K1", charge -> PaymentResult.approved("P1"));
+        answers.put("K2", charge -> PaymentResult.declined("P2"));
+        when(bookingRepository.cancelPending(aryEq(new Long[] { 102L }))).thenReturn(List.of(
+                seat(7L, "B1"), seat(7L, "B2")));
+
+        worker.drain(NOW);
+
+        verify(bookingRepository).confirmPending(aryEq(new Long[] { 101L }));
+        verify(ticketIssuer).issue(List.of(101L));
+        verify(outbox).recordPayments(aryEq(new Long[] { 2L }), aryEq(new String[] { "P2" }), eq("FAILED"), any());
+        verify(seatStateEngine).unbooked(7L, List.of("B1", "B2"));
+        verify(searchResultCache).invalidateTrip(7L);
+    }
+
+    @Test
+    void unknownOutcomesAreRetriedThenLeftForReconciliation() throws InterruptedException {
+        claim(row(1L, 101L, 1), row(2L, 102L, MAX_ATTEMPTS));
+        answers.put("K1", charge -> {
+            throw new IllegalStateException("gateway timeout");
+        });
+        answers.put("K2", answers.get("K1"));
+
+        worker.drain(NOW);
+
+        verify(outbox).retryLater(aryEq(new Long[] { 1L }), any(), eq(5L), eq(300L));
+        // The provider may have charged it: the booking is neither cancelled
+        // nor confirmed
+        verify(outbox).recordPayments(aryEq(new Long[] { 2L }), aryEq(new String[] { null }), eq("UNKNOWN"), any());
+        verify(bookingRepository, never()).cancelPending(any());
+        verify(bookingRepository, never()).confirmPending(any());
+        verify(seatStateEngine, never()).unbooked(anyLong(), any());
+        assertEquals(1, meterRegistry.counter("payments.retried").count());
+        assertEquals(1, meterRegistry.counter("payments.unresolved").count());
+    }
+
+    @Test
+    void resultsOfRowsAlreadyFinishedElsewhereMoveNothing() throws InterruptedException {
+        claim(row(1L, 101L, 2));
+        answers.put("K1", charge -> PaymentResult.approved("P1"));
+        doReturn(List.of()).when(outbox).recordPayments(any(), any(), any(), any());
+
+        worker.drain(NOW);
+
+        verify(bookingRepository, never()).confirmPending(any());
+    }
+
+    @Test
+    void fakeProviderChargesEachKeyOnce() {
+        FakePaymentProvider provider = new FakePaymentProvider(0, "DECLINE");
+        PaymentResult first = provider.charge(new PaymentCharge("K1", "UPI", BigDecimal.TEN));
+
+        assertSame(first, provider.charge(new PaymentCharge("K1", "UPI", BigDecimal.TEN)));
+        assertEquals(PaymentResult.Outcome.APPROVED, first.outcome());
+        assertEquals(PaymentResult.Outcome.DECLINED,
+                provider.charge(new PaymentCharge("K2", "DECLINE", BigDecimal.TEN)).outcome());
+        assertEquals(2, provider.chargeCount());
+        assertTrue(first.reference().startsWith("FAKE-"));
+    }
+
+    private void claim(PaymentOutboxEntity... rows) {
+        when(outbox.claim(eq(NOW), eq(NOW.plusSeconds(60)), anyInt())).thenReturn(List.of(rows));
+    }
+
+    private PaymentOutboxEntity row(long id, long bookingId, int attempts) {
+        bookings.put(id, bookingId);
+        return PaymentOutboxEntity.builder()
+                .id(id)
+                .booking(BookingEntity.builder().id(bookingId).build())
+                .idempotencyKey("K" + id)
+                .paymentMethod("UPI")
+                .amount(new BigDecimal("250.00"))
+                .attempts(attempts)
+                .build();
+    }
+
+    private static BookedSeatRow seat(long tripId, String seatNumber) {
+        return new BookedSeatRow() {
+
+            @Override
+            public Long getTripId() {
+                return tripId;
+            }
+
+            @Override
+            public String getSeatNumber() {
+                return seatNumber;
+            }
+
+        };
+    }
+
+}
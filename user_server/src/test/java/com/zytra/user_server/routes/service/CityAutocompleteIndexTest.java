@@ -0,0 +1,133 @@
+package com.zytra.user_server.routes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.zytra.user_server.routes.dto.CitySuggestionResponse;
+import com.zytra.user_server.routes.entity.RouteEntity;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class CityAutocompleteIndexTest {
+
+    private CityAutocompleteIndex index;
+    private long nextRouteId;
+
+    @BeforeEach
+    void buildIndex() {
+        index = new CityAutocompleteIndex();
+        nextRouteId = 1;
+        index.rebuild(List.of(
+                route("Kolkata", "Durgapur"),
+                route("Durgapur", "Asansol"),
+                route("Kolkata", "Siliguri"),
+                route("Asansol", "Dhanbad"),
+                route("Kolkata", "Bidhan Nagar"),
+                route("kolkata ", "Kharagpur")));
+    }
+
+    @Test
+    void suggestsByPrefixRankedByRouteCount() {
+        assertEquals(List.of("Kolkata", "Kharagpur"), names("k"));
+        assertEquals(List.of("Durgapur", "Dhanbad"), names("D"));
+    }
+
+    @Test
+    void mergesCitiesDifferingOnlyInCaseAndSpacing() {
+        List<CitySuggestionResponse.CitySuggestion> suggestions = index.suggest("kol", 10);
+
+        assertEquals(1, suggestions.size());
+        assertEquals(4, suggestions.get(0).getRouteCount());
+    }
+
+    @Test
+    void matchesLaterWordsAfterWholeNames() {
+        assertEquals(List.of("Bidhan Nagar"), names("nag"));
+    }
+
+    @Test
+    void toleratesTypos() {
+        assertEquals(List.of("Kolkata"), names("kolkatta"));
+        assertEquals(List.of("Kolkata"), names("kokl"));
+        assertEquals(List.of("Siliguri"), names("silig"));
+        assertTrue(names("zzz").isEmpty());
+    }
+
+    @Test
+    void picksUpNewRoutesOnRebuild() {
+        assertTrue(names("ranchi").isEmpty());
+
+        index.onRoutesUpdated(new RouteDirectoryUpdatedEvent(List.of(route("Dhanbad", "Ranchi"))));
+
+        assertEquals(List.of("Ranchi"), names("ran"));
+    }
+
+    @Test
+    void typoMustCoverTheWholeTypedPrefix() {
+        assertEquals(List.of("Durgapur"), names("dugr"));
+        assertTrue(names("dxxr").isEmpty());
+    }
+
+    /**
+     * Latency over 20,000 random routes; set ZYTRA_BENCHMARKS to run it.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "ZYTRA_BENCHMARKS", matches = ".+")
+    void answersKeystrokesWellUnderAMillisecond() {
+        Random random = new Random(7);
+        List<RouteEntity> routes = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            routes.add(route(randomName(random), randomName(random)));
+        }
+        index.rebuild(routes);
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String name = randomName(random).toLowerCase();
+            for (int length = 1; length <= name.length(); length++) {
+                queries.add(name.substring(0, length));
+            }
+        }
+
+        queries.forEach(query -> index.suggest(query, 10));
+
+        long started = System.nanoTime();
+        queries.forEach(query -> index.suggest(query, 10));
+        double averageMillis = (System.nanoTime() - started) / 1_000_000.0 / queries.size();
+
+        log.info("{} keystrokes over {} cities, {} ms each on average", queries.size(), index.size(),
+                String.format("%.4f", averageMillis));
+        assertTrue(averageMillis < 1, "average keystroke took " + averageMillis + " ms");
+    }
+
+    private List<String> names(String query) {
+        return index.suggest(query, 10).stream().map(CitySuggestionResponse.CitySuggestion::getName).toList();
+    }
+
+    private RouteEntity route(String source, String destination) {
+        return new RouteEntity(nextRouteId++, source, destination, 100, null);
+    }
+
+    private static String randomName(Random random) {
+        String[] syllables = { "ka", "lo", "pur", "ga", "na", "ra", "shi", "du", "ban", "ti", "mo", "ha" };
+        StringBuilder name = new StringBuilder();
+        for (int i = 0, n = 2 + random.nextInt(3); i < n; i++) {
+            name.append(syllables[random.nextInt(syllables.length)]);
+        }
+        if (random.nextInt(4) == 0) {
+            name.append(" Nagar");
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+}
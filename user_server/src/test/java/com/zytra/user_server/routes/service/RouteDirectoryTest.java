@@ -0,0 +1,105 @@
+package com.zytra.user_server.routes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zytra.user_server.routes.entity.RouteEntity;
+import com.zytra.user_server.routes.repository.RouteRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RouteDirectoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2030, 1, 7, 9, 0);
+
+    private RouteRepository routeRepository;
+    private ApplicationEventPublisher events;
+    private RouteDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        routeRepository = mock(RouteRepository.class);
+        events = mock(ApplicationEventPublisher.class);
+        directory = new RouteDirectory(routeRepository, events, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(directory, "refreshOverlapSeconds", 300L);
+    }
+
+    @Test
+    void asksTheDatabaseUntilLoaded() {
+        RouteEntity route = route(1L, "Kolkata", "Durgapur", T0);
+        when(routeRepository.findBySourceIgnoreCaseAndDestinationIgnoreCase("Kolkata", "Durgapur"))
+                .thenReturn(Optional.of(route));
+
+        assertEquals(Optional.of(route), directory.resolve(" Kolkata ", "Durgapur "));
+        assertFalse(directory.isLoaded());
+    }
+
+    @Test
+    void resolvesIgnoringCaseSpacingAndUnicodeForm() {
+        RouteEntity route = route(1L, "Bidhan  Nagar", "Kolkata", T0);
+        when(routeRepository.findAll()).thenReturn(List.of(route, route(2L, "bidhan nagar", "KOLKATA", T0)));
+        directory.reload();
+
+        assertEquals(Optional.of(route), directory.resolve("BIDHAN NAGAR", " kolkata"));
+        // Fullwidth letters fold to their ASCII forms
+        assertEquals(Optional.of(route), directory.resolve("Ｂｉｄｈａｎ Nagar", "Kolkata"));
+        assertEquals(Optional.empty(), directory.resolve("Kolkata", "Bidhan Nagar"));
+        verify(routeRepository, never()).findBySourceIgnoreCaseAndDestinationIgnoreCase(any(), any());
+    }
+
+    @Test
+    void refreshesFromTheNewestRouteSeenLessTheOverlap() {
+        when(routeRepository.findAll()).thenReturn(List.of(
+                route(1L, "Kolkata", "Durgapur", T0),
+                route(2L, "Durgapur", "Asansol", T0.plusMinutes(30))));
+        directory.reload();
+        verify(events, times(1)).publishEvent(any(RouteDirectoryUpdatedEvent.class));
+
+        // A route committed late, created before the newest one seen, and a
+        // new one after it
+        LocalDateTime watermark = T0.plusMinutes(30).minusSeconds(300);
+        when(routeRepository.findByCreatedAtGreaterThanEqual(watermark)).thenReturn(List.of(
+                route(2L, "Durgapur", "Asansol", T0.plusMinutes(30)),
+                route(3L, "Asansol", "Dhanbad", T0.plusMinutes(28)),
+                route(4L, "Kolkata", "Siliguri", T0.plusMinutes(45))));
+        directory.refresh();
+
+        assertTrue(directory.resolve("Asansol", "Dhanbad").isPresent());
+        assertTrue(directory.resolve("Kolkata", "Siliguri").isPresent());
+        verify(events, times(2)).publishEvent(any(RouteDirectoryUpdatedEvent.class));
+
+        // The watermark moved to the newest route; nothing new, no event
+        when(routeRepository.findByCreatedAtGreaterThanEqual(T0.plusMinutes(45).minusSeconds(300)))
+                .thenReturn(List.of(route(4L, "Kolkata", "Siliguri", T0.plusMinutes(45))));
+        directory.refresh();
+        verify(routeRepository).findByCreatedAtGreaterThanEqual(T0.plusMinutes(45).minusSeconds(300));
+        verify(events, times(2)).publishEvent(any(RouteDirectoryUpdatedEvent.class));
+    }
+
+    private static RouteEntity route(Long id, String source, String destination, LocalDateTime createdAt) {
+        RouteEntity route = new RouteEntity();
+        route.setId(id);
+        route.setSource(source);
+        route.setDestination(destination);
+        route.setDistanceKm(100);
+        route.setCreatedAt(createdAt);
+        return route;
+    }
+
+}
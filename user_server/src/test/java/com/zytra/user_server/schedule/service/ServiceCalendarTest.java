@@ -0,0 +1,103 @@
+package com.zytra.user_server.schedule.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.zytra.user_server.enums.Frequency;
+
+class ServiceCalendarTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 3, 1);
+    private static final LocalDate TO = FROM.plusYears(20);
+
+    @Test
+    void dailyRunsOnEveryDayOfTheActivePeriod() {
+        ServiceCalendar calendar = ServiceCalendar.of(Frequency.DAILY, ServiceCalendar.EVERY_DAY, null, FROM, TO);
+
+        assertEquals(ChronoUnit.DAYS.between(FROM, TO) + 1, calendar.countRunningDays(FROM.minusYears(1),
+                TO.plusYears(1)));
+        assertFalse(calendar.runsOn(FROM.minusDays(1)));
+        assertFalse(calendar.runsOn(TO.plusDays(1)));
+    }
+
+    @Test
+    void weeklyRunsOnlyOnItsDaysOfWeekOverTwentyYears() {
+        Set<DayOfWeek> days = Set.of(DayOfWeek.MONDAY, DayOfWeek.THURSDAY, DayOfWeek.SUNDAY);
+        ServiceCalendar calendar = ServiceCalendar.of(Frequency.WEEKLY, ServiceCalendar.runDays(days), null, FROM,
+                TO);
+
+        long expected = 0;
+        for (LocalDate date = FROM; !date.isAfter(TO); date = date.plusDays(1)) {
+            boolean runs = days.contains(date.getDayOfWeek());
+            assertEquals(runs, calendar.runsOn(date), date::toString);
+            if (runs) {
+                expected++;
+            }
+        }
+        assertEquals(expected, calendar.countRunningDays(FROM, TO));
+    }
+
+    @Test
+    void customRunsExactlyOnItsDatesOverTwentyYears() {
+        Random random = new Random(11);
+        Set<LocalDate> dates = new HashSet<>();
+        for (LocalDate date = FROM; !date.isAfter(TO); date = date.plusDays(1)) {
+            if (random.nextInt(5) == 0) {
+                dates.add(date);
+            }
+        }
+
+        ServiceCalendar calendar = ServiceCalendar.of(Frequency.CUSTOM, ServiceCalendar.EVERY_DAY,
+                ServiceCalendar.customRunDates(FROM, dates), FROM, TO);
+
+        for (LocalDate date = FROM.minusDays(10); !date.isAfter(TO.plusDays(10)); date = date.plusDays(1)) {
+            assertEquals(dates.contains(date), calendar.runsOn(date), date::toString);
+        }
+        assertEquals(dates.size(), calendar.countRunningDays(FROM, TO));
+    }
+
+    @Test
+    void customDatesOutsideTheBitsetOrActivePeriodDoNotRun() {
+        byte[] bits = ServiceCalendar.customRunDates(FROM, List.of(FROM, FROM.plusDays(9)));
+        ServiceCalendar calendar = ServiceCalendar.of(Frequency.CUSTOM, null, bits, FROM, FROM.plusDays(5));
+
+        assertTrue(calendar.runsOn(FROM));
+        // Past active_to, even though the bit is set
+        assertFalse(calendar.runsOn(FROM.plusDays(9)));
+        // Past the end of the bitset
+        assertFalse(ServiceCalendar.of(Frequency.CUSTOM, null, bits, FROM, TO).runsOn(FROM.plusDays(16)));
+        assertFalse(ServiceCalendar.of(Frequency.CUSTOM, null, null, FROM, TO).runsOn(FROM));
+    }
+
+    @Test
+    void customBitsAreNumberedLikePostgresGetBit() {
+        // get_bit(bytes, n) reads bit n % 8 of byte n / 8, counting from the
+        // least significant bit
+        byte[] bits = ServiceCalendar.customRunDates(FROM, List.of(FROM, FROM.plusDays(3), FROM.plusDays(8)));
+
+        assertArrayEquals(new byte[] { 0b0000_1001, 0b0000_0001 }, bits);
+        assertThrows(IllegalArgumentException.class,
+                () -> ServiceCalendar.customRunDates(FROM, List.of(FROM.minusDays(1))));
+    }
+
+    @Test
+    void dayBitsStartAtMonday() {
+        assertEquals(1, ServiceCalendar.dayBit(DayOfWeek.MONDAY));
+        assertEquals(64, ServiceCalendar.dayBit(DayOfWeek.SUNDAY));
+        assertEquals(ServiceCalendar.EVERY_DAY, ServiceCalendar.runDays(Set.of(DayOfWeek.values())));
+    }
+
+}
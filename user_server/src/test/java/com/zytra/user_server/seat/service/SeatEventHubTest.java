@@ -0,0 +1,137 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.zytra.user_server.seat.dto.SeatEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+class SeatEventHubTest {
+
+    private static final LocalDateTime UNTIL = LocalDateTime.of(2030, 5, 1, 10, 15);
+
+    private SimpleMeterRegistry meterRegistry;
+    private SeatEventHub hub;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        hub = new SeatEventHub(JsonMapper.builder().build(), 60_000, 2, meterRegistry);
+    }
+
+    @Test
+    void everySubscriberOfTheTripGetsTheSameSerializedEvent() throws InterruptedException {
+        RecordingEmitter first = new RecordingEmitter(null);
+        RecordingEmitter second = new RecordingEmitter(null);
+        RecordingEmitter otherTrip = new RecordingEmitter(null);
+        hub.subscribe(1L, first);
+        hub.subscribe(1L, second);
+        hub.subscribe(2L, otherTrip);
+
+        hub.publish(1L, SeatEvent.locked(List.of("A1", "A2"), 7L, UNTIL));
+
+        Set<DataWithMediaType> frame = first.next();
+        assertSame(frame, second.next());
+        assertEquals("data:{\"type\":\"LOCKED\",\"seats\":[\"A1\",\"A2\"],\"lockOwner\":7,"
+                + "\"lockedUntil\":\"2030-05-01T10:15:00\"}\n\n", text(frame));
+        assertNull(otherTrip.sent.poll(100, TimeUnit.MILLISECONDS));
+
+        hub.publish(1L, SeatEvent.released(List.of("A2")));
+        assertEquals("data:{\"type\":\"RELEASED\",\"seats\":[\"A2\"]}\n\n", text(first.next()));
+    }
+
+    @Test
+    void subscribersThatFallBehindAreDisconnected() throws InterruptedException {
+        CountDownLatch stuck = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(stuck);
+        RecordingEmitter fast = new RecordingEmitter(null);
+        hub.subscribe(1L, slow);
+        hub.subscribe(1L, fast);
+
+        // The slow client takes the first event and never finishes writing
+        // it; two more fill its queue and the fourth finds it full
+        for (int i = 1; i <= 4; i++) {
+            hub.publish(1L, SeatEvent.released(List.of("A" + i)));
+            assertTrue(text(fast.next()).contains("A" + i));
+        }
+
+        assertEquals(1, meterRegistry.counter("seat.events.dropped").count());
+        assertEquals(1, hub.subscriberCount());
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.sent.isEmpty());
+    }
+
+    @Test
+    void tripsWithoutSubscribersPublishNothing() {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        hub.subscribe(1L, emitter);
+        emitter.complete();
+        hub.publish(2L, SeatEvent.booked(List.of("A1")));
+
+        assertEquals(0, meterRegistry.counter("seat.events.published").count());
+    }
+
+    private static String text(Set<DataWithMediaType> frame) {
+        return frame.stream().map(part -> part.getData().toString()).collect(Collectors.joining());
+    }
+
+    /**
+     * Keeps what is sent instead of writing it to a response; with a gate,
+     * every send blocks until it opens, like a client that stopped reading.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<Set<DataWithMediaType>> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch gate;
+
+        private RecordingEmitter(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> items) throws IOException {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException("Connection closed");
+                }
+            }
+            sent.add(items);
+        }
+
+        @Override
+        public void complete() {
+            super.complete();
+            completed.countDown();
+        }
+
+        private Set<DataWithMediaType> next() throws InterruptedException {
+            Set<DataWithMediaType> frame = sent.poll(5, TimeUnit.SECONDS);
+            assertTrue(frame != null, "no event sent");
+            return frame;
+        }
+
+    }
+
+}
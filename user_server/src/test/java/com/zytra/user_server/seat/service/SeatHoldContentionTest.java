@@ -0,0 +1,153 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.enums.SeatStatus;
+import com.zytra.user_server.seat.dto.SeatStateRow;
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+import com.zytra.user_server.seat.repository.SeatRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Thousands of virtual-thread clients fight over a handful of seats of one
+ * trip, each trying to hold a few of them at once. No seat may end up held by
+ * two clients, every winner holds all of its seats, every loser none, and the
+ * persisted holds match the in-memory ones.
+ */
+class SeatHoldContentionTest {
+
+    private static final long TRIP = 1L;
+    private static final int SEATS = 100;
+    private static final int CLIENTS = 5_000;
+    // Contended seats straddle the boundary between two bitmap words
+    private static final int FIRST_HOT_SEAT = 58;
+    private static final int HOT_SEATS = 12;
+
+    private static final LocalDateTime NOW = LocalDateTime.now();
+    private static final LocalDateTime UNTIL = NOW.plusMinutes(10);
+
+    @Test
+    void concurrentClaimsNeverHoldASeatTwice() throws Exception {
+        SeatRepository seatRepository = mock(SeatRepository.class);
+
+        List<String> seatNumbers = new ArrayList<>();
+        List<SeatStateRow> rows = new ArrayList<>();
+        for (int i = 0; i < SEATS; i++) {
+            seatNumbers.add(String.format("S%03d", i));
+            rows.add(new SeatStateRow(seatNumbers.get(i), SeatStatus.AVAILABLE, null, null, null));
+        }
+        when(seatRepository.findSeatStates(TRIP)).thenReturn(rows);
+        SeatLayoutRegistry layouts = mock(SeatLayoutRegistry.class);
+        when(layouts.forTrip(TRIP)).thenReturn(SeatLayout.of(seatNumbers));
+
+        // Seat -> owner as written to the table
+        Map<String, Long> persisted = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            List<String> seats = List.of(invocation.<String[]>getArgument(1));
+            Long owner = invocation.getArgument(2);
+            seats.forEach(seat -> persisted.put(seat, owner));
+            return seats;
+        }).when(seatRepository).lockSeatsIfAvailable(anyLong(), any(String[].class), anyLong(), any(), any());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SeatHoldWriter writer = new SeatHoldWriter(seatRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), CLIENTS, 200, meterRegistry);
+        writer.start();
+        SeatStateEngine engine = new SeatStateEngine(seatRepository, layouts, writer,
+                mock(SeatLockExpiryService.class), mock(SeatEventHub.class), 100, 30, 0, meterRegistry);
+
+        Map<Long, List<String>> wanted = new HashMap<>();
+        Random random = new Random(42);
+        for (long client = 1; client <= CLIENTS; client++) {
+            List<String> seats = new ArrayList<>();
+            int count = 1 + random.nextInt(3);
+            while (seats.size() < count) {
+                String seat = String.format("S%03d", FIRST_HOT_SEAT + random.nextInt(HOT_SEATS));
+                if (!seats.contains(seat)) {
+                    seats.add(seat);
+                }
+            }
+            wanted.put(client, seats);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        Map<Long, List<String>> winners = new ConcurrentHashMap<>();
+        AtomicInteger losers = new AtomicInteger();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long client = 1; client <= CLIENTS; client++) {
+                long owner = client;
+                clients.submit(() -> {
+                    try {
+                        start.await();
+                        SeatStateEngine.LockResult result = engine.lock(TRIP, wanted.get(owner), owner, NOW, UNTIL)
+                                .join();
+                        winners.put(owner, result.locked());
+                    } catch (SeatUnavailableException e) {
+                        losers.incrementAndGet();
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                });
+            }
+            start.countDown();
+        }
+        writer.stop();
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " clients failed, first: " + failures.peek());
+        assertEquals(CLIENTS, winners.size() + losers.get());
+        assertFalse(winners.isEmpty());
+
+        // No seat won twice, and winners got exactly what they asked for
+        Map<String, Long> expected = new HashMap<>();
+        winners.forEach((owner, seats) -> {
+            assertEquals(wanted.get(owner).stream().sorted().toList(), seats);
+            seats.forEach(seat -> {
+                Long previous = expected.put(seat, owner);
+                assertNull(previous, () -> seat + " held by " + previous + " and " + owner);
+            });
+        });
+
+        // Memory and the table agree, and losers left nothing behind
+        long now = SeatStateEngine.epochMillis(NOW);
+        TripSeats state = engine.snapshot(TRIP);
+        Map<String, Long> held = new HashMap<>();
+        for (int seat = 0; seat < state.size(); seat++) {
+            if (state.isLocked(seat, now)) {
+                held.put(state.seatNumber(seat), state.lockOwner(seat, now));
+            }
+        }
+        assertEquals(expected, held);
+        assertEquals(expected, persisted);
+        assertEquals(state.size() - expected.size(), state.availableCount(now));
+    }
+
+}
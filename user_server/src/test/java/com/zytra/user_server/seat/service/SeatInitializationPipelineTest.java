@@ -0,0 +1,155 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.enums.SeatStatus;
+import com.zytra.user_server.enums.TripSeatStatus;
+import com.zytra.user_server.seat.entity.SeatEntity;
+import com.zytra.user_server.seat.repository.SeatRepository;
+import com.zytra.user_server.trips.entity.TripEntity;
+import com.zytra.user_server.trips.repository.TripRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Seeds the seats of a large backlog of trips through the chunked pipeline
+ * and checks that every trip got each of its seats exactly once. A sample of
+ * the backlog goes through the path the pipeline replaced first, one
+ * transaction and an entity insert per seat for each trip, for comparison.
+ *
+ * The backlog is every existing schedule on 1000 days far in the future,
+ * removed again afterwards. Needs a disposable PostgreSQL database with the
+ * application schema and at least one schedule: set ZYTRA_TEST_DB_URL (and
+ * optionally ZYTRA_TEST_DB_USERNAME / ZYTRA_TEST_DB_PASSWORD) to run it.
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "ZYTRA_TEST_DB_URL", matches = ".+")
+class SeatInitializationPipelineTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2090, 1, 1);
+    private static final int DAYS = 1_000;
+    private static final int ONE_BY_ONE = 200;
+
+    @DynamicPropertySource
+    static void testDatabase(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("ZYTRA_TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("ZYTRA_TEST_DB_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> envOrDefault("ZYTRA_TEST_DB_PASSWORD", ""));
+    }
+
+    @Autowired
+    private SeatCreationService seatCreationService;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private SeatRepository seatRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void removeBacklog() {
+        // Seats go with their trip
+        jdbcTemplate.update("DELETE FROM trips WHERE travel_date >= ? AND travel_date < ?", FIRST_DAY,
+                FIRST_DAY.plusDays(DAYS));
+    }
+
+    @Test
+    void seedsEveryWaitingTripOnce() {
+        List<Long> tripIds = jdbcTemplate.queryForList("""
+                INSERT INTO trips (schedule_id, travel_date, available_seats, fare, status, seat_status, created_at)
+                SELECT s.id, CAST(d.day AS date), b.total_seats, 100, 'ACTIVE', 'NOT_INITIALIZED', now()
+                FROM schedules s
+                JOIN bus b ON b.id = s.bus_id
+                CROSS JOIN generate_series(CAST(? AS date), CAST(? AS date), interval '1 day') AS d(day)
+                ON CONFLICT (schedule_id, travel_date) DO NOTHING
+                RETURNING id
+                """, Long.class, FIRST_DAY, FIRST_DAY.plusDays(DAYS - 1));
+        assumeTrue(!tripIds.isEmpty(), "no schedules");
+
+        // One trip already has a held seat
+        jdbcTemplate.update("INSERT INTO seats (trip_id, seat_number, status) VALUES (?, 'A1', 'AVAILABLE')",
+                tripIds.get(0));
+
+        long started = System.nanoTime();
+        tripIds.subList(1, ONE_BY_ONE + 1).forEach(this::initializeOneByOne);
+        double oneByOneMicros = (System.nanoTime() - started) / 1e3 / ONE_BY_ONE;
+
+        started = System.nanoTime();
+        int initialized = seatCreationService.initializePending(FIRST_DAY);
+        double pipelineMicros = (System.nanoTime() - started) / 1e3 / initialized;
+        log.info("Seat initialization: one by one {} us per trip, pipeline {} us per trip ({} trips)",
+                Math.round(oneByOneMicros), Math.round(pipelineMicros), initialized);
+
+        assertEquals(tripIds.size() - ONE_BY_ONE, initialized);
+        assertEquals(0, seatCreationService.initializePending(FIRST_DAY));
+
+        Integer pending = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM trips WHERE travel_date >= ? AND seat_status <> 'INITIALIZED'", Integer.class,
+                FIRST_DAY);
+        assertEquals(0, pending);
+
+        // Every trip has the seats of its bus's standard layout
+        Integer wrongSeatCount = jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM trips t
+                JOIN schedules sc ON sc.id = t.schedule_id
+                JOIN bus b ON b.id = sc.bus_id
+                WHERE t.travel_date >= ?
+                  AND b.seat_layout_id IS NULL
+                  AND (SELECT count(*) FROM seats s WHERE s.trip_id = t.id) <> b.total_seats
+                """, Integer.class, FIRST_DAY);
+        assertEquals(0, wrongSeatCount);
+
+        assertTrue(pipelineMicros * 5 < oneByOneMicros,
+                () -> String.format("pipeline %.0f us vs one by one %.0f us per trip", pipelineMicros,
+                        oneByOneMicros));
+    }
+
+    // What seat initialization used to do for each trip
+    private void initializeOneByOne(long tripId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            TripEntity trip = tripRepository.findById(tripId).orElseThrow();
+            trip.setSeatStatus(TripSeatStatus.INITIALIZING);
+            tripRepository.save(trip);
+
+            SeatLayout layout = SeatLayout.standard(trip.getSchedule().getBus().getTotalSeats());
+            seatRepository.saveAll(layout.seatNumbers().stream()
+                    .map(seatNumber -> SeatEntity.builder()
+                            .trip(trip)
+                            .seatNumber(seatNumber)
+                            .status(SeatStatus.AVAILABLE)
+                            .build())
+                    .toList());
+
+            trip.setSeatStatus(TripSeatStatus.INITIALIZED);
+            tripRepository.save(trip);
+        });
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+}
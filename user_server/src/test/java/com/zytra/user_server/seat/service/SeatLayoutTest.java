@@ -0,0 +1,94 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.zytra.user_server.enums.SeatLayoutType;
+import com.zytra.user_server.seat.dto.SeatLayoutRef;
+import com.zytra.user_server.seat.entity.SeatLayoutEntity;
+import com.zytra.user_server.seat.repository.SeatLayoutRepository;
+
+class SeatLayoutTest {
+
+    private static final String SLEEPER = """
+            L1 _ L2 L3
+            L4 _ L5 L6
+            L7
+            ---
+            U1 _ U2 U3
+            """;
+
+    @Test
+    void compilesDecksRowsAndGaps() {
+        SeatLayout layout = SeatLayout.compile(SeatLayoutType.SLEEPER, SLEEPER);
+
+        assertEquals(SeatLayoutType.SLEEPER, layout.type());
+        assertEquals(List.of("L1", "L2", "L3", "L4", "L5", "L6", "L7", "U1", "U2", "U3"), layout.seatNumbers());
+        assertEquals(2, layout.deckCount());
+        assertEquals(3, layout.rows(0));
+        assertEquals(1, layout.rows(1));
+        assertEquals(4, layout.columns());
+
+        assertEquals(layout.indexOf("L5"), layout.seatAt(0, 1, 2));
+        assertEquals(-1, layout.seatAt(0, 1, 1));
+        // Short rows end in gaps
+        assertEquals(-1, layout.seatAt(0, 2, 3));
+        assertEquals("U2", layout.seatNumber(layout.seatAt(1, 0, 2)));
+        assertEquals(-1, layout.indexOf("A1"));
+    }
+
+    @Test
+    void standardLayoutFollowsTheNumberOfSeats() {
+        SeatLayout layout = SeatLayout.standard(48);
+        assertEquals(12, layout.rows(0));
+        assertEquals(4, layout.columns());
+        assertEquals("A1", layout.seatNumber(0));
+        assertEquals("L4", layout.seatNumber(47));
+
+        SeatLayout shortLastRow = SeatLayout.standard(42);
+        assertEquals(11, shortLastRow.rows(0));
+        assertEquals(List.of("K1", "K2"), shortLastRow.seatNumbers().subList(40, 42));
+        assertEquals(-1, shortLastRow.seatAt(0, 10, 2));
+
+        // Past Z the rows go on as AA, AB, ...
+        assertEquals("AA1", SeatLayout.standard(110).seatNumber(104));
+    }
+
+    @Test
+    void refusesDefinitionsTheSeatsTableCannotHold() {
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.compile(SeatLayoutType.SEATER, "A1 A2\nA1"));
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.compile(SeatLayoutType.SEATER, "A1 UPPER1"));
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.compile(SeatLayoutType.SEATER, "_ _\n---"));
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.standard(0));
+    }
+
+    @Test
+    void registryCompilesEachLayoutOnce() {
+        SeatLayoutRepository repository = mock(SeatLayoutRepository.class);
+        when(repository.findById(3L)).thenReturn(Optional.of(SeatLayoutEntity.builder()
+                .id(3L)
+                .type(SeatLayoutType.SLEEPER)
+                .definition(SLEEPER)
+                .build()));
+        SeatLayoutRegistry registry = new SeatLayoutRegistry(repository);
+
+        SeatLayout sleeper = registry.get(new SeatLayoutRef(3L, 36));
+        assertSame(sleeper, registry.get(new SeatLayoutRef(3L, 40)));
+        verify(repository, times(1)).findById(3L);
+        assertEquals(10, sleeper.size());
+
+        assertSame(registry.get(new SeatLayoutRef(null, 40)), registry.get(new SeatLayoutRef(null, 40)));
+        assertEquals(40, registry.get(new SeatLayoutRef(null, 40)).size());
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.seat.dto.SeatEvent;
+import com.zytra.user_server.seat.dto.SeatLockRow;
+import com.zytra.user_server.seat.repository.SeatRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SeatLockExpiryServiceTest {
+
+    // The wheel starts at the current time; whole seconds like stored locks
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    private static final LocalDateTime UNTIL = NOW.plusMinutes(10);
+
+    private SeatRepository seatRepository;
+    private SeatEventHub seatEventHub;
+    private SeatLockExpiryService service;
+
+    @BeforeEach
+    void setUp() {
+        seatRepository = mock(SeatRepository.class);
+        when(seatRepository.releaseExpiredLocks(anyLong(), any(String[].class), any()))
+                .thenAnswer(invocation -> List.of(invocation.<String[]>getArgument(1)));
+        seatEventHub = mock(SeatEventHub.class);
+        service = new SeatLockExpiryService(seatRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), seatEventHub, 1000, 2,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void releasesLocksWhenTheyRunOutGroupedByTrip() {
+        service.schedule(1L, List.of("A1", "A2"), UNTIL);
+        service.schedule(1L, List.of("A3"), UNTIL);
+        service.schedule(2L, List.of("B1"), UNTIL.plusMinutes(1));
+
+        assertEquals(0, service.releaseDue(SeatStateEngine.epochMillis(UNTIL) - 1));
+        verify(seatRepository, never()).releaseExpiredLocks(anyLong(), any(String[].class), any());
+
+        // Trip 1 in statements of at most two seats
+        assertEquals(3, service.releaseDue(SeatStateEngine.epochMillis(UNTIL)));
+        verify(seatRepository).releaseExpiredLocks(eq(1L), aryEq(new String[] { "A1", "A2" }), eq(UNTIL));
+        verify(seatRepository).releaseExpiredLocks(eq(1L), aryEq(new String[] { "A3" }), eq(UNTIL));
+        verify(seatRepository, never()).releaseExpiredLocks(eq(2L), aryEq(new String[] { "B1" }), eq(UNTIL));
+        verify(seatEventHub).publish(1L, SeatEvent.released(List.of("A1", "A2", "A3")));
+
+        assertEquals(1, service.releaseDue(SeatStateEngine.epochMillis(UNTIL.plusMinutes(1))));
+        verify(seatEventHub).publish(2L, SeatEvent.released(List.of("B1")));
+    }
+
+    @Test
+    void onlySeatsActuallyReleasedAreAnnounced() {
+        // A2 was locked again before its first lock ran out
+        when(seatRepository.releaseExpiredLocks(anyLong(), any(String[].class), any())).thenReturn(List.of("A1"));
+        service.schedule(1L, List.of("A1", "A2"), UNTIL);
+
+        assertEquals(1, service.releaseDue(SeatStateEngine.epochMillis(UNTIL)));
+        verify(seatEventHub).publish(1L, SeatEvent.released(List.of("A1")));
+    }
+
+    @Test
+    void locksStoredBeforeARestartAreScheduledAgain() {
+        when(seatRepository.findActiveLocks(NOW)).thenReturn(List.of(
+                new SeatLockRow(1L, "A1", UNTIL),
+                new SeatLockRow(1L, "A2", UNTIL.plusSeconds(30)),
+                new SeatLockRow(3L, "C4", UNTIL)));
+
+        assertEquals(3, service.scheduleActiveLocks(NOW));
+
+        assertEquals(2, service.releaseDue(SeatStateEngine.epochMillis(UNTIL)));
+        verify(seatRepository).releaseExpiredLocks(eq(1L), aryEq(new String[] { "A1" }), eq(UNTIL));
+        verify(seatRepository).releaseExpiredLocks(eq(3L), aryEq(new String[] { "C4" }), eq(UNTIL));
+        assertEquals(1, service.releaseDue(SeatStateEngine.epochMillis(UNTIL.plusSeconds(30))));
+    }
+
+    @Test
+    void failedReleasesAreLeftToTheSweep() {
+        doThrow(new IllegalStateException("database down")).when(seatRepository)
+                .releaseExpiredLocks(anyLong(), any(String[].class), any());
+        service.schedule(1L, List.of("A1"), UNTIL);
+
+        assertEquals(0, service.releaseDue(SeatStateEngine.epochMillis(UNTIL)));
+        verify(seatEventHub, never()).publish(anyLong(), any());
+    }
+
+}
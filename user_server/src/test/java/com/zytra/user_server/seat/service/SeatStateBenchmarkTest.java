@@ -0,0 +1,128 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.seat.entity.SeatEntity;
+import com.zytra.user_server.seat.repository.SeatRepository;
+import com.zytra.user_server.trips.entity.TripEntity;
+import com.zytra.user_server.trips.repository.TripRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares a seat map read through the seat state engine with the entity
+ * path it replaced: loading the trip's SeatEntity rows and their lazy lock
+ * owners on every read.
+ *
+ * Read-only; needs a PostgreSQL database with the application schema and at
+ * least one trip with initialized seats: set ZYTRA_TEST_DB_URL (and
+ * optionally ZYTRA_TEST_DB_USERNAME / ZYTRA_TEST_DB_PASSWORD) to run it.
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "ZYTRA_TEST_DB_URL", matches = ".+")
+class SeatStateBenchmarkTest {
+
+    private static final int WARMUP = 200;
+    private static final int READS = 2_000;
+
+    @DynamicPropertySource
+    static void testDatabase(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("ZYTRA_TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("ZYTRA_TEST_DB_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> envOrDefault("ZYTRA_TEST_DB_PASSWORD", ""));
+    }
+
+    @Autowired
+    private SeatStateEngine seatStateEngine;
+
+    @Autowired
+    private SeatRepository seatRepository;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void seatMapsFromMemoryBeatTheEntityPath() {
+        List<Long> tripIds = jdbcTemplate.queryForList(
+                "SELECT trip_id FROM seats GROUP BY trip_id ORDER BY trip_id LIMIT 1", Long.class);
+        assumeTrue(!tripIds.isEmpty(), "no trip with seats");
+        long tripId = tripIds.get(0);
+
+        long now = System.currentTimeMillis();
+        assertEquals(entityPath(tripId, now), enginePath(tripId, now));
+
+        for (int i = 0; i < WARMUP; i++) {
+            entityPath(tripId, now);
+            enginePath(tripId, now);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            entityPath(tripId, now);
+        }
+        double entityMicros = (System.nanoTime() - start) / 1_000.0 / READS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            enginePath(tripId, now);
+        }
+        double engineMicros = (System.nanoTime() - start) / 1_000.0 / READS;
+
+        log.info("Seat map read: entity path {} us, seat state engine {} us", String.format("%.1f", entityMicros),
+                String.format("%.2f", engineMicros));
+        assertTrue(engineMicros * 10 < entityMicros,
+                () -> String.format("engine %.2f us vs entity path %.1f us", engineMicros, entityMicros));
+    }
+
+    // Same work the seat matrix used to do: every seat with its lock owner
+    private long entityPath(long tripId, long now) {
+        LocalDateTime time = SeatStateEngine.localDateTime(now);
+        return transactionTemplate.execute(status -> {
+            TripEntity trip = tripRepository.getReferenceById(tripId);
+            long checksum = 0;
+            for (SeatEntity seat : seatRepository.findByTripOrderBySeatNumber(trip)) {
+                boolean locked = seat.getLockedUntil() != null && seat.getBooking() == null
+                        && seat.getLockedUntil().isAfter(time);
+                checksum = checksum * 31 + (locked ? seat.getLockOwner().getId() : 0)
+                        + (seat.getBooking() != null ? 1 : 0);
+            }
+            return checksum;
+        });
+    }
+
+    private long enginePath(long tripId, long now) {
+        TripSeats seats = seatStateEngine.snapshot(tripId);
+        long checksum = 0;
+        for (int seat = 0; seat < seats.size(); seat++) {
+            checksum = checksum * 31 + seats.lockOwner(seat, now) + (seats.isBooked(seat) ? 1 : 0);
+        }
+        return checksum;
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+}
@@ -0,0 +1,385 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.enums.SeatStatus;
+import com.zytra.user_server.seat.dto.SeatEvent;
+import com.zytra.user_server.seat.dto.SeatStateRow;
+import com.zytra.user_server.seat.exception.SeatUnavailableException;
+import com.zytra.user_server.seat.repository.SeatRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SeatStateEngineTest {
+
+    private static final long TRIP = 7L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 10, 0);
+    private static final LocalDateTime UNTIL = NOW.plusMinutes(10);
+
+    private SeatRepository seatRepository;
+    private SeatHoldWriter writer;
+    private SeatLockExpiryService expiry;
+    private SeatEventHub events;
+    private SeatLayoutRegistry layouts;
+    private SeatStateEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        List<SeatStateRow> rows = new ArrayList<>();
+        for (char row = 'A'; row <= 'L'; row++) {
+            for (int col = 1; col <= 4; col++) {
+                String seat = "" + row + col;
+                if (seat.equals("A1")) {
+                    rows.add(new SeatStateRow(seat, SeatStatus.BOOKED, 3L, null, null));
+                } else if (seat.equals("A2")) {
+                    rows.add(new SeatStateRow(seat, SeatStatus.AVAILABLE, null, 5L, NOW.plusMinutes(5)));
+                } else if (seat.equals("A3")) {
+                    // Lock that ran out but was not swept yet
+                    rows.add(new SeatStateRow(seat, SeatStatus.AVAILABLE, null, 5L, NOW.minusMinutes(1)));
+                } else {
+                    rows.add(new SeatStateRow(seat, SeatStatus.AVAILABLE, null, null, null));
+                }
+            }
+        }
+
+        seatRepository = mock(SeatRepository.class);
+        when(seatRepository.findSeatStates(TRIP)).thenReturn(rows);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // The table agrees with every hold unless a test says otherwise
+        when(seatRepository.lockSeatsIfAvailable(anyLong(), any(String[].class), anyLong(), any(), any()))
+                .thenAnswer(invocation -> List.of(invocation.<String[]>getArgument(1)));
+        writer = new SeatHoldWriter(seatRepository, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                1000, 50, meterRegistry);
+        writer.start();
+        expiry = mock(SeatLockExpiryService.class);
+        events = mock(SeatEventHub.class);
+        layouts = mock(SeatLayoutRegistry.class);
+        when(layouts.forTrip(anyLong())).thenReturn(SeatLayout.standard(48));
+        engine = new SeatStateEngine(seatRepository, layouts, writer, expiry, events, 100, 30, 5, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    void loadsEachTripOnceFromTheDatabase() {
+        long now = SeatStateEngine.epochMillis(NOW);
+        TripSeats seats = engine.snapshot(TRIP);
+        engine.snapshot(TRIP);
+
+        verify(seatRepository, times(1)).findSeatStates(anyLong());
+        assertEquals(48, seats.size());
+        assertTrue(seats.isBooked(seats.indexOf("A1")));
+        assertEquals(5L, seats.lockOwner(seats.indexOf("A2"), now));
+        assertFalse(seats.isLocked(seats.indexOf("A3"), now));
+        assertEquals(1, seats.bookedCount());
+        assertEquals(46, seats.availableCount(now));
+    }
+
+    @Test
+    void tripsWithoutStoredSeatsHaveTheWholeLayoutAvailable() {
+        // A bus of 40 seats
+        when(layouts.forTrip(8L)).thenReturn(SeatLayout.standard(40));
+        when(seatRepository.findSeatStates(8L)).thenReturn(List.of());
+        long now = SeatStateEngine.epochMillis(NOW);
+
+        TripSeats seats = engine.snapshot(8L);
+        assertEquals(40, seats.size());
+        assertEquals(seats.size(), seats.availableCount(now));
+        assertThrows(IllegalArgumentException.class, () -> engine.lock(8L, List.of("K1"), 9L, NOW, UNTIL));
+
+        // The first hold of a seat creates its row
+        engine.lock(8L, List.of("J4"), 9L, NOW, UNTIL).join();
+        verify(seatRepository).lockSeatsIfAvailable(8L, new String[] { "J4" }, 9L, UNTIL, NOW);
+        assertEquals(seats.size() - 1, engine.snapshot(8L).availableCount(now));
+        verify(seatRepository, times(1)).findSeatStates(8L);
+    }
+
+    @Test
+    void storedSeatsOutsideTheLayoutOnlyShowTheirBookings() {
+        // A bus of 40 seats with rows left from a larger layout
+        when(layouts.forTrip(8L)).thenReturn(SeatLayout.standard(40));
+        when(seatRepository.findSeatStates(8L)).thenReturn(List.of(
+                new SeatStateRow("K1", SeatStatus.BOOKED, 3L, null, null),
+                new SeatStateRow("K2", SeatStatus.AVAILABLE, null, 5L, NOW.plusMinutes(5)),
+                new SeatStateRow("K3", SeatStatus.AVAILABLE, null, null, null)));
+        long now = SeatStateEngine.epochMillis(NOW);
+
+        TripSeats seats = engine.snapshot(8L);
+        assertEquals(41, seats.size());
+        assertTrue(seats.isBooked(seats.indexOf("K1")));
+        assertEquals(-1, seats.indexOf("K2"));
+        assertEquals(-1, seats.indexOf("K3"));
+        assertEquals(40, seats.availableCount(now));
+        assertThrows(IllegalArgumentException.class, () -> engine.lock(8L, List.of("K1"), 9L, NOW, UNTIL));
+
+        // Once its booking is cancelled the seat is gone
+        when(seatRepository.findSeatStates(8L)).thenReturn(List.of(
+                new SeatStateRow("K1", SeatStatus.AVAILABLE, null, null, null)));
+        engine.unbooked(8L, List.of("K1"));
+        assertEquals(40, engine.snapshot(8L).size());
+        assertThrows(IllegalArgumentException.class, () -> engine.lock(8L, List.of("K1"), 9L, NOW, UNTIL));
+        verify(seatRepository, never()).lockSeatsIfAvailable(eq(8L), any(String[].class), anyLong(), any(), any());
+    }
+
+    @Test
+    void refusesBookedSeatsSeatsHeldByOthersAndUnknownSeats() {
+        assertThrows(SeatUnavailableException.class, () -> engine.lock(TRIP, List.of("B1", "A1"), 9L, NOW, UNTIL));
+        assertThrows(SeatUnavailableException.class, () -> engine.lock(TRIP, List.of("B1", "A2"), 9L, NOW, UNTIL));
+        assertThrows(IllegalArgumentException.class, () -> engine.lock(TRIP, List.of("B1", "Z9"), 9L, NOW, UNTIL));
+
+        // Nothing was taken by the failed attempts
+        TripSeats seats = engine.snapshot(TRIP);
+        assertFalse(seats.isLocked(seats.indexOf("B1"), SeatStateEngine.epochMillis(NOW)));
+    }
+
+    @Test
+    void newSelectionReplacesTheOwnersPreviousOne() {
+        long now = SeatStateEngine.epochMillis(NOW);
+
+        SeatStateEngine.LockResult first = engine.lock(TRIP, List.of("B2", "B1", "A3"), 9L, NOW, UNTIL).join();
+        assertEquals(List.of("A3", "B1", "B2"), first.locked());
+        assertEquals(List.of(), first.released());
+
+        SeatStateEngine.LockResult second = engine.lock(TRIP, List.of("B2", "C1"), 9L, NOW, UNTIL).join();
+        assertEquals(List.of("B2", "C1"), second.locked());
+        assertEquals(List.of("A3", "B1"), second.released());
+
+        TripSeats seats = engine.snapshot(TRIP);
+        assertEquals(9L, seats.lockOwner(seats.indexOf("C1"), now));
+        assertEquals(TripSeats.NO_OWNER, seats.lockOwner(seats.indexOf("B1"), now));
+        assertEquals(SeatStateEngine.epochMillis(UNTIL), seats.lockExpiry(seats.indexOf("B2"), now));
+        // A2 still belongs to user 5
+        assertEquals(5L, seats.lockOwner(seats.indexOf("A2"), now));
+        // Seats held by user 9 are free again once the lock runs out
+        assertEquals(44, seats.availableCount(now));
+        assertEquals(47, seats.availableCount(SeatStateEngine.epochMillis(UNTIL)));
+
+        // Both claims reached the table, in order
+        InOrder writes = inOrder(seatRepository);
+        writes.verify(seatRepository).lockSeatsIfAvailable(TRIP, new String[] { "A3", "B1", "B2" }, 9L, UNTIL, NOW);
+        writes.verify(seatRepository).lockSeatsIfAvailable(TRIP, new String[] { "B2", "C1" }, 9L, UNTIL, NOW);
+        writes.verify(seatRepository).releaseLocks(TRIP, List.of("A3", "B1"), 9L);
+
+        // And are released from the table once they run out
+        verify(expiry).schedule(TRIP, List.of("A3", "B1", "B2"), UNTIL);
+        verify(expiry).schedule(TRIP, List.of("B2", "C1"), UNTIL);
+
+        // Watchers of the trip hear of each change
+        InOrder published = inOrder(events);
+        published.verify(events).publish(TRIP, SeatEvent.locked(List.of("A3", "B1", "B2"), 9L, UNTIL));
+        published.verify(events).publish(TRIP, SeatEvent.released(List.of("A3", "B1")));
+        published.verify(events).publish(TRIP, SeatEvent.locked(List.of("B2", "C1"), 9L, UNTIL));
+    }
+
+    @Test
+    void everyStoredChangeRaisesTheSeatMapVersion() {
+        TripSeats before = engine.snapshot(TRIP);
+        assertArrayEquals(new int[0], before.changedSince(before.version()));
+
+        engine.lock(TRIP, List.of("B1", "B2"), 9L, NOW, UNTIL).join();
+        TripSeats locked = engine.snapshot(TRIP);
+        assertTrue(locked.version() > before.version());
+        assertArrayEquals(indexes(locked, "B1", "B2"), locked.changedSince(before.version()));
+
+        // A new selection changes the seats it takes and those it lets go
+        engine.lock(TRIP, List.of("C1"), 9L, NOW, UNTIL).join();
+        TripSeats moved = engine.snapshot(TRIP);
+        assertArrayEquals(indexes(moved, "B1", "B2", "C1"), moved.changedSince(locked.version()));
+        assertEquals(locked.version() + (1 << TripSeats.SERVER_BITS), moved.version());
+
+        // So does a claim that could not be stored and was undone
+        when(seatRepository.lockSeatsIfAvailable(eq(TRIP), aryEq(new String[] { "D1" }), anyLong(), any(), any()))
+                .thenThrow(new IllegalStateException("database down"));
+        assertThrows(CompletionException.class, () -> engine.lock(TRIP, List.of("D1"), 4L, NOW, UNTIL).join());
+        assertArrayEquals(indexes(moved, "D1"), engine.snapshot(TRIP).changedSince(moved.version()));
+
+        // Versions this state never handed out cannot be answered with changes
+        assertNull(moved.changedSince(0));
+        assertNull(moved.changedSince(moved.version() + 1));
+
+        // Nor versions of this server's neighbours, e.g. after a failover
+        assertEquals(5, moved.version() & TripSeats.MAX_SERVER_ID);
+        assertNull(moved.changedSince(moved.version() - 1));
+        assertNull(moved.changedSince(locked.version() + 1));
+    }
+
+    @Test
+    void bookedSeatsStopBeingHeldAndAreAnnounced() {
+        long now = SeatStateEngine.epochMillis(NOW);
+        engine.lock(TRIP, List.of("B1", "B2"), 9L, NOW, UNTIL).join();
+        TripSeats locked = engine.snapshot(TRIP);
+
+        engine.booked(TRIP, List.of("B1", "B2"));
+        TripSeats booked = engine.snapshot(TRIP);
+        assertTrue(booked.isBooked(booked.indexOf("B1")));
+        assertFalse(booked.isLocked(booked.indexOf("B2"), now));
+        assertArrayEquals(indexes(booked, "B1", "B2"), booked.changedSince(locked.version()));
+        verify(events).publish(TRIP, SeatEvent.booked(List.of("B1", "B2")));
+
+        // Nobody can take them, the owner included
+        assertThrows(SeatUnavailableException.class, () -> engine.lock(TRIP, List.of("B1"), 9L, NOW, UNTIL));
+    }
+
+    @Test
+    void lockExpiriesRaiseTheVersionOnceTheyPass() {
+        long until = SeatStateEngine.epochMillis(UNTIL);
+        TripSeats seats = TripSeats.of(List.of("A1", "A2", "A3"));
+        seats.lock(0, 5L, until);
+        seats.lock(2, 6L, until + 60_000);
+        long loaded = seats.version();
+
+        seats.expire(until - 1);
+        assertEquals(loaded, seats.version());
+
+        seats.expire(until);
+        assertArrayEquals(new int[] { 0 }, seats.changedSince(loaded));
+        long expired = seats.version();
+
+        seats.expire(until + 30_000);
+        assertEquals(expired, seats.version());
+        seats.expire(until + 60_000);
+        assertArrayEquals(new int[] { 2 }, seats.changedSince(expired));
+    }
+
+    @Test
+    void expiredHoldsAreReclaimed() {
+        long now = SeatStateEngine.epochMillis(NOW);
+
+        // A3 was held by user 5 until a minute ago
+        engine.lock(TRIP, List.of("A3"), 9L, NOW, UNTIL).join();
+
+        TripSeats seats = engine.snapshot(TRIP);
+        assertEquals(9L, seats.lockOwner(seats.indexOf("A3"), now));
+
+        // And user 9's hold can be taken by user 4 once it has run out
+        engine.lock(TRIP, List.of("A3"), 4L, UNTIL, UNTIL.plusMinutes(10)).join();
+        seats = engine.snapshot(TRIP);
+        assertEquals(4L, seats.lockOwner(seats.indexOf("A3"), SeatStateEngine.epochMillis(UNTIL)));
+    }
+
+    @Test
+    void claimsSpanningSeveralWordsAreAllOrNothing() {
+        List<String> seatNumbers = new ArrayList<>();
+        List<SeatStateRow> rows = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            seatNumbers.add("S" + i);
+            rows.add(new SeatStateRow("S" + i, SeatStatus.AVAILABLE, null, i == 130 ? 5L : null,
+                    i == 130 ? UNTIL : null));
+        }
+        when(layouts.forTrip(9L)).thenReturn(SeatLayout.of(seatNumbers));
+        when(seatRepository.findSeatStates(9L)).thenReturn(rows);
+        long now = SeatStateEngine.epochMillis(NOW);
+
+        assertThrows(SeatUnavailableException.class,
+                () -> engine.lock(9L, List.of("S3", "S70", "S130"), 6L, NOW, UNTIL));
+
+        TripSeats seats = engine.snapshot(9L);
+        assertEquals(150, seats.size());
+        assertFalse(seats.isLocked(seats.indexOf("S3"), now));
+        assertFalse(seats.isLocked(seats.indexOf("S70"), now));
+        assertEquals(seats.size() - 1, seats.availableCount(now));
+
+        engine.lock(9L, List.of("S3", "S70", "S131"), 6L, NOW, UNTIL).join();
+        assertEquals(seats.size() - 4, engine.snapshot(9L).availableCount(now));
+    }
+
+    @Test
+    void claimsThatCannotBeWrittenAreUndone() {
+        long now = SeatStateEngine.epochMillis(NOW);
+        engine.lock(TRIP, List.of("B1"), 9L, NOW, UNTIL).join();
+
+        when(seatRepository.lockSeatsIfAvailable(eq(TRIP), aryEq(new String[] { "C1" }), anyLong(), any(), any()))
+                .thenThrow(new IllegalStateException("database down"));
+
+        CompletableFuture<SeatStateEngine.LockResult> failed = engine.lock(TRIP, List.of("C1"), 9L, NOW, UNTIL);
+        assertThrows(CompletionException.class, failed::join);
+
+        TripSeats after = engine.snapshot(TRIP);
+        assertFalse(after.isLocked(after.indexOf("C1"), now));
+        verify(expiry, never()).schedule(TRIP, List.of("C1"), UNTIL);
+        verify(events, never()).publish(TRIP, SeatEvent.locked(List.of("C1"), 9L, UNTIL));
+        assertEquals(9L, after.lockOwner(after.indexOf("B1"), now));
+    }
+
+    @Test
+    void claimsTheTableRefusesFailAndReloadTheTrip() {
+        long now = SeatStateEngine.epochMillis(NOW);
+
+        // D1 and D2 look free here, but D2 was locked through another server
+        when(seatRepository.lockSeatsIfAvailable(eq(TRIP), aryEq(new String[] { "D1", "D2" }), anyLong(), any(), any()))
+                .thenReturn(List.of("D1"));
+
+        CompletableFuture<SeatStateEngine.LockResult> refused = engine.lock(TRIP, List.of("D1", "D2"), 9L, NOW,
+                UNTIL);
+        CompletionException failure = assertThrows(CompletionException.class, refused::join);
+        assertInstanceOf(SeatUnavailableException.class, failure.getCause());
+
+        TripSeats seats = engine.snapshot(TRIP);
+        assertFalse(seats.isLocked(seats.indexOf("D1"), now));
+        verify(seatRepository, times(2)).findSeatStates(TRIP);
+    }
+
+    private static int[] indexes(TripSeats seats, String... seatNumbers) {
+        return Arrays.stream(seatNumbers).mapToInt(seats::indexOf).toArray();
+    }
+
+    /**
+     * Seat map reads against the in-memory state. The entity path this
+     * replaces costs a database round trip plus 48 entities per read; see
+     * SeatStateBenchmarkTest for the comparison against PostgreSQL.
+     */
+    @Test
+    void snapshotsAndAvailabilityStayWellUnderAMicrosecondPerSeat() {
+        long now = SeatStateEngine.epochMillis(NOW);
+        engine.lock(TRIP, List.of("B1", "B2"), 9L, NOW, UNTIL).join();
+
+        int reads = 200_000;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            TripSeats seats = engine.snapshot(TRIP);
+            checksum += seats.availableCount(now);
+            for (int seat = 0; seat < seats.size(); seat++) {
+                checksum += seats.lockOwner(seat, now) + (seats.isBooked(seat) ? 1 : 0);
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1_000.0 / reads;
+
+        assertTrue(checksum > 0);
+        assertTrue(micros < 48, () -> String.format("%.2f us per seat map", micros));
+    }
+
+}
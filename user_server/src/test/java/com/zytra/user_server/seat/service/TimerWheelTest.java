@@ -0,0 +1,75 @@
+package com.zytra.user_server.seat.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+
+    private static final long TICK = 1_000;
+    // Not aligned to any level, so items cross wheel boundaries unevenly
+    private static final long START = 1_750_000_123_456L;
+
+    @Test
+    void firesEachItemOnTheFirstTickAtOrPastItsDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK, START);
+        wheel.schedule(START + 1_500, "soon");
+        wheel.schedule(START + 600_000, "ten minutes");
+        wheel.schedule(START - 5_000, "overdue");
+
+        // Ticks fall on whole seconds, the next one 544 ms after the start
+        List<String> fired = new ArrayList<>();
+        wheel.advance(START + 500, fired::add);
+        assertEquals(List.of(), fired);
+
+        wheel.advance(START + 1_000, fired::add);
+        assertEquals(List.of("overdue"), fired);
+
+        fired.clear();
+        wheel.advance(START + 2_000, fired::add);
+        assertEquals(List.of("soon"), fired);
+
+        fired.clear();
+        wheel.advance(START + 599_000, fired::add);
+        assertEquals(List.of(), fired);
+        wheel.advance(START + 601_000, fired::add);
+        assertEquals(List.of("ten minutes"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void itemsOnEveryLevelAndBeyondFireInDeadlineOrder() {
+        TimerWheel<Long> wheel = new TimerWheel<>(TICK, START);
+        Random random = new Random(7);
+
+        // Up to five days out; the last level reaches a little over three
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            long deadline = START + (long) (random.nextDouble() * 5 * 24 * 3_600_000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+        assertEquals(5_000, wheel.size());
+
+        List<Long> fired = new ArrayList<>();
+        long last = START + 5L * 24 * 3_600_000;
+        for (long now = START; now < last + 37_000 + TICK; now += 37_000) {
+            long time = now;
+            wheel.advance(time, deadline -> {
+                // Never early, and at most one advance late
+                assertTrue(deadline <= time, () -> deadline + " fired at " + time);
+                assertTrue(deadline > time - 37_000 - TICK, () -> deadline + " fired late at " + time);
+                fired.add(deadline);
+            });
+        }
+
+        assertEquals(deadlines.stream().sorted().toList(), fired.stream().sorted().toList());
+        assertEquals(0, wheel.size());
+    }
+
+}
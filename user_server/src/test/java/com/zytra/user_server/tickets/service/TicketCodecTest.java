@@ -0,0 +1,59 @@
+package com.zytra.user_server.tickets.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.zytra.user_server.tickets.dto.TicketPayload;
+
+class TicketCodecTest {
+
+    private static final String KEY = "a-ticket-signing-key-of-32-bytes";
+
+    private final TicketCodec codec = new TicketCodec(KEY);
+
+    @Test
+    void ticketsReadBackAsTheyWereWritten() {
+        TicketCodec.Encoder encoder = codec.encoder();
+        TicketPayload first = ticket(List.of("A1", "A2", "L12"));
+        TicketPayload second = ticket(List.of("U3"));
+
+        String qrCodeData = encoder.encode(first);
+        assertTrue(qrCodeData.startsWith(TicketCodec.PREFIX));
+        assertTrue(qrCodeData.length() < 100, qrCodeData);
+        assertEquals(first, codec.decode(qrCodeData));
+
+        // The encoder's buffers carry nothing over to the next ticket
+        assertEquals(second, codec.decode(encoder.encode(second)));
+        assertEquals(qrCodeData, encoder.encode(first));
+    }
+
+    @Test
+    void ticketsThatWereChangedOrSignedWithAnotherKeyAreRefused() {
+        String qrCodeData = codec.encoder().encode(ticket(List.of("A1")));
+        byte[] bytes = Base64.getUrlDecoder().decode(qrCodeData.substring(TicketCodec.PREFIX.length()));
+        // Booking id 7 becomes 8
+        bytes[8]++;
+        String changed = TicketCodec.PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(changed));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TicketCodec("another-ticket-signing-key-32-by").decode(qrCodeData));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("ZT1.not-a-ticket"));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("hello"));
+        assertThrows(IllegalArgumentException.class, () -> new TicketCodec("too short"));
+    }
+
+    private static TicketPayload ticket(List<String> seatNumbers) {
+        return new TicketPayload(7L, 42L, LocalDate.of(2030, 5, 1), seatNumbers,
+                Instant.parse("2030-04-20T08:30:00Z"));
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.zytra.user_server.tickets.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.tickets.dto.TicketPayload;
+import com.zytra.user_server.tickets.dto.TicketSource;
+import com.zytra.user_server.tickets.repository.TicketRepository;
+import com.zytra.user_server.util.ReferenceGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TicketIssuerTest {
+
+    private static final String KEY = "a-ticket-signing-key-of-32-bytes";
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 4, 20, 8, 30);
+    private static final LocalDate TRAVEL_DATE = LocalDate.of(2030, 5, 1);
+
+    private TicketRepository ticketRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private TicketIssuer issuer;
+
+    @BeforeEach
+    void setUp() {
+        ticketRepository = mock(TicketRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(ticketRepository.insertTickets(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Long[]>getArgument(0).length);
+        issuer = new TicketIssuer(ticketRepository, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new ReferenceGenerator(0), KEY, 1, 4, 10, 100, 60, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        issuer.stop();
+    }
+
+    @Test
+    void aBatchIsLoadedRenderedAndStoredTogether() {
+        when(ticketRepository.findTicketSources(aryEq(new Long[] { 1L, 2L, 3L }))).thenReturn(List.of(
+                source(1L, "A1,A2"), source(3L, "B4")));
+
+        assertEquals(2, issuer.issue(List.of(1L, 2L, 3L), issuer.encoder(), NOW));
+
+        ArgumentCaptor<String[]> ticketNumbers = ArgumentCaptor.forClass(String[].class);
+        ArgumentCaptor<String[]> qrCodes = ArgumentCaptor.forClass(String[].class);
+        verify(ticketRepository).insertTickets(aryEq(new Long[] { 1L, 3L }), ticketNumbers.capture(),
+                qrCodes.capture(), eq(NOW));
+        assertTrue(ReferenceGenerator.isValid(ReferenceGenerator.TICKET, ticketNumbers.getValue()[0]));
+        assertNotEquals(ticketNumbers.getValue()[0], ticketNumbers.getValue()[1]);
+        TicketPayload first = new TicketCodec(KEY).decode(qrCodes.getValue()[0]);
+        assertEquals(1L, first.bookingId());
+        assertEquals(7L, first.tripId());
+        assertEquals(TRAVEL_DATE, first.travelDate());
+        assertEquals(List.of("A1", "A2"), first.seatNumbers());
+        assertEquals(List.of("B4"), new TicketCodec(KEY).decode(qrCodes.getValue()[1]).seatNumbers());
+        assertEquals(2, meterRegistry.counter("tickets.issued").count());
+    }
+
+    @Test
+    void bookingsWithoutAnythingToIssueStoreNothing() {
+        when(ticketRepository.findTicketSources(any())).thenReturn(List.of());
+
+        assertEquals(0, issuer.issue(List.of(1L), issuer.encoder(), NOW));
+        verify(ticketRepository, never()).insertTickets(any(), any(), any(), any());
+    }
+
+    @Test
+    void queuedBookingsAreIssuedByTheWorkersAndAFullQueueIsLeftToTheSweep() {
+        // Not started: the queue of four fills up
+        issuer.issue(List.of(1L, 2L, 3L, 4L, 5L, 6L));
+        assertEquals(2, meterRegistry.counter("tickets.dropped").count());
+        assertEquals(4, meterRegistry.get("tickets.pending").gauge().value());
+
+        // What was queued before the worker started is one batch
+        when(ticketRepository.findTicketSources(any())).thenReturn(List.of(source(1L, "A1")));
+        issuer.start();
+        verify(ticketRepository, timeout(5000)).findTicketSources(aryEq(new Long[] { 1L, 2L, 3L, 4L }));
+        verify(ticketRepository, timeout(5000)).insertTickets(aryEq(new Long[] { 1L }), any(), any(), any());
+    }
+
+    @Test
+    void theSweepQueuesConfirmedBookingsWithoutATicket() {
+        when(ticketRepository.findConfirmedWithoutTicket(any(), anyInt())).thenReturn(List.of(5L, 6L));
+
+        issuer.sweep();
+
+        verify(ticketRepository).findConfirmedWithoutTicket(any(), eq(100));
+        assertEquals(2, meterRegistry.get("tickets.pending").gauge().value());
+    }
+
+    private static TicketSource source(long bookingId, String seatNumbers) {
+        return new TicketSource() {
+
+            @Override
+            public Long getBookingId() {
+                return bookingId;
+            }
+
+            @Override
+            public Long getTripId() {
+                return 7L;
+            }
+
+            @Override
+            public LocalDate getTravelDate() {
+                return TRAVEL_DATE;
+            }
+
+            @Override
+            public String getSeatNumbers() {
+                return seatNumbers;
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.zytra.user_server.trips.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zytra.user_server.seat.repository.SeatRepository;
+
+/**
+ * Holds, releases and expires seats of a trip through the statements the
+ * application uses and checks that trips.available_seats follows each of
+ * them, then breaks the counter and lets the reconciler repair it.
+ *
+ * Needs a disposable PostgreSQL database with the application schema
+ * (through V6), at least one schedule and one user: set ZYTRA_TEST_DB_URL
+ * (and optionally ZYTRA_TEST_DB_USERNAME / ZYTRA_TEST_DB_PASSWORD) to run it.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "ZYTRA_TEST_DB_URL", matches = ".+")
+class AvailableSeatsCounterTest {
+
+    private static final LocalDate TRAVEL_DATE = LocalDate.of(2095, 3, 1);
+
+    @DynamicPropertySource
+    static void testDatabase(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("ZYTRA_TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("ZYTRA_TEST_DB_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> envOrDefault("ZYTRA_TEST_DB_PASSWORD", ""));
+    }
+
+    @Autowired
+    private AvailableSeatsReconciler availableSeatsReconciler;
+
+    @Autowired
+    private SeatRepository seatRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long tripId;
+    private int totalSeats;
+    private long userId;
+
+    @BeforeEach
+    void createTrip() {
+        List<Map<String, Object>> schedules = jdbcTemplate.queryForList("""
+                SELECT s.id, b.total_seats FROM schedules s JOIN bus b ON b.id = s.bus_id ORDER BY s.id LIMIT 1
+                """);
+        List<Long> users = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id LIMIT 1", Long.class);
+        assumeTrue(!schedules.isEmpty() && !users.isEmpty(), "no schedule or user");
+
+        totalSeats = ((Number) schedules.get(0).get("total_seats")).intValue();
+        userId = users.get(0);
+        tripId = jdbcTemplate.queryForObject("""
+                INSERT INTO trips (schedule_id, travel_date, available_seats, fare, status, seat_status, created_at)
+                VALUES (?, ?, ?, 100, 'ACTIVE', 'INITIALIZED', now())
+                RETURNING id
+                """, Long.class, schedules.get(0).get("id"), TRAVEL_DATE, totalSeats);
+    }
+
+    @AfterEach
+    void removeTrip() {
+        // Seats go with their trip
+        jdbcTemplate.update("DELETE FROM trips WHERE travel_date = ?", TRAVEL_DATE);
+    }
+
+    @Test
+    void counterFollowsHoldsReleasesAndExpiries() {
+        LocalDateTime now = LocalDateTime.now();
+
+        // First holds insert the seat rows, holding again only moves the expiry
+        lock(new String[] { "A1", "A2", "A3" }, now.plusMinutes(10), now);
+        assertEquals(totalSeats - 3, availableSeats());
+        lock(new String[] { "A1", "A2" }, now.plusMinutes(20), now);
+        assertEquals(totalSeats - 3, availableSeats());
+
+        transactionTemplate.executeWithoutResult(status -> seatRepository.releaseLocks(tripId, List.of("A3"), userId));
+        assertEquals(totalSeats - 2, availableSeats());
+
+        jdbcTemplate.update("UPDATE seats SET locked_until = ? WHERE trip_id = ? AND seat_number = 'A2'",
+                now.minusMinutes(1), tripId);
+        transactionTemplate.executeWithoutResult(status -> seatRepository.releaseExpiredLocks(tripId,
+                new String[] { "A1", "A2" }, now));
+        assertEquals(totalSeats - 1, availableSeats());
+
+        jdbcTemplate.update("UPDATE seats SET status = 'BOOKED', lock_owner_id = NULL, locked_until = NULL "
+                + "WHERE trip_id = ? AND seat_number = 'A1'", tripId);
+        assertEquals(totalSeats - 1, availableSeats());
+        jdbcTemplate.update("DELETE FROM seats WHERE trip_id = ? AND seat_number = 'A1'", tripId);
+        assertEquals(totalSeats, availableSeats());
+    }
+
+    @Test
+    void reconcilerRepairsCountersThatDrifted() {
+        LocalDateTime now = LocalDateTime.now();
+        lock(new String[] { "B1", "B2" }, now.plusMinutes(10), now);
+
+        jdbcTemplate.update("UPDATE trips SET available_seats = 1 WHERE id = ?", tripId);
+
+        assertEquals(1, availableSeatsReconciler.reconcile(TRAVEL_DATE));
+        assertEquals(totalSeats - 2, availableSeats());
+        assertEquals(0, availableSeatsReconciler.reconcile(TRAVEL_DATE));
+    }
+
+    private void lock(String[] seatNumbers, LocalDateTime lockedUntil, LocalDateTime now) {
+        List<String> locked = transactionTemplate.execute(
+                status -> seatRepository.lockSeatsIfAvailable(tripId, seatNumbers, userId, lockedUntil, now));
+        assertEquals(seatNumbers.length, locked.size());
+    }
+
+    private int availableSeats() {
+        return jdbcTemplate.queryForObject("SELECT available_seats FROM trips WHERE id = ?", Integer.class, tripId);
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.zytra.user_server.trips.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.zytra.user_server.bus.dto.SearchBusesResponse;
+import com.zytra.user_server.bus.entity.BusEntity;
+import com.zytra.user_server.bus.repository.BusRepository;
+import com.zytra.user_server.bus.service.BusSearchLoader;
+import com.zytra.user_server.enums.Frequency;
+import com.zytra.user_server.enums.ScheduleStatus;
+import com.zytra.user_server.routes.entity.RouteEntity;
+import com.zytra.user_server.routes.repository.RouteRepository;
+import com.zytra.user_server.schedule.entity.ScheduleEntity;
+import com.zytra.user_server.schedule.repository.ScheduleRepository;
+
+/**
+ * Fires hundreds of simultaneous first searches for a route/date without
+ * trips and checks that none of them fails and exactly one trip exists per
+ * schedule and date afterwards.
+ *
+ * Needs a disposable PostgreSQL database with the application schema:
+ * set ZYTRA_TEST_DB_URL (and optionally ZYTRA_TEST_DB_USERNAME /
+ * ZYTRA_TEST_DB_PASSWORD) to run it.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "ZYTRA_TEST_DB_URL", matches = ".+")
+class TripCreationServiceConcurrencyTest {
+
+    private static final int SEARCHES = 300;
+    private static final int SCHEDULES = 5;
+
+    @DynamicPropertySource
+    static void testDatabase(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("ZYTRA_TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("ZYTRA_TEST_DB_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> envOrDefault("ZYTRA_TEST_DB_PASSWORD", ""));
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> "20");
+    }
+
+    @Autowired
+    private BusSearchLoader busSearchLoader;
+
+    @Autowired
+    private RouteRepository routeRepository;
+
+    @Autowired
+    private BusRepository busRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private RouteEntity route;
+    private BusEntity bus;
+    private final List<ScheduleEntity> schedules = new ArrayList<>();
+
+    // Outside the booking window, so the background materializer never
+    // creates these trips first
+    private final LocalDate travelDate = LocalDate.now().plusYears(1);
+
+    @BeforeEach
+    void createSchedules() {
+        String suffix = Long.toString(System.nanoTime(), 36);
+
+        route = routeRepository.save(new RouteEntity(null, "Race-" + suffix, "Town-" + suffix, 100, null));
+        bus = busRepository.save(BusEntity.builder()
+                .busNumber("RC" + suffix.substring(Math.max(0, suffix.length() - 10)))
+                .totalSeats(48)
+                .description("Race test bus")
+                .build());
+
+        for (int i = 0; i < SCHEDULES; i++) {
+            schedules.add(scheduleRepository.save(ScheduleEntity.builder()
+                    .route(route)
+                    .bus(bus)
+                    .departureTime(LocalTime.of(6 + i, 0))
+                    .arrivalTime(LocalTime.of(10 + i, 0))
+                    .frequency(Frequency.DAILY)
+                    .activeFrom(travelDate.minusDays(1))
+                    .activeTo(travelDate.plusDays(1))
+                    .status(ScheduleStatus.ACTIVE)
+                    .build()));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        List<Long> scheduleIds = schedules.stream().map(ScheduleEntity::getId).toList();
+        scheduleIds.forEach(id -> jdbcTemplate.update("DELETE FROM trips WHERE schedule_id = ?", id));
+        scheduleRepository.deleteAllById(scheduleIds);
+        busRepository.delete(bus);
+        routeRepository.delete(route);
+    }
+
+    @Test
+    void concurrentFirstSearchesCreateOneTripPerScheduleAndDate() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Queue<Set<Long>> observedTripIds = new ConcurrentLinkedQueue<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(SEARCHES)) {
+            List<Future<?>> searches = new ArrayList<>();
+            for (int i = 0; i < SEARCHES; i++) {
+                searches.add(executor.submit(() -> {
+                    try {
+                        start.await();
+                        List<SearchBusesResponse.BusResult> results = busSearchLoader.loadResults(route, travelDate);
+                        observedTripIds.add(results.stream()
+                                .map(SearchBusesResponse.BusResult::getTripId)
+                                .collect(Collectors.toSet()));
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> search : searches) {
+                search.get();
+            }
+        }
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " searches failed, first: " + failures.peek());
+
+        // Every search saw the same, complete set of trips
+        Set<Long> expected = observedTripIds.peek();
+        assertEquals(SCHEDULES, expected.size());
+        observedTripIds.forEach(tripIds -> assertEquals(expected, tripIds));
+
+        for (ScheduleEntity schedule : schedules) {
+            Integer trips = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM trips WHERE schedule_id = ? AND travel_date = ?",
+                    Integer.class, schedule.getId(), travelDate);
+            assertEquals(1, trips);
+        }
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.zytra.user_server.trips.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zytra.user_server.enums.ScheduleStatus;
+import com.zytra.user_server.schedule.repository.ScheduleRepository;
+import com.zytra.user_server.trips.repository.TripRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TripMaterializerTest {
+
+    private static final BigDecimal FARE_PER_KM = new BigDecimal("2.5");
+
+    private TripRepository tripRepository;
+    private ScheduleRepository scheduleRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private TripMaterializer materializer;
+
+    @BeforeEach
+    void setUp() {
+        tripRepository = mock(TripRepository.class);
+        scheduleRepository = mock(ScheduleRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        materializer = new TripMaterializer(tripRepository, scheduleRepository, meterRegistry);
+        ReflectionTestUtils.setField(materializer, "bookingWindowDays", 30);
+        ReflectionTestUtils.setField(materializer, "farePerKm", FARE_PER_KM);
+        ReflectionTestUtils.setField(materializer, "batchSize", 2);
+    }
+
+    @Test
+    void insertsTheTripsOfEveryScheduleInChunks() {
+        LocalDate from = LocalDate.of(2030, 1, 7);
+        LocalDate to = from.plusDays(30);
+        when(scheduleRepository.findIdsByStatusAndActiveBetween(ScheduleStatus.ACTIVE, from, to))
+                .thenReturn(LongStream.rangeClosed(1, 5).boxed().toList());
+        when(tripRepository.materializeTrips(anyList(), any(), any(), any())).thenReturn(31);
+
+        materializer.materialize(from, to);
+
+        verify(tripRepository).materializeTrips(List.of(1L, 2L), from, to, FARE_PER_KM);
+        verify(tripRepository).materializeTrips(List.of(3L, 4L), from, to, FARE_PER_KM);
+        verify(tripRepository).materializeTrips(List.of(5L), from, to, FARE_PER_KM);
+        assertEquals(3 * 31, meterRegistry.counter("trips.materializer.created").count());
+        assertEquals(1.0, meterRegistry.get("trips.materializer.progress").gauge().value());
+        assertEquals(to, materializer.getMaterializedThrough());
+    }
+
+    @Test
+    void rollingForwardOnlyCoversTheDaysNotMaterializedYet() {
+        LocalDate today = LocalDate.now();
+        LocalDate horizon = today.plusDays(30);
+        when(scheduleRepository.findIdsByStatusAndActiveBetween(any(), any(), any())).thenReturn(List.of(1L));
+
+        // Nothing yet: the whole window
+        materializer.rollForward();
+        verify(tripRepository).materializeTrips(List.of(1L), today, horizon, FARE_PER_KM);
+        assertEquals(0.0, meterRegistry.get("trips.materializer.lag").gauge().value());
+
+        // Already through the horizon: nothing to do
+        materializer.rollForward();
+        verify(scheduleRepository, never()).findIdsByStatusAndActiveBetween(ScheduleStatus.ACTIVE,
+                horizon.plusDays(1), horizon);
+        verify(tripRepository).materializeTrips(anyList(), any(), any(), any());
+    }
+
+    @Test
+    void aFailedPassLeavesTheHorizonWhereItWas() {
+        when(scheduleRepository.findIdsByStatusAndActiveBetween(any(), any(), any())).thenReturn(List.of(1L));
+        when(tripRepository.materializeTrips(anyList(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("database down"));
+
+        materializer.rollForward();
+
+        assertNull(materializer.getMaterializedThrough());
+        assertEquals(31.0, meterRegistry.get("trips.materializer.lag").gauge().value());
+    }
+
+}
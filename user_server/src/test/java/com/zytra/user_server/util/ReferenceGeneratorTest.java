@@ -0,0 +1,198 @@
+package com.zytra.user_server.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+class ReferenceGeneratorTest {
+
+    private static final long NOW = Instant.parse("2030-05-01T10:15:00Z").toEpochMilli();
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 100_000;
+    private static final char[] DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        assertAllDistinct(generate(new ReferenceGenerator(5), THREADS, IDS_PER_THREAD));
+    }
+
+    /**
+     * Throughput of eight threads taking ids together, about 100 MB of
+     * them; set ZYTRA_BENCHMARKS to run it.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "ZYTRA_BENCHMARKS", matches = ".+")
+    void idsAreTakenAtMillionsPerSecond() throws Exception {
+        ReferenceGenerator generator = new ReferenceGenerator(5);
+        long started = System.nanoTime();
+        long[] ids = generate(generator, THREADS, 10 * IDS_PER_THREAD);
+        double perSecond = ids.length / ((System.nanoTime() - started) / 1e9);
+
+        assertAllDistinct(ids);
+        assertTrue(perSecond > 1_000_000, "only " + (long) perSecond + " ids a second");
+    }
+
+    @Test
+    void aClockThatNeverMovesStillGivesUniqueIncreasingIds() throws Exception {
+        // Every id in the same millisecond: the sequence runs out a
+        // thousand times over and ids are taken from the milliseconds ahead
+        ReferenceGenerator generator = new ReferenceGenerator(5, () -> NOW);
+        long[] ids = generate(generator, 4, 10 * IDS_PER_THREAD);
+        assertAllDistinct(ids);
+
+        ReferenceGenerator alone = new ReferenceGenerator(5, () -> NOW);
+        long previous = alone.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            long id = alone.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void aClockSteppingBackIsNotFollowed() {
+        AtomicLong clock = new AtomicLong(NOW);
+        ReferenceGenerator generator = new ReferenceGenerator(5, clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-60_000);
+        assertTrue(generator.nextId() > before);
+    }
+
+    @Test
+    void nodesNeverMakeTheSameId() {
+        ReferenceGenerator first = new ReferenceGenerator(1, () -> NOW);
+        ReferenceGenerator second = new ReferenceGenerator(2, () -> NOW);
+        for (int i = 0; i < 10_000; i++) {
+            assertNotEquals(first.nextId(), second.nextId());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new ReferenceGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReferenceGenerator(ReferenceGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    void referencesAreShortAndCheckedByTheirLastDigit() {
+        String reference = new ReferenceGenerator(5).next(ReferenceGenerator.BOOKING);
+
+        assertEquals(ReferenceGenerator.LENGTH, reference.length());
+        assertTrue(reference.matches("B[0-9A-HJKMNP-TV-Z]{14}"), reference);
+        assertTrue(ReferenceGenerator.isValid(ReferenceGenerator.BOOKING, reference));
+        assertFalse(ReferenceGenerator.isValid(ReferenceGenerator.PAYMENT, reference));
+
+        // As typed by hand
+        assertTrue(ReferenceGenerator.isValid(ReferenceGenerator.BOOKING, reference.toLowerCase()));
+        assertTrue(ReferenceGenerator.isValid(ReferenceGenerator.BOOKING,
+                ReferenceGenerator.format('B', 0x1234_5678L).replace('0', 'O').replace('1', 'I')));
+
+        for (int i = 1; i < reference.length(); i++) {
+            // Any single digit mistyped
+            for (char digit : DIGITS) {
+                if (digit != reference.charAt(i)) {
+                    String mistyped = reference.substring(0, i) + digit + reference.substring(i + 1);
+                    assertFalse(ReferenceGenerator.isValid(ReferenceGenerator.BOOKING, mistyped), mistyped);
+                }
+            }
+        }
+        assertFalse(ReferenceGenerator.isValid(ReferenceGenerator.BOOKING, reference.substring(1)));
+        assertFalse(ReferenceGenerator.isValid(ReferenceGenerator.BOOKING, "B0000000000000U"));
+    }
+
+    @Test
+    void everyPairOfNeighbouringDigitsSwappedIsCaught() {
+        // Including 0 and Z, which Luhn mod 32 lets through
+        char[] base = ReferenceGenerator.format('B', 0x0123_4567_89AB_CDEFL).toCharArray();
+        int last = ReferenceGenerator.LENGTH - 1;
+
+        for (int i = 1; i < last; i++) {
+            for (char a : DIGITS) {
+                for (char b : DIGITS) {
+                    char[] reference = base.clone();
+                    reference[i] = a;
+                    reference[i + 1] = b;
+                    if (i + 1 < last) {
+                        reference[last] = checkDigit(reference);
+                    }
+                    // Next to the check digit only the pairs it allows
+                    if (a == b || !ReferenceGenerator.isValid('B', new String(reference))) {
+                        continue;
+                    }
+                    reference[i] = b;
+                    reference[i + 1] = a;
+                    assertFalse(ReferenceGenerator.isValid('B', new String(reference)), new String(reference));
+                }
+            }
+        }
+    }
+
+    // The only last digit that makes the reference valid
+    private static char checkDigit(char[] reference) {
+        char[] candidate = reference.clone();
+        List<Character> valid = new ArrayList<>();
+        for (char digit : DIGITS) {
+            candidate[candidate.length - 1] = digit;
+            if (ReferenceGenerator.isValid('B', new String(candidate))) {
+                valid.add(digit);
+            }
+        }
+        assertEquals(1, valid.size(), new String(reference));
+        return valid.get(0);
+    }
+
+    private static long[] generate(ReferenceGenerator generator, int threads, int idsPerThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<long[]> task = () -> {
+                    long[] ids = new long[idsPerThread];
+                    start.await();
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                };
+                results.add(pool.submit(task));
+            }
+
+            long[] all = new long[threads * idsPerThread];
+            for (int t = 0; t < threads; t++) {
+                long[] ids = results.get(t).get();
+                // Each thread sees its ids increase
+                for (int i = 1; i < ids.length; i++) {
+                    assertTrue(ids[i] > ids[i - 1]);
+                }
+                System.arraycopy(ids, 0, all, t * idsPerThread, idsPerThread);
+            }
+            return all;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertAllDistinct(long[] ids) {
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; i++) {
+            assertNotEquals(ids[i - 1], ids[i], "duplicate id");
+        }
+    }
+
+}